@@ -0,0 +1,45 @@
+package com.dws.challenge.benchmark;
+
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Per-thread sequence of account indexes drawn from the pool's distribution
+ * ahead of time, so that random number generation stays out of the measured
+ * operation.
+ */
+@State(Scope.Thread)
+public class AccountPicker {
+
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+
+    private final int[] sequence = new int[SEQUENCE_LENGTH];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup(AccountPool pool, ThreadParams threadParams) {
+        SplittableRandom random = new SplittableRandom(threadParams.getThreadIndex());
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            sequence[i] = pool.nextIndex(random);
+        }
+    }
+
+    int nextIndex() {
+        int index = sequence[next];
+        next = (next + 1) & (SEQUENCE_LENGTH - 1);
+        return index;
+    }
+
+    /**
+     * @return an index different from the given one, for transfers.
+     */
+    int nextIndexOtherThan(int index, int accountCount) {
+        int other = nextIndex();
+        return other != index ? other : (index + 1) % accountCount;
+    }
+}
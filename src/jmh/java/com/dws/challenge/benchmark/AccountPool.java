@@ -0,0 +1,98 @@
+package com.dws.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceEngine;
+import com.dws.challenge.service.CasBalanceEngine;
+import com.dws.challenge.service.LockingBalanceEngine;
+import com.dws.challenge.service.ShardedBalanceEngine;
+
+/**
+ * Accounts shared by all benchmark threads, and the distribution used to pick
+ * them: every account equally likely, or a Zipfian skew where a few hot
+ * accounts receive most of the operations.
+ */
+@State(Scope.Benchmark)
+public class AccountPool {
+
+    public enum Skew {
+        UNIFORM, ZIPF
+    }
+
+    /** YCSB's default Zipfian constant. */
+    private static final double ZIPF_EXPONENT = 0.99;
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000000");
+
+    @Param({ "1000", "100000" })
+    int accountCount;
+
+    @Param({ "UNIFORM", "ZIPF" })
+    Skew skew;
+
+    @Param({ "locking", "cas", "sharded" })
+    String balanceEngine;
+
+    AccountsRepositoryInMemory repository;
+    AccountsService accountsService;
+    String[] accountIds;
+    Account[] accounts;
+    private double[] cumulativeProbabilities;
+    private ShardedBalanceEngine shardedEngine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BalanceEngine engine = switch (balanceEngine) {
+            case "cas" -> new CasBalanceEngine();
+            case "sharded" -> shardedEngine = new ShardedBalanceEngine(0, 4096);
+            default -> new LockingBalanceEngine();
+        };
+        repository = new AccountsRepositoryInMemory();
+        accountsService = new AccountsService(repository, (account, transferDescription) -> {
+        }, engine);
+        accountIds = new String[accountCount];
+        accounts = new Account[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountIds[i] = "Id-" + i;
+            accounts[i] = new Account(accountIds[i], OPENING_BALANCE);
+            accountsService.createAccount(accounts[i]);
+        }
+        if (skew == Skew.ZIPF) {
+            cumulativeProbabilities = new double[accountCount];
+            double total = 0;
+            for (int rank = 1; rank <= accountCount; rank++) {
+                total += 1 / Math.pow(rank, ZIPF_EXPONENT);
+                cumulativeProbabilities[rank - 1] = total;
+            }
+            for (int i = 0; i < accountCount; i++) {
+                cumulativeProbabilities[i] /= total;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (shardedEngine != null) {
+            shardedEngine.destroy();
+        }
+    }
+
+    int nextIndex(SplittableRandom random) {
+        if (skew == Skew.UNIFORM) {
+            return random.nextInt(accountCount);
+        }
+        int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, accountCount - 1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.dws.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * Throughput of the account hot paths. Thread counts are varied by
+ * {@link BenchmarkRunner}; pool size, skew and balance engine are the
+ * {@link AccountPool} parameters. Run with {@code -prof gc} to see the
+ * allocation rate per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountsServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Benchmark
+    public boolean transferAmount(AccountPool pool, AccountPicker picker) throws Exception {
+        int from = picker.nextIndex();
+        int to = picker.nextIndexOtherThan(from, pool.accountCount);
+        return pool.accountsService.transferAmount(pool.accountIds[from], pool.accountIds[to], AMOUNT);
+    }
+
+    @Benchmark
+    public boolean withdrawAmount(AccountPool pool, AccountPicker picker) throws Exception {
+        return pool.accountsService.withdrawAmount(pool.accounts[picker.nextIndex()], AMOUNT);
+    }
+
+    @Benchmark
+    public boolean depositAmount(AccountPool pool, AccountPicker picker) throws Exception {
+        return pool.accountsService.depositAmount(pool.accounts[picker.nextIndex()], AMOUNT);
+    }
+
+    @Benchmark
+    public Account getAccount(AccountPool pool, AccountPicker picker) throws Exception {
+        return pool.repository.getAccount(pool.accountIds[picker.nextIndex()]);
+    }
+}
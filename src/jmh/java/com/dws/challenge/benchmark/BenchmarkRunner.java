@@ -0,0 +1,42 @@
+package com.dws.challenge.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Optional;
+
+/**
+ * Runs the benchmarks once per thread count listed in the {@code jmh.threads}
+ * system property (for example {@code 1,4,16}), passing every other argument
+ * to JMH. With {@code -rff}, each thread count gets its own result file.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        for (String threads : System.getProperty("jmh.threads", "1").split(",")) {
+            int threadCount = Integer.parseInt(threads.trim());
+            OptionsBuilder options = new OptionsBuilder();
+            options.parent(commandLineOptions).threads(threadCount);
+            if (commandLineOptions.getIncludes().isEmpty()) {
+                options.include(BenchmarkRunner.class.getPackageName() + ".*");
+            }
+            Optional<String> result = commandLineOptions.getResult();
+            if (result.hasValue()) {
+                options.result(withThreadCount(result.get(), threadCount));
+            }
+            Options built = options.build();
+            new Runner(built).run();
+        }
+    }
+
+    private static String withThreadCount(String file, int threadCount) {
+        int extension = file.lastIndexOf('.');
+        return extension < 0 ? file + "-t" + threadCount
+                : file.substring(0, extension) + "-t" + threadCount + file.substring(extension);
+    }
+}
@@ -0,0 +1,75 @@
+package com.dws.challenge.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limit on the number of requests in flight that adapts to the observed
+ * latency by additive increase, multiplicative decrease (AIMD): a request
+ * completing within the latency threshold raises the limit by one while at
+ * least half of it is in use, and a slower request cuts the limit by
+ * {@value #BACKOFF_RATIO}. Beyond the limit, requests are rejected at once
+ * rather than queued, which keeps the latency of the admitted ones bounded.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param latencyThreshold latency above which a request counts as a sign
+     *                         of overload
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyThreshold,
+                                    TimeUnit unit) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Need 1 <= min <= initial <= max limit: " + minLimit + ", "
+                    + initialLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+        this.limit = new AtomicInteger(initialLimit);
+    }
+
+    /**
+     * @return true if the request may proceed; it must then call
+     *         {@link #release(long)} once done.
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos time the request took
+     */
+    public void release(long latencyNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (latencyNanos > latencyThresholdNanos) {
+            limit.updateAndGet(current -> Math.max(minLimit, (int) (current * BACKOFF_RATIO)));
+        } else if (inFlightBefore * 2 >= limit.get()) {
+            limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+        }
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
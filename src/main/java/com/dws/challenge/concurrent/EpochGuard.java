@@ -0,0 +1,169 @@
+package com.dws.challenge.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tells when every operation started before a given point has finished,
+ * without making any operation wait. Operations {@link #enter()} the current
+ * epoch and {@link #exit(long)} it when done; {@link #advance()} moves new
+ * operations to the next epoch, after which {@link #awaitExit(long)} waits for
+ * the operations of the previous one only.
+ * <p>
+ * Operations are counted per epoch parity in counters striped by thread and
+ * padded to their own cache line, so that entering and exiting is one atomic
+ * increment on a line rarely shared with another thread. Because the two
+ * parities are reused, an epoch may only be advanced once the epoch before
+ * the current one has been awaited, and only one thread may advance at a
+ * time.
+ * <p>
+ * Operations may instead enter on counters of their own choosing, e.g. one
+ * per resource they use, so that {@link #awaitExit(long, int)} waits only for
+ * the operations on one resource. A guard should be entered one way only.
+ */
+public class EpochGuard {
+
+    /** Longs per counter, so that each counter has a 128-byte line to itself. */
+    private static final int PADDING = 16;
+    private static final long SPIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int SPINS = 100;
+
+    private final int mask;
+    private final AtomicLongArray active;
+    private volatile long epoch;
+
+    public EpochGuard() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param requestedStripes minimum number of counters per parity, rounded up
+     *                         to a power of two
+     */
+    public EpochGuard(int requestedStripes) {
+        int stripes = 1;
+        while (stripes < requestedStripes) {
+            stripes <<= 1;
+        }
+        this.mask = stripes - 1;
+        this.active = new AtomicLongArray(2 * stripes * PADDING);
+    }
+
+    /**
+     * @return the epoch the operation belongs to, to be passed to
+     *         {@link #exit(long)} by the same thread.
+     */
+    public long enter() {
+        int stripe = stripe();
+        for (;;) {
+            long current = epoch;
+            int index = index(current, stripe);
+            active.incrementAndGet(index);
+            if (epoch == current) {
+                return current;
+            }
+            // advanced in between: the operation belongs to the new epoch
+            active.decrementAndGet(index);
+        }
+    }
+
+    public void exit(long enteredEpoch) {
+        active.decrementAndGet(index(enteredEpoch, stripe()));
+    }
+
+    /**
+     * Enters the current epoch on each of the given counters, once per index
+     * given.
+     *
+     * @return the epoch the operation belongs to, to be passed to
+     *         {@link #exit(long, int[])} with the same counters.
+     */
+    public long enter(int[] stripes) {
+        for (;;) {
+            long current = epoch;
+            for (int stripe : stripes) {
+                active.incrementAndGet(index(current, stripe & mask));
+            }
+            if (epoch == current) {
+                return current;
+            }
+            for (int stripe : stripes) {
+                active.decrementAndGet(index(current, stripe & mask));
+            }
+        }
+    }
+
+    public void exit(long enteredEpoch, int[] stripes) {
+        for (int stripe : stripes) {
+            active.decrementAndGet(index(enteredEpoch, stripe & mask));
+        }
+    }
+
+    public long current() {
+        return epoch;
+    }
+
+    /**
+     * Moves operations entering from now on to the next epoch.
+     *
+     * @return the previous epoch
+     */
+    public long advance() {
+        long previous = epoch;
+        epoch = previous + 1;
+        return previous;
+    }
+
+    /**
+     * Waits until every operation of the epoch has exited. Operations of later
+     * epochs are not waited for.
+     */
+    public void awaitExit(long exitedEpoch) {
+        for (int spins = 0; isActive(exitedEpoch); spins++) {
+            backOff(spins);
+        }
+    }
+
+    /**
+     * Waits until every operation of the epoch entered on the given counter,
+     * see {@link #enter(int[])}, has exited.
+     */
+    public void awaitExit(long exitedEpoch, int stripe) {
+        for (int spins = 0; active.get(index(exitedEpoch, stripe & mask)) != 0; spins++) {
+            backOff(spins);
+        }
+    }
+
+    private void backOff(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(this, SPIN_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Each operation increments and decrements the same counter, which
+     * therefore never drops below zero: a counter read as zero after the epoch
+     * was advanced has no operation of that epoch left.
+     */
+    private boolean isActive(long epoch) {
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            if (active.get(index(epoch, stripe)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int index(long epoch, int stripe) {
+        return ((int) (epoch & 1) * (mask + 1) + stripe) * PADDING;
+    }
+
+    @SuppressWarnings("deprecation")
+    private int stripe() {
+        // Thread.getId() rather than threadId(), which needs Java 19
+        return (int) (Thread.currentThread().getId() * 0x9E3779B9L >>> 16) & mask;
+    }
+}
@@ -0,0 +1,62 @@
+package com.dws.challenge.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket, implemented as the generic cell rate algorithm
+ * (GCRA): instead of a token count it keeps the theoretical arrival time of
+ * the next request, which advances by one emission interval per admitted
+ * request. A request is admitted if that time is no further ahead of the
+ * clock than the burst allows, so the whole state is one {@code long} updated
+ * by compare-and-set, and nothing needs refilling.
+ */
+public class RateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permitsPerSecond sustained rate of admitted requests
+     * @param burst            number of requests admitted at once after an idle
+     *                         period, at least 1
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock source of {@link System#nanoTime()}-like timestamps
+     */
+    public RateLimiter(double permitsPerSecond, int burst, LongSupplier nanoClock) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Need a positive rate and burst: " + permitsPerSecond + "/" + burst);
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.nanoClock = nanoClock;
+        this.theoreticalArrival = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * @return 0 if the request is admitted, otherwise the time in nanoseconds
+     *         until a request would be.
+     */
+    public long tryAcquire() {
+        long now = nanoClock.getAsLong();
+        for (;;) {
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now);
+            long admittedFrom = next - burstToleranceNanos;
+            if (admittedFrom - now > 0) {
+                return admittedFrom - now;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.dws.challenge.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Deadline of the request the current thread is handling, so that waits deep
+ * in the call stack end when the client stops waiting. Threads without a
+ * deadline wait as long as their own timeouts allow.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * Sets the deadline of the current thread to the given time from now.
+     */
+    public static void start(long timeout, TimeUnit unit) {
+        DEADLINE.set(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * @return the nanoseconds left until the deadline, negative once it has
+     *         passed, or {@link Long#MAX_VALUE} without a deadline
+     */
+    public static long remainingNanos() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    /**
+     * @return the task running with the deadline the current thread has now, for
+     *         tasks handed over to another thread.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return task;
+        }
+        return withDeadline(task, deadline);
+    }
+
+    /**
+     * Like {@link #propagate(Supplier)}, giving the task a deadline of the given
+     * time from now if the current thread has none.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task, long defaultTimeout, TimeUnit unit) {
+        Long deadline = DEADLINE.get();
+        return withDeadline(task, deadline != null ? deadline : System.nanoTime() + unit.toNanos(defaultTimeout));
+    }
+
+    private static <T> Supplier<T> withDeadline(Supplier<T> task, long deadline) {
+        return () -> {
+            DEADLINE.set(deadline);
+            try {
+                return task.get();
+            } finally {
+                DEADLINE.remove();
+            }
+        };
+    }
+}
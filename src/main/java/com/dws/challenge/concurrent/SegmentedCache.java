@@ -0,0 +1,164 @@
+package com.dws.challenge.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache whose entries expire a fixed time after they were written.
+ * Keys are spread over independent segments: a lookup reads the segment's
+ * concurrent map without locking, and a write locks only its own segment to
+ * record the insertion order and evict.
+ * <p>
+ * Every entry lives for the same time, so the oldest entry of a segment is
+ * always the first to expire; eviction by age and by size both remove from
+ * the head of the insertion order. Expired entries are never returned, and
+ * are removed when their segment is written to next.
+ *
+ * @param <K> key type
+ * @param <V> value type, {@code null} is not permitted
+ */
+public class SegmentedCache<K, V> {
+
+    private final Segment<K, V>[] segments;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param maximumSize  maximum number of entries, shared evenly by the segments
+     * @param timeToLive   time an entry stays readable after it was written
+     * @param segmentCount number of independently locked segments
+     */
+    public SegmentedCache(int maximumSize, long timeToLive, TimeUnit unit, int segmentCount) {
+        this(maximumSize, timeToLive, unit, segmentCount, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock source of {@link System#nanoTime()}-like timestamps
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedCache(int maximumSize, long timeToLive, TimeUnit unit, int segmentCount, LongSupplier nanoClock) {
+        if (segmentCount < 1 || maximumSize < segmentCount) {
+            throw new IllegalArgumentException(
+                    "Need at least one segment and one entry per segment: " + maximumSize + "/" + segmentCount);
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(maximumSize / segmentCount);
+        }
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return the value of the key, or null if it is absent or expired.
+     */
+    public V get(K key) {
+        Entry<K, V> entry = segmentOf(key).map.get(key);
+        return entry == null || entry.isExpired(nanoClock.getAsLong(), timeToLiveNanos) ? null : entry.value();
+    }
+
+    /**
+     * Stores the value unless the key already has a live value.
+     *
+     * @return the live value already stored, or null if the value was stored.
+     */
+    public V putIfAbsent(K key, V value) {
+        return segmentOf(key).put(key, value, false, nanoClock.getAsLong(), timeToLiveNanos);
+    }
+
+    /**
+     * Stores the value, replacing any value of the key.
+     */
+    public void put(K key, V value) {
+        segmentOf(key).put(key, value, true, nanoClock.getAsLong(), timeToLiveNanos);
+    }
+
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentOf(key);
+        segment.lock.lock();
+        try {
+            segment.map.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of stored entries, including expired entries not yet
+     *         removed.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
+    }
+
+    private Segment<K, V> segmentOf(K key) {
+        int hash = key.hashCode();
+        return segments[Math.floorMod(hash ^ (hash >>> 16), segments.length)];
+    }
+
+    private record Entry<K, V>(K key, V value, long writtenAt) {
+
+        boolean isExpired(long now, long timeToLiveNanos) {
+            return now - writtenAt >= timeToLiveNanos;
+        }
+    }
+
+    private static final class Segment<K, V> {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+        /** Entries in insertion order, guarded by the lock. */
+        private final ArrayDeque<Entry<K, V>> insertionOrder = new ArrayDeque<>();
+        private final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        V put(K key, V value, boolean replace, long now, long timeToLiveNanos) {
+            lock.lock();
+            try {
+                evictExpired(now, timeToLiveNanos);
+                Entry<K, V> existing = map.get(key);
+                if (existing != null && !replace) {
+                    return existing.value();
+                }
+                Entry<K, V> entry = new Entry<>(key, value, now);
+                map.put(key, entry);
+                insertionOrder.addLast(entry);
+                // replaced entries stay queued until they reach the head, bound them too
+                while (map.size() > capacity || insertionOrder.size() > 2 * capacity) {
+                    evictOldest();
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void evictExpired(long now, long timeToLiveNanos) {
+            while (!insertionOrder.isEmpty() && insertionOrder.peekFirst().isExpired(now, timeToLiveNanos)) {
+                evictOldest();
+            }
+        }
+
+        /**
+         * Entries replaced or invalidated since they were written are skipped:
+         * only the entry still mapped removes its key.
+         */
+        private void evictOldest() {
+            Entry<K, V> oldest = insertionOrder.pollFirst();
+            if (oldest != null) {
+                map.remove(oldest.key(), oldest);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.dws.challenge.concurrent;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck, as in the Linux kernel
+ * timers): {@code levels} wheels of {@value #SLOTS} slots each, where a slot
+ * of level {@code n} spans {@code 256^n} ticks. An entry goes into the slot of
+ * the lowest level whose range reaches its deadline, and is moved one level
+ * down each time the wheel turns past the slot of the higher level, until it
+ * expires from level 0. Scheduling, cancelling and expiring an entry are
+ * constant time whatever the number of pending entries; only the cascades
+ * move entries, each at most once per level.
+ * <p>
+ * Entries further away than the range of the top level wait in its last slot
+ * and are placed again once it is reached. Not thread-safe: the owner
+ * serializes all calls.
+ *
+ * @param <E> type of the scheduled elements
+ */
+public class TimingWheel<E> {
+
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final int levels;
+    /** Sentinel heads of the circular lists of entries, by level and slot. */
+    private final Entry<E>[] slots;
+    /** Next tick to expire; every earlier tick has been expired. */
+    private long tick;
+    private int size;
+
+    /**
+     * @param tickMillis  resolution of the wheel; deadlines are rounded up to a
+     *                    whole tick
+     * @param levels      number of wheels, each covering 256 times the range of
+     *                    the one below
+     * @param startMillis time of the first tick, e.g. now
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int levels, long startMillis) {
+        if (tickMillis < 1 || levels < 1 || levels * BITS > 56) {
+            throw new IllegalArgumentException("Need a tick of at least 1 ms and 1 to 7 levels: " + tickMillis
+                    + " ms, " + levels);
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.slots = new Entry[levels * SLOTS];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Entry<>(null, 0);
+            slots[i].clear();
+        }
+        this.tick = startMillis / tickMillis;
+    }
+
+    /**
+     * @return a handle to {@link #cancel(Entry)} the entry with; it expires on
+     *         the first {@link #advance(long, Consumer)} past its deadline
+     */
+    public Entry<E> schedule(E element, long deadlineMillis) {
+        Entry<E> entry = new Entry<>(element, deadlineMillis);
+        place(entry);
+        size++;
+        return entry;
+    }
+
+    /**
+     * @return false if the entry had already expired or been cancelled.
+     */
+    public boolean cancel(Entry<E> entry) {
+        if (!entry.isLinked()) {
+            return false;
+        }
+        entry.unlink();
+        size--;
+        return true;
+    }
+
+    /**
+     * Expires, in deadline order to the tick, every entry whose deadline is at
+     * or before the given time.
+     *
+     * @return the number of expired entries
+     */
+    public int advance(long nowMillis, Consumer<? super E> expired) {
+        long lastTick = nowMillis / tickMillis;
+        int count = 0;
+        for (; tick <= lastTick; tick++) {
+            cascade();
+            Entry<E> head = slots[(int) (tick & MASK)];
+            Entry<E> entry = head.next;
+            head.clear();
+            while (entry != head) {
+                Entry<E> next = entry.next;
+                if (expiryTick(entry) > tick) {
+                    // beyond the range of a single-level wheel
+                    place(entry);
+                } else {
+                    entry.previous = null;
+                    entry.next = null;
+                    size--;
+                    count++;
+                    expired.accept(entry.element);
+                }
+                entry = next;
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Moves the entries of the higher-level slots that start at the current
+     * tick down, highest level first so that they can cascade further.
+     */
+    private void cascade() {
+        int level = 0;
+        while (level + 1 < levels && (tick & ((1L << (BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            Entry<E> head = slots[level * SLOTS + (int) ((tick >>> (BITS * level)) & MASK)];
+            Entry<E> entry = head.next;
+            head.clear();
+            while (entry != head) {
+                Entry<E> next = entry.next;
+                place(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void place(Entry<E> entry) {
+        long expiry = Math.max(tick, expiryTick(entry));
+        long delta = expiry - tick;
+        int level = 0;
+        while (level < levels - 1 && delta >>> (BITS * (level + 1)) != 0) {
+            level++;
+        }
+        if (delta >>> (BITS * levels) != 0) {
+            // beyond the top level: wait in the slot reached last
+            expiry = tick + (1L << (BITS * levels)) - 1;
+        }
+        entry.linkBefore(slots[level * SLOTS + (int) ((expiry >>> (BITS * level)) & MASK)]);
+    }
+
+    /**
+     * Rounded up, so that an entry never expires before its deadline.
+     */
+    private long expiryTick(Entry<E> entry) {
+        return Math.floorDiv(entry.deadlineMillis + tickMillis - 1, tickMillis);
+    }
+
+    /**
+     * A scheduled element, linked into the list of its slot.
+     */
+    public static final class Entry<E> {
+
+        private final E element;
+        private final long deadlineMillis;
+        private Entry<E> previous;
+        private Entry<E> next;
+
+        private Entry(E element, long deadlineMillis) {
+            this.element = element;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public E getElement() {
+            return element;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        private boolean isLinked() {
+            return next != null;
+        }
+
+        private void linkBefore(Entry<E> head) {
+            previous = head.previous;
+            next = head;
+            head.previous.next = this;
+            head.previous = this;
+        }
+
+        private void unlink() {
+            previous.next = next;
+            next.previous = previous;
+            previous = null;
+            next = null;
+        }
+
+        /** Turns a sentinel into an empty list. */
+        private void clear() {
+            previous = this;
+            next = this;
+        }
+    }
+}
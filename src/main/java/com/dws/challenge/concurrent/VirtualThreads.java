@@ -0,0 +1,114 @@
+package com.dws.challenge.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Access to virtual threads (Java 21) from code compiled for Java 17. The
+ * Java 21 API is looked up reflectively once; on older runtimes
+ * {@link #isSupported()} is false and the factory methods fall back to
+ * platform threads.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Class<?> THREAD_BUILDER = builderType();
+    private static final Method BUILDER_NAME = lookup(THREAD_BUILDER, "name", String.class, long.class);
+    private static final Method BUILDER_FACTORY = lookup(THREAD_BUILDER, "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = lookup(Executors.class,
+            "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        // before Java 21 the API exists only as a preview feature
+        return Runtime.version().feature() >= 21 && OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_FACTORY != null
+                && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @param namePrefix prefix of the thread names, followed by a counter.
+     * @return a factory of virtual threads, or of daemon platform threads if
+     *         virtual threads are not supported.
+     */
+    public static ThreadFactory threadFactory(String namePrefix) {
+        if (isSupported()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn("Unable to create virtual threads, using platform threads", e);
+            }
+        }
+        return platformThreadFactory(namePrefix);
+    }
+
+    /**
+     * @return an executor starting a new virtual thread per task, or a cached
+     *         pool of platform threads if virtual threads are not supported.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = threadFactory(namePrefix);
+        if (isSupported()) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn("Unable to create a virtual thread executor, using platform threads", e);
+            }
+        }
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * @return a started thread, virtual if {@code virtual} is set and supported,
+     *         otherwise a daemon platform thread.
+     */
+    public static Thread start(String name, boolean virtual, Runnable task) {
+        Thread thread = virtual ? threadFactory(name).newThread(task) : new Thread(task);
+        thread.setName(name);
+        if (!thread.isDaemon()) {
+            thread.setDaemon(true);
+        }
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * @param namePrefix prefix of the thread names, followed by a counter.
+     * @return a factory of daemon platform threads.
+     */
+    public static ThreadFactory platformThreadFactory(String namePrefix) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, namePrefix + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Class<?> builderType() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> type, String name, Class<?>... parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
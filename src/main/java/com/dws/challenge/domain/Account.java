@@ -1,23 +1,55 @@
 package com.dws.challenge.domain;
 
 import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.hibernate.validator.constraints.NotEmpty;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
 public class Account implements Comparable<Account> {
 
+	private static final AtomicReferenceFieldUpdater<Account, BigDecimal> BALANCE = AtomicReferenceFieldUpdater
+			.newUpdater(Account.class, BigDecimal.class, "balance");
+	private static final AtomicReferenceFieldUpdater<Account, Lock> LOCK = AtomicReferenceFieldUpdater
+			.newUpdater(Account.class, Lock.class, "lock");
+
 	@NotEmpty(message = "Account Id cannot be null or empty")
 	private final String accountId;
 
 	@NotNull(message = "Initial balance can not be null")
 	@Min(value = 0, message = "Initial balance must be positive.")
-	private BigDecimal balance;
+	private volatile BigDecimal balance;
+
+	/**
+	 * Lock guarding balance mutations of this account only, so that transfers
+	 * between unrelated accounts never wait on each other. Unused when balances
+	 * are updated through {@link #compareAndSetBalance(BigDecimal, BigDecimal)}.
+	 * A {@link Lock} rather than {@code synchronized}, so that a virtual thread
+	 * waiting for it releases its carrier thread. Created on first use, with
+	 * the fairness asked for by whoever takes it first.
+	 */
+	@JsonIgnore
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private volatile Lock lock;
 
 	public Account(String accountId) {
 		this.accountId = accountId;
@@ -29,6 +61,65 @@ public class Account implements Comparable<Account> {
 		this.balance = balance;
 	}
 
+	/**
+	 * Creates an account from its JSON representation. Accounts opened with a
+	 * currency keep their balance in minor units, see {@link MinorUnitsAccount}.
+	 */
+	@JsonCreator
+	public static Account of(@JsonProperty("accountId") String accountId, @JsonProperty("balance") BigDecimal balance,
+			@JsonProperty("currency") String currency) {
+		if (currency == null) {
+			return new Account(accountId, balance);
+		}
+		if (balance == null) {
+			throw new IllegalArgumentException("Initial balance can not be null");
+		}
+		return new MinorUnitsAccount(accountId, balance, currency);
+	}
+
+	/**
+	 * @return the lock of this account, unfair if this call creates it.
+	 */
+	public final Lock getLock() {
+		return getLock(false);
+	}
+
+	/**
+	 * Returns the lock of this account, creating it on the first call.
+	 *
+	 * @param fair whether the lock grants itself to the longest waiting thread
+	 *             rather than let a thread arriving as it is released take it
+	 *             first, see {@link ReentrantLock#ReentrantLock(boolean)}; only
+	 *             applies when this call creates the lock.
+	 */
+	public Lock getLock(boolean fair) {
+		Lock current = lock;
+		if (current == null) {
+			LOCK.compareAndSet(this, null, new ReentrantLock(fair));
+			current = lock;
+		}
+		return current;
+	}
+
+	/**
+	 * @return whether the balance can change by the amount without losing digits,
+	 *         always the case unless balances are stored with a fixed number of
+	 *         decimal places.
+	 */
+	public boolean canHold(BigDecimal amount) {
+		return true;
+	}
+
+	/**
+	 * Atomically replaces the balance if it is still the instance previously read
+	 * through {@link #getBalance()}.
+	 *
+	 * @return true if the balance was replaced.
+	 */
+	public boolean compareAndSetBalance(BigDecimal expectedBalance, BigDecimal newBalance) {
+		return BALANCE.compareAndSet(this, expectedBalance, newBalance);
+	}
+
 	@Override
 	public int compareTo(Account o) {
 		return this.accountId.compareTo(o.accountId);
@@ -0,0 +1,293 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Account receiving so many concurrent deposits that a single lock would
+ * serialize them. Its balance is split, like a {@code LongAdder}, into
+ * sub-balances held in stripes; a deposit only locks the stripe of the calling
+ * thread. Deposits arriving while their stripe is locked are queued in the
+ * stripe and applied by whichever thread holds it next, as one combined delta.
+ * <p>
+ * A withdrawal is taken from the caller's stripe when it covers the amount and
+ * borrows from the other stripes otherwise, locking all of them. Reading the
+ * balance also locks every stripe, so {@link #getBalance()} is exact: it
+ * includes every deposit and withdrawal that has completed. {@link #getLock()}
+ * returns a lock over all stripes, so code treating this as a plain account
+ * stays correct, only without the striping benefit.
+ */
+public class HotAccount extends Account {
+
+	private static final int SPINS_BEFORE_LOCK = 64;
+
+	private final Stripe[] stripes;
+	private final Lock allStripesLock = new AllStripesLock();
+
+	/**
+	 * @param account account whose id and balance the hot account starts with
+	 * @param stripes number of sub-balances, at least 1
+	 */
+	public HotAccount(Account account, int stripes) {
+		super(account.getAccountId(), account.getBalance());
+		if (stripes < 1) {
+			throw new IllegalArgumentException("A hot account needs at least one stripe");
+		}
+		this.stripes = new Stripe[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.stripes[0].value = account.getBalance();
+	}
+
+	/**
+	 * Credits the amount to the stripe of the calling thread. Returns once the
+	 * amount is part of the balance, possibly applied by another thread together
+	 * with its own deposit.
+	 */
+	public void deposit(BigDecimal amount) {
+		Stripe stripe = stripeOfCurrentThread();
+		stripe.pending.accumulateAndGet(amount, BigDecimal::add);
+		long ticket = stripe.arrivals.incrementAndGet();
+		for (int spins = 0; stripe.applied < ticket; spins++) {
+			if (stripe.lock.tryLock()) {
+				applyPendingAndUnlock(stripe);
+				return;
+			}
+			if (spins >= SPINS_BEFORE_LOCK) {
+				stripe.lock.lock();
+				applyPendingAndUnlock(stripe);
+				return;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Debits the amount from the stripe of the calling thread, borrowing from the
+	 * other stripes if that stripe alone does not cover it.
+	 *
+	 * @return true if the amount was debited, false if the whole balance is
+	 *         insufficient.
+	 */
+	public boolean withdraw(BigDecimal amount) {
+		Stripe stripe = stripeOfCurrentThread();
+		stripe.lock.lock();
+		try {
+			stripe.applyPending();
+			if (stripe.value.compareTo(amount) >= 0) {
+				stripe.value = stripe.value.subtract(amount);
+				return true;
+			}
+		} finally {
+			stripe.lock.unlock();
+		}
+		allStripesLock.lock();
+		try {
+			if (sumOfStripes().compareTo(amount) < 0) {
+				return false;
+			}
+			BigDecimal remaining = borrow(stripe, amount);
+			for (int i = 0; remaining.signum() > 0; i++) {
+				remaining = borrow(stripes[i], remaining);
+			}
+			return true;
+		} finally {
+			allStripesLock.unlock();
+		}
+	}
+
+	@Override
+	public BigDecimal getBalance() {
+		allStripesLock.lock();
+		try {
+			return sumOfStripes();
+		} finally {
+			allStripesLock.unlock();
+		}
+	}
+
+	/**
+	 * Replaces the sum of the sub-balances; deposits that have not completed yet
+	 * are applied on top of it.
+	 */
+	@Override
+	public void setBalance(BigDecimal balance) {
+		allStripesLock.lock();
+		try {
+			stripes[0].value = balance;
+			for (int i = 1; i < stripes.length; i++) {
+				stripes[i].value = BigDecimal.ZERO;
+			}
+		} finally {
+			allStripesLock.unlock();
+		}
+	}
+
+	/**
+	 * Compares by value, since {@link #getBalance()} returns a new instance on
+	 * every call.
+	 */
+	@Override
+	public boolean compareAndSetBalance(BigDecimal expectedBalance, BigDecimal newBalance) {
+		allStripesLock.lock();
+		try {
+			if (sumOfStripes().compareTo(expectedBalance) != 0) {
+				return false;
+			}
+			setBalance(newBalance);
+			return true;
+		} finally {
+			allStripesLock.unlock();
+		}
+	}
+
+	@Override
+	public Lock getLock(boolean fair) {
+		return allStripesLock;
+	}
+
+	/**
+	 * Must be called with all stripes locked.
+	 */
+	private BigDecimal sumOfStripes() {
+		BigDecimal sum = BigDecimal.ZERO;
+		for (Stripe stripe : stripes) {
+			stripe.applyPending();
+			sum = sum.add(stripe.value);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the part of the amount the stripe could not cover.
+	 */
+	private static BigDecimal borrow(Stripe stripe, BigDecimal amount) {
+		BigDecimal taken = stripe.value.min(amount);
+		stripe.value = stripe.value.subtract(taken);
+		return amount.subtract(taken);
+	}
+
+	private static void applyPendingAndUnlock(Stripe stripe) {
+		try {
+			stripe.applyPending();
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	private Stripe stripeOfCurrentThread() {
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+	}
+
+	/**
+	 * One sub-balance and the deposits queued for it.
+	 */
+	private static final class Stripe {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		/** Sum of the queued deposits, guarded by nothing. */
+		private final AtomicReference<BigDecimal> pending = new AtomicReference<>(BigDecimal.ZERO);
+		/** Number of deposits queued so far; a deposit's ticket is its position. */
+		private final AtomicLong arrivals = new AtomicLong();
+		/** Tickets up to this one have been applied to the value. */
+		private volatile long applied;
+		/** Guarded by the lock. */
+		private BigDecimal value = BigDecimal.ZERO;
+
+		/**
+		 * Must be called with the lock held. A deposit queues its amount before
+		 * taking its ticket, so every ticket up to the arrivals read here is
+		 * covered by the pending sum taken afterwards.
+		 */
+		void applyPending() {
+			long arrived = arrivals.get();
+			if (arrived == applied) {
+				return;
+			}
+			value = value.add(pending.getAndSet(BigDecimal.ZERO));
+			applied = arrived;
+		}
+	}
+
+	/**
+	 * Locks every stripe, always in the same order.
+	 */
+	private final class AllStripesLock implements Lock {
+
+		@Override
+		public void lock() {
+			for (Stripe stripe : stripes) {
+				stripe.lock.lock();
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			int locked = 0;
+			try {
+				for (Stripe stripe : stripes) {
+					stripe.lock.lockInterruptibly();
+					locked++;
+				}
+			} finally {
+				if (locked < stripes.length) {
+					unlock(locked);
+				}
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			for (int i = 0; i < stripes.length; i++) {
+				if (!stripes[i].lock.tryLock()) {
+					unlock(i);
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(time);
+			int locked = 0;
+			try {
+				for (Stripe stripe : stripes) {
+					if (!stripe.lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+						return false;
+					}
+					locked++;
+				}
+				return true;
+			} finally {
+				if (locked < stripes.length) {
+					unlock(locked);
+				}
+			}
+		}
+
+		@Override
+		public void unlock() {
+			unlock(stripes.length);
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported on hot accounts");
+		}
+
+		private void unlock(int count) {
+			for (int i = count - 1; i >= 0; i--) {
+				stripes[i].lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Conversions between decimal amounts and scaled {@code long} minor units
+ * (e.g. cents). The scale of a currency is its ISO 4217 number of fraction
+ * digits.
+ */
+public final class MinorUnits {
+
+	private MinorUnits() {
+	}
+
+	/**
+	 * @return the number of fraction digits of the ISO 4217 currency code.
+	 * @throws IllegalArgumentException if the code is unknown or has no minor unit
+	 */
+	public static int scaleOf(String currencyCode) {
+		int scale = Currency.getInstance(currencyCode).getDefaultFractionDigits();
+		if (scale < 0) {
+			throw new IllegalArgumentException("Currency " + currencyCode + " has no minor unit");
+		}
+		return scale;
+	}
+
+	/**
+	 * @throws ArithmeticException if the amount has more fraction digits than the
+	 *                             scale or does not fit in a {@code long}
+	 */
+	public static long toMinorUnits(BigDecimal amount, int scale) {
+		return amount.movePointRight(scale).longValueExact();
+	}
+
+	/**
+	 * @return true if {@link #toMinorUnits(BigDecimal, int)} converts the amount
+	 *         without throwing
+	 */
+	public static boolean isRepresentable(BigDecimal amount, int scale) {
+		BigDecimal minorUnits = amount.movePointRight(scale);
+		return (minorUnits.scale() <= 0 || minorUnits.stripTrailingZeros().scale() <= 0)
+				&& minorUnits.toBigInteger().bitLength() < Long.SIZE;
+	}
+
+	public static BigDecimal toBigDecimal(long minorUnits, int scale) {
+		return BigDecimal.valueOf(minorUnits, scale);
+	}
+}
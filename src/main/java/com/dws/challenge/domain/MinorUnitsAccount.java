@@ -0,0 +1,92 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Account whose balance is held as a scaled {@code long} in the minor unit of
+ * its currency. Balance mutations through the {@code long} accessors allocate
+ * nothing; {@link #getBalance()} converts to {@link BigDecimal} for the JSON
+ * boundary only.
+ * <p>
+ * The inherited decimal field keeps the opening balance so that it can still
+ * be bean-validated; it is never read afterwards.
+ */
+@Getter
+@ToString(callSuper = true, of = "currency")
+@EqualsAndHashCode(callSuper = true, of = "currency")
+public class MinorUnitsAccount extends Account {
+
+	private static final AtomicLongFieldUpdater<MinorUnitsAccount> MINOR_BALANCE = AtomicLongFieldUpdater
+			.newUpdater(MinorUnitsAccount.class, "minorBalance");
+
+	private final String currency;
+
+	@JsonIgnore
+	private final int scale;
+
+	@JsonIgnore
+	private volatile long minorBalance;
+
+	public MinorUnitsAccount(String accountId, BigDecimal balance, String currency) {
+		super(accountId, balance);
+		this.currency = currency;
+		this.scale = MinorUnits.scaleOf(currency);
+		this.minorBalance = MinorUnits.toMinorUnits(balance, scale);
+	}
+
+	/**
+	 * For subclasses that keep the balance outside of this object and override
+	 * every balance accessor.
+	 */
+	protected MinorUnitsAccount(String accountId, String currency, int scale) {
+		super(accountId);
+		this.currency = currency;
+		this.scale = scale;
+	}
+
+	public void setMinorBalance(long minorBalance) {
+		this.minorBalance = minorBalance;
+	}
+
+	/**
+	 * Atomically replaces the minor-unit balance if it still equals the expected
+	 * value.
+	 *
+	 * @return true if the balance was replaced.
+	 */
+	public boolean compareAndSetMinorBalance(long expectedBalance, long newBalance) {
+		return MINOR_BALANCE.compareAndSet(this, expectedBalance, newBalance);
+	}
+
+	@Override
+	public BigDecimal getBalance() {
+		return MinorUnits.toBigDecimal(minorBalance, scale);
+	}
+
+	@Override
+	public void setBalance(BigDecimal balance) {
+		this.minorBalance = MinorUnits.toMinorUnits(balance, scale);
+	}
+
+	@Override
+	public boolean canHold(BigDecimal amount) {
+		return MinorUnits.isRepresentable(amount, scale);
+	}
+
+	/**
+	 * Compares by value, since {@link #getBalance()} returns a new instance on
+	 * every call.
+	 */
+	@Override
+	public boolean compareAndSetBalance(BigDecimal expectedBalance, BigDecimal newBalance) {
+		return compareAndSetMinorBalance(MinorUnits.toMinorUnits(expectedBalance, scale),
+				MinorUnits.toMinorUnits(newBalance, scale));
+	}
+}
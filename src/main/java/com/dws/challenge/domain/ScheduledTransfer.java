@@ -0,0 +1,98 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+import lombok.Value;
+import lombok.With;
+
+/**
+ * A transfer to be made at a future instant, and then again every
+ * {@code repeat} if it is recurring. The currency is optional, as for a
+ * {@link TransferInstruction}.
+ */
+@Value
+public class ScheduledTransfer {
+
+	@With
+	String id;
+
+	String fromAccountId;
+
+	String toAccountId;
+
+	BigDecimal amount;
+
+	String currency;
+
+	/**
+	 * Next time the transfer is made.
+	 */
+	@With
+	Instant executeAt;
+
+	/**
+	 * ISO 8601 interval between occurrences, a period such as {@code P1M} or a
+	 * duration such as {@code PT12H}; {@code null} for a single transfer.
+	 */
+	String repeat;
+
+	/**
+	 * @throws IllegalArgumentException if {@link #getRepeat()} is set but not a
+	 *                                  positive ISO 8601 period or duration
+	 */
+	public void validateRepeat() {
+		if (repeat == null) {
+			return;
+		}
+		try {
+			if (isDuration()) {
+				Duration interval = Duration.parse(repeat);
+				if (!interval.isNegative() && !interval.isZero()) {
+					return;
+				}
+			} else {
+				Period interval = Period.parse(repeat);
+				if (!interval.isNegative() && !interval.isZero()) {
+					return;
+				}
+			}
+		} catch (DateTimeParseException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Repeat must be a positive ISO 8601 period or duration: " + repeat);
+	}
+
+	/**
+	 * Each occurrence is the previous one plus the interval, in UTC; occurrences
+	 * missed while the application was down are skipped.
+	 *
+	 * @return the transfer with its first occurrence after the given instant, or
+	 *         {@code null} if it does not repeat
+	 */
+	public ScheduledTransfer nextOccurrenceAfter(Instant now) {
+		if (repeat == null) {
+			return null;
+		}
+		Instant next = executeAt;
+		if (isDuration()) {
+			Duration interval = Duration.parse(repeat);
+			long missed = next.isAfter(now) ? 0 : Duration.between(next, now).dividedBy(interval) + 1;
+			next = next.plus(interval.multipliedBy(missed));
+		} else {
+			Period interval = Period.parse(repeat);
+			while (!next.isAfter(now)) {
+				next = next.atZone(ZoneOffset.UTC).plus(interval).toInstant();
+			}
+		}
+		return withExecuteAt(next);
+	}
+
+	private boolean isDuration() {
+		return repeat.contains("T");
+	}
+}
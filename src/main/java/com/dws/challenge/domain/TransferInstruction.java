@@ -0,0 +1,21 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.Value;
+
+/**
+ * One transfer of a batch. The currency is optional and, when present, must
+ * be the currency both accounts are held in.
+ */
+@Value
+public class TransferInstruction {
+
+	String fromAccountId;
+
+	String toAccountId;
+
+	BigDecimal amount;
+
+	String currency;
+}
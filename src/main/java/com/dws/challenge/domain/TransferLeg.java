@@ -0,0 +1,18 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.Value;
+
+/**
+ * One leg of a multi-leg transfer: a change of the balance of one account,
+ * negative for a debit and positive for a credit. The legs of a transfer sum
+ * to zero.
+ */
+@Value
+public class TransferLeg {
+
+	String accountId;
+
+	BigDecimal amount;
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.domain;
+
+import lombok.Value;
+
+/**
+ * Result of one transfer of a batch, identified by its position in the batch.
+ */
+@Value
+public class TransferOutcome {
+
+	int index;
+
+	String fromAccountId;
+
+	String toAccountId;
+
+	boolean success;
+
+	/**
+	 * Reason of the failure, {@code null} on success.
+	 */
+	String message;
+}
@@ -0,0 +1,16 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown when the locks of an operation could not be acquired before the lock
+ * timeout or the deadline of the request. The result-returning methods of the
+ * accounts service report it as a result, and the throwing transfer methods as
+ * a {@link LockException}.
+ */
+public class LockTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 2087340567382946712L;
+
+    public LockTimeoutException(final String message) {
+        // thrown to shed load, so skip the stack trace
+        super(message, null, false, false);
+    }
+}
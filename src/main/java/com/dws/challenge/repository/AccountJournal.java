@@ -0,0 +1,500 @@
+package com.dws.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only write-ahead log of account creations and balances, split into
+ * fixed-size memory-mapped segment files.
+ * <p>
+ * Each record is {@code length, crc32, payload}; a zero length marks the end of
+ * the written data, and a record whose checksum does not match is treated as a
+ * torn write and ends the replay. A balance record holds the balances one
+ * write produced, all of them in one record so that a write is replayed whole
+ * or not at all. Records are appended while the write still excludes other
+ * writes on the same accounts (see
+ * {@link AccountsRepository#requiresOrderedSaves()}), so every write is
+ * journaled after the earlier writes on its accounts. Replaying any prefix of
+ * the journal therefore gives the balances after a set of complete writes
+ * that includes everything they depended on: money is neither created nor
+ * lost, and no balance is negative.
+ */
+@Slf4j
+class AccountJournal implements Closeable {
+
+    /**
+     * Receives the records of the journal during replay.
+     */
+    interface RecordHandler {
+
+        void accountCreated(String accountId, BigDecimal balance, String currency);
+
+        void balanceChanged(String accountId, BigDecimal balance);
+
+        void accountsCleared();
+    }
+
+    private static final byte CREATE = 1;
+    /** Single balance, as written by earlier versions; still replayed. */
+    private static final byte BALANCE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte BALANCES = 4;
+    private static final int HEADER_SIZE = 8;
+    private static final int END_MARKER_SIZE = 4;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final JournalFsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private final Lock appendLock = new ReentrantLock();
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private long appendedRecords;
+    /** The accounts as replaying the journal up to its end gives them, guarded by the append lock. */
+    private final Map<String, JournaledAccount> journaledAccounts = new HashMap<>();
+
+    private final Lock flushLock = new ReentrantLock();
+    private final Condition flushRequested = flushLock.newCondition();
+    private final Condition flushed = flushLock.newCondition();
+    private volatile long durableRecords;
+    private volatile boolean running = true;
+    private final Thread flusher;
+
+    /**
+     * Opens the journal for appending at the given position, normally the end
+     * position returned by {@link #replay(Path, JournalPosition, RecordHandler)}.
+     *
+     * @param accounts the accounts as replayed up to that position
+     */
+    AccountJournal(Path directory, JournalPosition position, Iterable<Account> accounts, int segmentSize,
+                   JournalFsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.directory = directory;
+        for (Account account : accounts) {
+            journaledAccounts.put(account.getAccountId(),
+                    new JournaledAccount(account.getAccountId(), currencyOf(account), account.getBalance()));
+        }
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create journal directory " + directory, e);
+        }
+        if (position.offset() + END_MARKER_SIZE > segmentSize) {
+            // the segment size was lowered since the last segment was written
+            this.segmentIndex = position.segmentIndex() + 1;
+            this.segment = map(segmentIndex);
+        } else {
+            this.segmentIndex = position.segmentIndex();
+            this.segment = map(segmentIndex);
+            this.segment.position(position.offset());
+        }
+        if (fsyncPolicy == JournalFsyncPolicy.NEVER) {
+            this.flusher = null;
+        } else {
+            this.flusher = new Thread(this::flushLoop, "account-journal-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        }
+    }
+
+    /**
+     * Appends the creation of an account with its opening balance.
+     *
+     * @return the sequence number to pass to {@link #awaitDurable(long)}.
+     */
+    long appendCreate(Account account) {
+        String currency = currencyOf(account);
+        byte[] accountId = utf8(account.getAccountId());
+        byte[] currencyCode = currency == null ? new byte[0] : utf8(currency);
+        appendLock.lock();
+        try {
+            BigDecimal balance = account.getBalance();
+            byte[] unscaled = balance.unscaledValue().toByteArray();
+            reserve(1 + sizeOf(accountId) + sizeOf(currencyCode) + sizeOf(unscaled) + 4);
+            int start = beginRecord();
+            segment.put(CREATE);
+            putBytes(accountId);
+            putBytes(currencyCode);
+            putBalance(balance.scale(), unscaled);
+            long sequence = endRecord(start);
+            journaledAccounts.put(account.getAccountId(),
+                    new JournaledAccount(account.getAccountId(), currency, balance));
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the current balance of each account as one record. The caller
+     * must keep other writes off these accounts until the record is appended.
+     *
+     * @return the sequence number to pass to {@link #awaitDurable(long)}.
+     */
+    long appendBalances(Account... accounts) {
+        if (accounts.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many balances for one journal record: " + accounts.length);
+        }
+        byte[][] accountIds = new byte[accounts.length][];
+        BigDecimal[] balances = new BigDecimal[accounts.length];
+        byte[][] unscaled = new byte[accounts.length][];
+        int size = 1 + 2;
+        for (int i = 0; i < accounts.length; i++) {
+            accountIds[i] = utf8(accounts[i].getAccountId());
+            balances[i] = accounts[i].getBalance();
+            unscaled[i] = balances[i].unscaledValue().toByteArray();
+            size += sizeOf(accountIds[i]) + sizeOf(unscaled[i]) + 4;
+        }
+        appendLock.lock();
+        try {
+            reserve(size);
+            int start = beginRecord();
+            segment.put(BALANCES);
+            segment.putShort((short) accounts.length);
+            for (int i = 0; i < accounts.length; i++) {
+                putBytes(accountIds[i]);
+                putBalance(balances[i].scale(), unscaled[i]);
+            }
+            long sequence = endRecord(start);
+            for (int i = 0; i < accounts.length; i++) {
+                BigDecimal balance = balances[i];
+                journaledAccounts.computeIfPresent(accounts[i].getAccountId(),
+                        (accountId, journaled) -> new JournaledAccount(accountId, journaled.currency(), balance));
+            }
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return the sequence number to pass to {@link #awaitDurable(long)}.
+     */
+    long appendClear() {
+        appendLock.lock();
+        try {
+            reserve(1);
+            int start = beginRecord();
+            segment.put(CLEAR);
+            long sequence = endRecord(start);
+            journaledAccounts.clear();
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Waits, if the fsync policy requires it, until every record up to the
+     * given sequence number is on disk. Concurrent callers are served by the
+     * same fsync.
+     */
+    void awaitDurable(long sequence) {
+        if (fsyncPolicy != JournalFsyncPolicy.ALWAYS || durableRecords >= sequence) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushRequested.signal();
+            while (durableRecords < sequence && running) {
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the accounts as replaying the whole journal would give them,
+     * together with the position the next record will be written at. Only
+     * journaled balances are included, never one a write has changed in memory
+     * but not appended yet, so a snapshot of them lines up with the journal.
+     */
+    Cut cut() {
+        appendLock.lock();
+        try {
+            return new Cut(new JournalPosition(segmentIndex, segment.position()),
+                    new ArrayList<>(journaledAccounts.values()));
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments entirely covered by a snapshot.
+     */
+    void deleteSegmentsBefore(long firstNeededSegment) {
+        for (long index = firstNeededSegment - 1; index >= 0; index--) {
+            try {
+                if (!Files.deleteIfExists(segmentFile(directory, index))) {
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Unable to delete journal segment {}", index, e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (flusher != null) {
+            flushLock.lock();
+            try {
+                flushRequested.signalAll();
+                flushed.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        appendLock.lock();
+        try {
+            segment.force();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Replays every record from the given position to the end of the journal.
+     *
+     * @return the position right after the last valid record.
+     */
+    static JournalPosition replay(Path directory, JournalPosition from, RecordHandler handler) {
+        long index = from.segmentIndex();
+        int offset = from.offset();
+        while (true) {
+            Path file = segmentFile(directory, index);
+            if (!Files.exists(file)) {
+                return new JournalPosition(index, offset);
+            }
+            int end = replaySegment(file, offset, handler);
+            if (!Files.exists(segmentFile(directory, index + 1))) {
+                return new JournalPosition(index, end);
+            }
+            index++;
+            offset = 0;
+        }
+    }
+
+    private static int replaySegment(Path file, int offset, RecordHandler handler) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position(offset);
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    return start;
+                }
+                crc.reset();
+                crc.update(buffer.slice(buffer.position(), length));
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Ignoring torn journal record at offset {} of {}", start, file);
+                    return start;
+                }
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                byte type = payload.get();
+                switch (type) {
+                    case CREATE -> {
+                        String accountId = getString(payload);
+                        String currency = getString(payload);
+                        handler.accountCreated(accountId, getBalance(payload), currency.isEmpty() ? null : currency);
+                    }
+                    case BALANCE -> handler.balanceChanged(getString(payload), getBalance(payload));
+                    case BALANCES -> {
+                        for (int count = payload.getShort(); count > 0; count--) {
+                            handler.balanceChanged(getString(payload), getBalance(payload));
+                        }
+                    }
+                    case CLEAR -> handler.accountsCleared();
+                    default -> throw new IllegalStateException("Unknown journal record type " + type + " in " + file);
+                }
+            }
+            return buffer.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to replay journal segment " + file, e);
+        }
+    }
+
+    static Path segmentFile(Path directory, long index) {
+        return directory.resolve(String.format("journal-%016d.log", index));
+    }
+
+    private void reserve(int payloadSize) {
+        int recordSize = HEADER_SIZE + payloadSize + END_MARKER_SIZE;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + recordSize + " bytes exceeds the segment size");
+        }
+        if (segment.remaining() < recordSize) {
+            if (fsyncPolicy != JournalFsyncPolicy.NEVER) {
+                segment.force();
+            }
+            segmentIndex++;
+            segment = map(segmentIndex);
+        }
+    }
+
+    private int beginRecord() {
+        int start = segment.position();
+        segment.position(start + HEADER_SIZE);
+        return start;
+    }
+
+    private long endRecord(int start) {
+        int end = segment.position();
+        int length = end - start - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(segment.slice(start + HEADER_SIZE, length));
+        segment.putInt(end, 0);
+        segment.putInt(start + 4, (int) crc.getValue());
+        segment.putInt(start, length);
+        return ++appendedRecords;
+    }
+
+    private void putBytes(byte[] bytes) {
+        segment.putShort((short) bytes.length);
+        segment.put(bytes);
+    }
+
+    private void putBalance(int scale, byte[] unscaled) {
+        segment.putInt(scale);
+        putBytes(unscaled);
+    }
+
+    private static String getString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal getBalance(ByteBuffer payload) {
+        int scale = payload.getInt();
+        byte[] unscaled = new byte[payload.getShort()];
+        payload.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal field of " + bytes.length + " bytes is too long");
+        }
+        return 2 + bytes.length;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer map(long index) {
+        try (FileChannel channel = FileChannel.open(segmentFile(directory, index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map journal segment " + index + " in " + directory, e);
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            flushLock.lock();
+            try {
+                if (fsyncPolicy == JournalFsyncPolicy.ALWAYS) {
+                    while (running && durableRecords >= appendedRecordsSnapshot()) {
+                        flushRequested.awaitUninterruptibly();
+                    }
+                } else {
+                    flushRequested.awaitNanos(fsyncIntervalNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                flushLock.unlock();
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        MappedByteBuffer current;
+        long target;
+        appendLock.lock();
+        try {
+            current = segment;
+            target = appendedRecords;
+        } finally {
+            appendLock.unlock();
+        }
+        if (target > durableRecords) {
+            // earlier segments were forced when the journal rolled over
+            current.force();
+            flushLock.lock();
+            try {
+                durableRecords = target;
+                flushed.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private long appendedRecordsSnapshot() {
+        appendLock.lock();
+        try {
+            return appendedRecords;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private static String currencyOf(Account account) {
+        return account instanceof MinorUnitsAccount minorUnitsAccount ? minorUnitsAccount.getCurrency() : null;
+    }
+
+    record JournaledAccount(String accountId, String currency, BigDecimal balance) {
+    }
+
+    /**
+     * @param position where the next record will be written
+     * @param accounts the accounts as of that position
+     */
+    record Cut(JournalPosition position, List<JournaledAccount> accounts) {
+    }
+}
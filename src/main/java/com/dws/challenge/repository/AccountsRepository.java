@@ -1,5 +1,12 @@
 package com.dws.challenge.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InvalidAccountException;
@@ -9,7 +16,91 @@ public interface AccountsRepository {
 
     void createAccount(Account account) throws DuplicateAccountIdException;
 
+    /**
+     * Creates many accounts at once, skipping those whose id already exists.
+     *
+     * @return the given accounts that were not created, in no particular order
+     */
+    default List<Account> createAccounts(List<Account> accounts) {
+        List<Account> skipped = new ArrayList<>();
+        for (Account account : accounts) {
+            try {
+                createAccount(account);
+            } catch (DuplicateAccountIdException e) {
+                skipped.add(account);
+            }
+        }
+        return skipped;
+    }
+
     Account getAccount(String accountId) throws AccountNotFoundException, InvalidAccountException;
 
+    /**
+     * Looks up an account without failing: unlike {@link #getAccount(String)}
+     * nothing is thrown or logged for an empty or unknown id.
+     *
+     * @return the account, or null if the id is empty or unknown
+     */
+    default Account findAccount(String accountId) {
+        try {
+            return getAccount(accountId);
+        } catch (AccountNotFoundException | InvalidAccountException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up many accounts in one call. Ids that are empty or unknown are
+     * left out of the result rather than failing the lookup.
+     *
+     * @return the accounts found, by id, in the order of the given ids
+     */
+    default Map<String, Account> getAccounts(Collection<String> accountIds) {
+        Map<String, Account> found = new LinkedHashMap<>();
+        for (String accountId : accountIds) {
+            try {
+                found.put(accountId, getAccount(accountId));
+            } catch (AccountNotFoundException | InvalidAccountException e) {
+                // left out of the result
+            }
+        }
+        return found;
+    }
+
     void clearAccounts();
+
+    int getAccountCount();
+
+    /**
+     * Passes every account to the action, in no particular order and without
+     * copying the accounts first. Accounts created during the iteration may or
+     * may not be seen.
+     */
+    void forEachAccount(Consumer<Account> action);
+
+    /**
+     * Records the current balance of accounts whose balance was just changed.
+     * Repositories that only keep accounts in memory have nothing to do.
+     *
+     * @return a ticket to pass to {@link #awaitSaved(long)}
+     */
+    default long saveBalances(Account... accounts) {
+        return 0;
+    }
+
+    /**
+     * Waits until the balances saved with the ticket are stored, which callers
+     * do after letting other writes at the accounts again.
+     */
+    default void awaitSaved(long ticket) {
+    }
+
+    /**
+     * @return whether {@link #saveBalances(Account...)} must be called while no
+     *         other write can change the accounts, so that saves are made in the
+     *         order the balances changed
+     */
+    default boolean requiresOrderedSaves() {
+        return false;
+    }
 }
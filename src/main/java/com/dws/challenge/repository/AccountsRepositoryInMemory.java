@@ -1,11 +1,21 @@
 package com.dws.challenge.repository;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.HotAccount;
+import com.dws.challenge.domain.MinorUnitsAccount;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InvalidAccountException;
@@ -15,18 +25,59 @@ import lombok.extern.slf4j.Slf4j;
 
 @Repository
 @Slf4j
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    protected final Map<String, Account> accounts;
+    private final Set<String> hotAccountIds;
+    private final int hotAccountStripes;
+
+    public AccountsRepositoryInMemory() {
+        this(Set.of(), 0);
+    }
+
+    public AccountsRepositoryInMemory(Set<String> hotAccountIds, int hotAccountStripes) {
+        this(16, hotAccountIds, hotAccountStripes);
+    }
+
+    /**
+     * @param initialCapacity   number of accounts the map is sized for up front,
+     *                          so that loading a large book does not rehash it
+     *                          over and over
+     * @param hotAccountIds     accounts created with one of these ids are stored
+     *                          as {@link HotAccount}s
+     * @param hotAccountStripes sub-balances per hot account, or 0 for one per
+     *                          available processor
+     */
+    @Autowired
+    public AccountsRepositoryInMemory(@Value("${accounts.memory.initial-capacity:16}") int initialCapacity,
+                                      @Value("${accounts.hot.ids:}") Set<String> hotAccountIds,
+                                      @Value("${accounts.hot.stripes:0}") int hotAccountStripes) {
+        this.accounts = new ConcurrentHashMap<>(initialCapacity);
+        this.hotAccountIds = Set.copyOf(hotAccountIds);
+        this.hotAccountStripes = hotAccountStripes > 0 ? hotAccountStripes
+                : Runtime.getRuntime().availableProcessors();
+    }
 
     @Override
     public void createAccount(Account account) throws DuplicateAccountIdException {
-        Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
+        Account previousAccount = accounts.putIfAbsent(account.getAccountId(), toStoredAccount(account));
         if (previousAccount != null) {
             throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
         }
     }
 
+    /**
+     * Inserts the accounts in parallel; the map's bins are updated independently,
+     * so the inserting threads rarely contend.
+     */
+    @Override
+    public List<Account> createAccounts(List<Account> newAccounts) {
+        return newAccounts.parallelStream()
+                .filter(account -> accounts.putIfAbsent(account.getAccountId(), toStoredAccount(account)) != null)
+                .toList();
+    }
+
     @Override
     public Account getAccount(String accountId) throws InvalidAccountException, AccountNotFoundException {
         if (StringUtils.isEmpty(accountId)) {
@@ -45,10 +96,53 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
         return account;
     }
 
+    @Override
+    public Account findAccount(String accountId) {
+        return accountId == null ? null : accounts.get(accountId);
+    }
+
+    @Override
+    public Map<String, Account> getAccounts(Collection<String> accountIds) {
+        Map<String, Account> found = new LinkedHashMap<>();
+        for (String accountId : accountIds) {
+            Account account = accountId == null ? null : accounts.get(accountId);
+            if (account != null) {
+                found.put(accountId, account);
+            }
+        }
+        return found;
+    }
+
     @Override
     public void clearAccounts() {
         accounts.clear();
 
     }
 
+    @Override
+    public int getAccountCount() {
+        return accounts.size();
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        accounts.values().forEach(action);
+    }
+
+    /**
+     * Balances of accounts held in minor units are already updated without
+     * decimal arithmetic and are not split; only accounts without a currency
+     * can be hot.
+     */
+    private Account toStoredAccount(Account account) {
+        if (!hotAccountIds.contains(account.getAccountId())) {
+            return account;
+        }
+        if (account instanceof MinorUnitsAccount) {
+            log.warn("Account {} is held in minor units and is not stored as a hot account", account.getAccountId());
+            return account;
+        }
+        return new HotAccount(account, hotAccountStripes);
+    }
+
 }
@@ -0,0 +1,258 @@
+package com.dws.challenge.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps accounts in memory like {@link AccountsRepositoryInMemory} and makes
+ * them survive a restart: every creation and balance change is appended to an
+ * {@link AccountJournal}, and a compact snapshot of all balances is written
+ * periodically so that recovery only replays the journal written since.
+ */
+@Repository
+@Slf4j
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "journal")
+public class AccountsRepositoryJournaled extends AccountsRepositoryInMemory implements DisposableBean {
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int SNAPSHOT_MAGIC = 0x41434353;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Path directory;
+    private final AccountJournal journal;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    @Autowired
+    public AccountsRepositoryJournaled(@Value("${accounts.journal.directory:${java.io.tmpdir}/challenge-journal}") Path directory,
+                                       @Value("${accounts.journal.segment-size:67108864}") int segmentSize,
+                                       @Value("${accounts.journal.fsync:ALWAYS}") JournalFsyncPolicy fsyncPolicy,
+                                       @Value("${accounts.journal.fsync-interval-ms:10}") long fsyncIntervalMillis,
+                                       @Value("${accounts.journal.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) {
+        this.directory = directory;
+        JournalPosition position = recover();
+        this.journal = new AccountJournal(directory, position, accounts.values(), segmentSize, fsyncPolicy,
+                fsyncIntervalMillis);
+        if (snapshotIntervalSeconds > 0) {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "account-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalSeconds,
+                    snapshotIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.snapshotScheduler = null;
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        super.createAccount(account);
+        journal.awaitDurable(journal.appendCreate(account));
+    }
+
+    /**
+     * Journals the created accounts together and waits once for all of them to
+     * be durable.
+     */
+    @Override
+    public List<Account> createAccounts(List<Account> newAccounts) {
+        List<Account> skipped = super.createAccounts(newAccounts);
+        Set<Account> skippedAccounts = Collections.newSetFromMap(new IdentityHashMap<>());
+        skippedAccounts.addAll(skipped);
+        long sequence = -1;
+        for (Account account : newAccounts) {
+            if (!skippedAccounts.contains(account)) {
+                sequence = journal.appendCreate(account);
+            }
+        }
+        if (sequence >= 0) {
+            journal.awaitDurable(sequence);
+        }
+        return skipped;
+    }
+
+    @Override
+    public void clearAccounts() {
+        super.clearAccounts();
+        journal.awaitDurable(journal.appendClear());
+    }
+
+    @Override
+    public boolean requiresOrderedSaves() {
+        return true;
+    }
+
+    /**
+     * Appends the balances as one journal record; {@link #awaitSaved(long)}
+     * waits for it to be durable.
+     */
+    @Override
+    public long saveBalances(Account... accounts) {
+        return journal.appendBalances(accounts);
+    }
+
+    @Override
+    public void awaitSaved(long ticket) {
+        journal.awaitDurable(ticket);
+    }
+
+    /**
+     * Writes a snapshot of all balances and deletes the journal segments it
+     * makes redundant. The snapshot holds the balances as journaled rather
+     * than the live ones, which may include writes not journaled yet, so it is
+     * exactly what replaying the deleted segments would have given. Appends
+     * wait only while the balances are copied.
+     */
+    public void snapshot() {
+        AccountJournal.Cut cut = journal.cut();
+        JournalPosition position = cut.position();
+        writeSnapshot(position, cut.accounts());
+        journal.deleteSegmentsBefore(position.segmentIndex());
+        log.info("Snapshot of {} accounts written at journal segment {} offset {}", cut.accounts().size(),
+                position.segmentIndex(), position.offset());
+    }
+
+    /**
+     * Stops taking snapshots and closes the journal; the next start replays
+     * whatever was appended since the last snapshot.
+     */
+    @Override
+    public void destroy() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        journal.close();
+    }
+
+    private JournalPosition recover() {
+        JournalPosition snapshotPosition = readSnapshot();
+        JournalPosition end = AccountJournal.replay(directory, snapshotPosition, new AccountJournal.RecordHandler() {
+
+            @Override
+            public void accountCreated(String accountId, BigDecimal balance, String currency) {
+                accounts.put(accountId, Account.of(accountId, balance, currency));
+            }
+
+            @Override
+            public void balanceChanged(String accountId, BigDecimal balance) {
+                Account account = accounts.get(accountId);
+                if (account != null) {
+                    account.setBalance(balance);
+                }
+            }
+
+            @Override
+            public void accountsCleared() {
+                accounts.clear();
+            }
+        });
+        log.info("Recovered {} accounts from {}", accounts.size(), directory);
+        return end;
+    }
+
+    private JournalPosition readSnapshot() {
+        CRC32 crc = new CRC32();
+        try (InputStream file = Files.newInputStream(directory.resolve(SNAPSHOT_FILE));
+             DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(file), crc))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IllegalStateException("Unsupported snapshot format in " + directory);
+            }
+            JournalPosition position = new JournalPosition(in.readLong(), in.readInt());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String accountId = in.readUTF();
+                String currency = in.readBoolean() ? in.readUTF() : null;
+                int scale = in.readInt();
+                byte[] unscaled = new byte[in.readUnsignedShort()];
+                in.readFully(unscaled);
+                accounts.put(accountId, Account.of(accountId, new BigDecimal(new BigInteger(unscaled), scale), currency));
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IllegalStateException("Snapshot in " + directory + " is corrupted");
+            }
+            return position;
+        } catch (NoSuchFileException e) {
+            return JournalPosition.START;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read snapshot in " + directory, e);
+        }
+    }
+
+    private void writeSnapshot(JournalPosition position, List<AccountJournal.JournaledAccount> entries) {
+        Path target = directory.resolve(SNAPSHOT_FILE);
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file), crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(position.segmentIndex());
+            out.writeInt(position.offset());
+            out.writeInt(entries.size());
+            for (AccountJournal.JournaledAccount entry : entries) {
+                out.writeUTF(entry.accountId());
+                out.writeBoolean(entry.currency() != null);
+                if (entry.currency() != null) {
+                    out.writeUTF(entry.currency());
+                }
+                byte[] unscaled = entry.balance().unscaledValue().toByteArray();
+                out.writeInt(entry.balance().scale());
+                out.writeShort(unscaled.length);
+                out.write(unscaled);
+            }
+            out.writeLong(crc.getValue());
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot in " + directory, e);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to replace snapshot in " + directory, e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Unable to write account snapshot", e);
+        }
+    }
+}
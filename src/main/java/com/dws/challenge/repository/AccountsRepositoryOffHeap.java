@@ -0,0 +1,118 @@
+package com.dws.challenge.repository;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidAccountException;
+
+import io.micrometer.common.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Repository for very large numbers of accounts: balances live in an
+ * {@link OffHeapAccountStore} and {@link #getAccount(String)} returns a
+ * flyweight view of the stored account instead of a retained object.
+ * <p>
+ * Balances of accounts opened without a currency are stored with a fixed
+ * number of decimal places ({@code accounts.offheap.scale}); amounts with more
+ * decimal places are rejected. Account ids are limited to
+ * {@value OffHeapAccountStore#MAX_ID_LENGTH} characters.
+ */
+@Repository
+@Slf4j
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "offheap")
+public class AccountsRepositoryOffHeap implements AccountsRepository, DisposableBean {
+
+    private final OffHeapAccountStore store;
+
+    @Autowired
+    public AccountsRepositoryOffHeap(@Value("${accounts.offheap.capacity:1048576}") int capacity,
+                                     @Value("${accounts.offheap.lock-stripes:4096}") int lockStripes,
+                                     @Value("${accounts.offheap.scale:2}") int scale,
+                                     @Value("${accounts.offheap.file:}") String file) {
+        this.store = new OffHeapAccountStore(capacity, lockStripes, scale, file.isEmpty() ? null : Path.of(file));
+        log.info("Off-heap account store opened with {} accounts", store.size());
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        if (!store.insert(account)) {
+            throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) throws AccountNotFoundException, InvalidAccountException {
+        if (StringUtils.isEmpty(accountId)) {
+            InvalidAccountException invalidAccountException = new InvalidAccountException(
+                    "Account can not be null or empty");
+            log.error(invalidAccountException.getMessage(), invalidAccountException);
+            throw invalidAccountException;
+        }
+        int slot = store.find(accountId);
+        if (slot < 0) {
+            AccountNotFoundException accountNotFoundException = new AccountNotFoundException(
+                    "Account with id : " + accountId + " does not exist");
+            log.error(accountNotFoundException.getMessage(), accountNotFoundException);
+            throw accountNotFoundException;
+        }
+        return store.view(slot, accountId);
+    }
+
+    @Override
+    public Account findAccount(String accountId) {
+        int slot = StringUtils.isEmpty(accountId) ? -1 : store.find(accountId);
+        return slot < 0 ? null : store.view(slot, accountId);
+    }
+
+    @Override
+    public Map<String, Account> getAccounts(Collection<String> accountIds) {
+        Map<String, Account> found = new LinkedHashMap<>();
+        for (String accountId : accountIds) {
+            int slot = StringUtils.isEmpty(accountId) ? -1 : store.find(accountId);
+            if (slot >= 0) {
+                found.put(accountId, store.view(slot, accountId));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void clearAccounts() {
+        store.clear();
+    }
+
+    @Override
+    public int getAccountCount() {
+        return store.size();
+    }
+
+    /**
+     * Passes a view of each stored slot; slots are filled in order, so the
+     * iteration stops at the size read when it starts.
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        int size = store.size();
+        for (int slot = 0; slot < size; slot++) {
+            action.accept(store.view(slot, store.accountId(slot)));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        store.close();
+    }
+}
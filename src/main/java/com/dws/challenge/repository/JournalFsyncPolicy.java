@@ -0,0 +1,24 @@
+package com.dws.challenge.repository;
+
+/**
+ * When journal writes are forced to disk.
+ */
+public enum JournalFsyncPolicy {
+
+    /**
+     * A mutation returns once its record is on disk. Concurrent writers share
+     * one fsync (group commit).
+     */
+    ALWAYS,
+
+    /**
+     * The journal is forced at a fixed interval; a crash may lose the mutations
+     * of the last interval.
+     */
+    INTERVAL,
+
+    /**
+     * Flushing is left to the operating system.
+     */
+    NEVER
+}
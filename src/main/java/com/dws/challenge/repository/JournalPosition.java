@@ -0,0 +1,9 @@
+package com.dws.challenge.repository;
+
+/**
+ * Position in the journal: a segment and a byte offset within it.
+ */
+record JournalPosition(long segmentIndex, int offset) {
+
+    static final JournalPosition START = new JournalPosition(0, 0);
+}
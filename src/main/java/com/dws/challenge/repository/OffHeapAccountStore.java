@@ -0,0 +1,446 @@
+package com.dws.challenge.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnits;
+import com.dws.challenge.domain.MinorUnitsAccount;
+
+/**
+ * Fixed-capacity account table kept outside of the Java heap.
+ * <p>
+ * Every account occupies one fixed-layout slot holding its balance as an
+ * unscaled {@code long}, the scale, the currency and the account id. Slots are
+ * allocated in chunks, either direct buffers or regions of a memory-mapped
+ * file, and are found through an open-addressing index of
+ * {@code (id hash, slot)} pairs packed in a preallocated {@code long} array.
+ * The heap footprint therefore does not grow with the number of accounts.
+ * <p>
+ * {@link #view(int, String)} returns a short-lived {@link Account} whose accessors read
+ * and write the slot directly. Views of the same account share one of a fixed
+ * set of striped locks, and order themselves by stripe so that the per-account
+ * lock ordering of the balance engines cannot deadlock.
+ */
+class OffHeapAccountStore {
+
+    static final int MAX_ID_LENGTH = 28;
+
+    private static final int SLOT_SIZE = 80;
+    private static final int BALANCE_OFFSET = 0;
+    private static final int SCALE_OFFSET = 8;
+    private static final int ID_LENGTH_OFFSET = 12;
+    private static final int CURRENCY_OFFSET = 14;
+    private static final int ID_OFFSET = 24;
+    private static final int CURRENCY_LENGTH = 3;
+    private static final int CHUNK_SLOTS = 1 << 16;
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final int capacity;
+    private final int defaultScale;
+    private final ByteBuffer[] chunks;
+    private final FileChannel file;
+    private final AtomicLongArray index;
+    private final int indexMask;
+    private final Lock[] stripes;
+    private final int stripeMask;
+    private final Lock insertLock = new ReentrantLock();
+    private volatile int size;
+
+    /**
+     * @param capacity     maximum number of accounts, rounded up to a whole chunk.
+     * @param lockStripes  number of locks shared by the accounts, rounded up to a power of two.
+     * @param defaultScale scale of the balances of accounts opened without a currency.
+     * @param file         file to map the slots from, or null to use direct memory.
+     */
+    OffHeapAccountStore(int capacity, int lockStripes, int defaultScale, Path file) {
+        if (capacity < 1 || lockStripes < 1) {
+            throw new IllegalArgumentException("Capacity and lock stripes must be positive");
+        }
+        int chunkCount = (capacity + CHUNK_SLOTS - 1) / CHUNK_SLOTS;
+        this.capacity = chunkCount * CHUNK_SLOTS;
+        this.defaultScale = defaultScale;
+        this.chunks = new ByteBuffer[chunkCount];
+        this.index = new AtomicLongArray(powerOfTwoAtLeast(2L * this.capacity));
+        this.indexMask = index.length() - 1;
+        this.stripes = new Lock[powerOfTwoAtLeast(lockStripes)];
+        this.stripeMask = stripes.length - 1;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        try {
+            this.file = file == null ? null : FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (this.file != null) {
+                reindex();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open off-heap account file " + file, e);
+        }
+    }
+
+    /**
+     * @return the slot of the account, or -1 if there is none.
+     */
+    int find(String accountId) {
+        int hash = hash(accountId);
+        for (int i = hash & indexMask;; i = (i + 1) & indexMask) {
+            long entry = index.get(i);
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = (int) entry - 1;
+            if ((int) (entry >>> 32) == hash && idEquals(slot, accountId)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Copies the account into a new slot.
+     *
+     * @return false if an account with the same id already exists.
+     * @throws IllegalArgumentException if the id or the balance does not fit the slot layout.
+     * @throws IllegalStateException    if the store is full.
+     */
+    boolean insert(Account account) {
+        String accountId = account.getAccountId();
+        if (accountId.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Account id " + accountId + " is longer than " + MAX_ID_LENGTH + " characters");
+        }
+        String currency = account instanceof MinorUnitsAccount minorUnitsAccount ? minorUnitsAccount.getCurrency()
+                : null;
+        int scale = currency == null ? defaultScale : MinorUnits.scaleOf(currency);
+        long balance = unscaled(account.getBalance(), scale);
+        insertLock.lock();
+        try {
+            if (find(accountId) >= 0) {
+                return false;
+            }
+            int slot = size;
+            if (slot >= capacity) {
+                throw new IllegalStateException("Off-heap account store is full: " + capacity + " accounts");
+            }
+            ByteBuffer chunk = chunk(slot);
+            int base = offset(slot);
+            LONG_VIEW.setVolatile(chunk, base + BALANCE_OFFSET, balance);
+            chunk.putInt(base + SCALE_OFFSET, scale);
+            for (int i = 0; i < CURRENCY_LENGTH; i++) {
+                chunk.putChar(base + CURRENCY_OFFSET + 2 * i, currency == null ? 0 : currency.charAt(i));
+            }
+            for (int i = 0; i < accountId.length(); i++) {
+                chunk.putChar(base + ID_OFFSET + 2 * i, accountId.charAt(i));
+            }
+            chunk.putShort(base + ID_LENGTH_OFFSET, (short) accountId.length());
+            publish(slot, accountId);
+            size = slot + 1;
+            return true;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    /**
+     * Removes every account. Views obtained before must not be used afterwards.
+     */
+    void clear() {
+        insertLock.lock();
+        try {
+            for (int i = 0; i < index.length(); i++) {
+                index.set(i, 0);
+            }
+            for (int slot = 0; slot < size; slot++) {
+                chunk(slot).putShort(offset(slot) + ID_LENGTH_OFFSET, (short) 0);
+            }
+            size = 0;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return a flyweight account reading and writing the given slot, which
+     *         holds the given account id.
+     */
+    Account view(int slot, String accountId) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        int scale = chunk.getInt(base + SCALE_OFFSET);
+        if (chunk.getChar(base + CURRENCY_OFFSET) == 0) {
+            return new OffHeapAccount(this, slot, accountId, scale);
+        }
+        char[] currency = new char[CURRENCY_LENGTH];
+        for (int i = 0; i < CURRENCY_LENGTH; i++) {
+            currency[i] = chunk.getChar(base + CURRENCY_OFFSET + 2 * i);
+        }
+        return new OffHeapMinorUnitsAccount(this, slot, accountId, new String(currency), scale);
+    }
+
+    /**
+     * @return the id of the account held in the slot.
+     */
+    String accountId(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        char[] id = new char[chunk.getShort(base + ID_LENGTH_OFFSET)];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = chunk.getChar(base + ID_OFFSET + 2 * i);
+        }
+        return new String(id);
+    }
+
+    void close() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to close off-heap account file", e);
+            }
+        }
+    }
+
+    long balance(int slot) {
+        return (long) LONG_VIEW.getVolatile(chunk(slot), offset(slot) + BALANCE_OFFSET);
+    }
+
+    void setBalance(int slot, long balance) {
+        LONG_VIEW.setVolatile(chunk(slot), offset(slot) + BALANCE_OFFSET, balance);
+    }
+
+    boolean compareAndSetBalance(int slot, long expectedBalance, long newBalance) {
+        return LONG_VIEW.compareAndSet(chunk(slot), offset(slot) + BALANCE_OFFSET, expectedBalance, newBalance);
+    }
+
+    Lock lock(int slot) {
+        return stripes[slot & stripeMask];
+    }
+
+    int stripe(int slot) {
+        return slot & stripeMask;
+    }
+
+    static long unscaled(BigDecimal balance, int scale) {
+        try {
+            return balance.setScale(scale).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "Balance " + balance + " can not be stored with " + scale + " decimal places", e);
+        }
+    }
+
+    private boolean idEquals(int slot, String accountId) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        if (chunk.getShort(base + ID_LENGTH_OFFSET) != accountId.length()) {
+            return false;
+        }
+        for (int i = 0; i < accountId.length(); i++) {
+            if (chunk.getChar(base + ID_OFFSET + 2 * i) != accountId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes a fully written slot visible to {@link #find(String)}; the volatile
+     * index write orders the slot contents before it.
+     */
+    private void publish(int slot, String accountId) {
+        int hash = hash(accountId);
+        int i = hash & indexMask;
+        while (index.get(i) != 0) {
+            i = (i + 1) & indexMask;
+        }
+        index.set(i, ((long) hash << 32) | (slot + 1L));
+    }
+
+    /**
+     * Rebuilds the index from the slots already present in the mapped file.
+     */
+    private void reindex() throws IOException {
+        int slot = 0;
+        while (slot < capacity && (long) slot * SLOT_SIZE < file.size()
+                && chunk(slot).getShort(offset(slot) + ID_LENGTH_OFFSET) > 0) {
+            publish(slot, accountId(slot));
+            slot++;
+        }
+        size = slot;
+    }
+
+    private ByteBuffer chunk(int slot) {
+        int chunkIndex = slot / CHUNK_SLOTS;
+        ByteBuffer chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            // allocated by the inserting thread and published through the index, or on reindex
+            chunk = allocate(chunkIndex);
+            chunks[chunkIndex] = chunk;
+        }
+        return chunk;
+    }
+
+    private ByteBuffer allocate(int chunkIndex) {
+        int chunkBytes = CHUNK_SLOTS * SLOT_SIZE;
+        if (file == null) {
+            return ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        try {
+            return file.map(FileChannel.MapMode.READ_WRITE, (long) chunkIndex * chunkBytes, chunkBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map off-heap account chunk " + chunkIndex, e);
+        }
+    }
+
+    private static int offset(int slot) {
+        return (slot % CHUNK_SLOTS) * SLOT_SIZE;
+    }
+
+    private static int hash(String accountId) {
+        int hash = accountId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int powerOfTwoAtLeast(long value) {
+        long powerOfTwo = Long.highestOneBit(Math.max(1, value - 1)) << 1;
+        if (powerOfTwo > 1 << 30) {
+            throw new IllegalArgumentException("Off-heap account store capacity too large: " + value);
+        }
+        return (int) powerOfTwo;
+    }
+
+    /**
+     * Orders views by lock stripe first so that locks are always taken in the
+     * same order; accounts sharing a stripe share a reentrant lock.
+     */
+    private static int compareViews(OffHeapAccountStore store, int slot, String accountId, Account other) {
+        if (other instanceof OffHeapAccount view && view.store == store) {
+            return compare(store, slot, accountId, view.slot, view.getAccountId());
+        }
+        if (other instanceof OffHeapMinorUnitsAccount view && view.store == store) {
+            return compare(store, slot, accountId, view.slot, view.getAccountId());
+        }
+        return accountId.compareTo(other.getAccountId());
+    }
+
+    private static int compare(OffHeapAccountStore store, int slot, String accountId, int otherSlot,
+                               String otherAccountId) {
+        int byStripe = Integer.compare(store.stripe(slot), store.stripe(otherSlot));
+        return byStripe != 0 ? byStripe : accountId.compareTo(otherAccountId);
+    }
+
+    private static final class OffHeapAccount extends Account {
+
+        private final OffHeapAccountStore store;
+        private final int slot;
+        private final int scale;
+
+        OffHeapAccount(OffHeapAccountStore store, int slot, String accountId, int scale) {
+            super(accountId);
+            this.store = store;
+            this.slot = slot;
+            this.scale = scale;
+        }
+
+        @Override
+        public BigDecimal getBalance() {
+            return BigDecimal.valueOf(store.balance(slot), scale);
+        }
+
+        @Override
+        public void setBalance(BigDecimal balance) {
+            store.setBalance(slot, unscaled(balance, scale));
+        }
+
+        @Override
+        public boolean compareAndSetBalance(BigDecimal expectedBalance, BigDecimal newBalance) {
+            return store.compareAndSetBalance(slot, unscaled(expectedBalance, scale), unscaled(newBalance, scale));
+        }
+
+        @Override
+        public boolean canHold(BigDecimal amount) {
+            return MinorUnits.isRepresentable(amount, scale);
+        }
+
+        @Override
+        public Lock getLock(boolean fair) {
+            return store.lock(slot);
+        }
+
+        @Override
+        public int compareTo(Account other) {
+            return compareViews(store, slot, getAccountId(), other);
+        }
+    }
+
+    private static final class OffHeapMinorUnitsAccount extends MinorUnitsAccount {
+
+        private final OffHeapAccountStore store;
+        private final int slot;
+
+        OffHeapMinorUnitsAccount(OffHeapAccountStore store, int slot, String accountId, String currency, int scale) {
+            super(accountId, currency, scale);
+            this.store = store;
+            this.slot = slot;
+        }
+
+        @Override
+        public long getMinorBalance() {
+            return store.balance(slot);
+        }
+
+        @Override
+        public void setMinorBalance(long minorBalance) {
+            store.setBalance(slot, minorBalance);
+        }
+
+        @Override
+        public boolean compareAndSetMinorBalance(long expectedBalance, long newBalance) {
+            return store.compareAndSetBalance(slot, expectedBalance, newBalance);
+        }
+
+        @Override
+        public BigDecimal getBalance() {
+            return MinorUnits.toBigDecimal(store.balance(slot), getScale());
+        }
+
+        @Override
+        public void setBalance(BigDecimal balance) {
+            store.setBalance(slot, unscaled(balance, getScale()));
+        }
+
+        @Override
+        public boolean compareAndSetBalance(BigDecimal expectedBalance, BigDecimal newBalance) {
+            return store.compareAndSetBalance(slot, unscaled(expectedBalance, getScale()),
+                    unscaled(newBalance, getScale()));
+        }
+
+        @Override
+        public Lock getLock(boolean fair) {
+            return store.lock(slot);
+        }
+
+        @Override
+        public int compareTo(Account other) {
+            return compareViews(store, slot, getAccountId(), other);
+        }
+    }
+}
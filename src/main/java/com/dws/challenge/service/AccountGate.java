@@ -0,0 +1,170 @@
+package com.dws.challenge.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.HotAccount;
+
+/**
+ * Keeps the single-account mutations of an engine that takes no account lock
+ * apart from multi-account changes. Accounts are hashed onto stripes; a
+ * mutation passes the stripes of its accounts in shared mode, so mutations
+ * still run concurrently with each other, while a multi-account change holds
+ * the stripes of all its accounts exclusively and therefore sees, checks and
+ * changes their balances as one unit.
+ * <p>
+ * Nobody parks at the gate: each stripe is a counter of the mutations past it
+ * plus a flag set by the change holding it. A mutation finding the flag set
+ * spins until the change is done, and a change spins after setting the flag
+ * until the mutations already past the stripe have left. Both wait only for
+ * balance updates in memory.
+ * <p>
+ * Hot accounts are updated by {@link AccountsService} itself rather than by the
+ * engine, so their mutations never pass the gate. A change therefore also
+ * takes the lock over all stripes of each of its hot accounts, before any
+ * stripe, so that waiting for a hot account never keeps mutations out.
+ * <p>
+ * Stripes are always taken in index order, shared or exclusive, and each is
+ * taken once, so stripe waits cannot form a cycle. The gate is not reentrant.
+ */
+final class AccountGate {
+
+    private static final int STRIPES = 256;
+    // a stripe per 64 byte cache line, so that unrelated stripes do not contend
+    private static final int STRIDE = 16;
+    private static final int HELD = Integer.MIN_VALUE;
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    private final AtomicIntegerArray stripes = new AtomicIntegerArray(STRIPES * STRIDE);
+
+    /**
+     * Passes the stripe of the account in shared mode, until
+     * {@link #leave(Account)}.
+     */
+    void enter(Account account) {
+        pass(stripeIndex(account));
+    }
+
+    void leave(Account account) {
+        stripes.decrementAndGet(stripeIndex(account) * STRIDE);
+    }
+
+    /**
+     * Passes the stripes of both accounts in shared mode, until
+     * {@link #leave(Account, Account)}.
+     */
+    void enter(Account firstAccount, Account secondAccount) {
+        int first = stripeIndex(firstAccount);
+        int second = stripeIndex(secondAccount);
+        pass(Math.min(first, second));
+        if (first != second) {
+            pass(Math.max(first, second));
+        }
+    }
+
+    void leave(Account firstAccount, Account secondAccount) {
+        int first = stripeIndex(firstAccount);
+        int second = stripeIndex(secondAccount);
+        if (first != second) {
+            stripes.decrementAndGet(Math.max(first, second) * STRIDE);
+        }
+        stripes.decrementAndGet(Math.min(first, second) * STRIDE);
+    }
+
+    /**
+     * Holds the stripes of all accounts exclusively, waiting for the
+     * mutations already past them, and locks the hot ones among them.
+     *
+     * @param accounts distinct accounts in their natural order
+     * @return the held stripes and locks, to hand to {@link #release(Held)}
+     */
+    Held hold(List<Account> accounts) {
+        Lock[] hotLocks = new Lock[accounts.size()];
+        int hotCount = 0;
+        try {
+            for (Account account : accounts) {
+                if (account instanceof HotAccount) {
+                    Lock lock = account.getLock();
+                    lock.lock();
+                    hotLocks[hotCount++] = lock;
+                }
+            }
+        } catch (RuntimeException e) {
+            unlock(hotLocks, hotCount);
+            throw e;
+        }
+        int[] indexes = new int[accounts.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = stripeIndex(accounts.get(i));
+        }
+        Arrays.sort(indexes);
+        int[] held = new int[indexes.length];
+        int count = 0;
+        for (int index : indexes) {
+            // accounts sharing a stripe hold it once
+            if (count == 0 || held[count - 1] != index) {
+                take(index);
+                held[count++] = index;
+            }
+        }
+        return new Held(Arrays.copyOf(held, count), Arrays.copyOf(hotLocks, hotCount));
+    }
+
+    void release(Held held) {
+        for (int i = held.indexes.length - 1; i >= 0; i--) {
+            // no mutation gets past a held stripe, so the flag is all it holds
+            stripes.set(held.indexes[i] * STRIDE, 0);
+        }
+        unlock(held.hotLocks, held.hotLocks.length);
+    }
+
+    private void pass(int index) {
+        int slot = index * STRIDE;
+        for (int spins = 0;; spins++) {
+            int state = stripes.get(slot);
+            if (state >= 0 && stripes.compareAndSet(slot, state, state + 1)) {
+                return;
+            }
+            backOff(spins);
+        }
+    }
+
+    private void take(int index) {
+        int slot = index * STRIDE;
+        for (int spins = 0;; spins++) {
+            int state = stripes.get(slot);
+            if (state >= 0 && stripes.compareAndSet(slot, state, state | HELD)) {
+                break;
+            }
+            backOff(spins);
+        }
+        for (int spins = 0; stripes.get(slot) != HELD; spins++) {
+            backOff(spins);
+        }
+    }
+
+    private static void backOff(int spins) {
+        if (spins < SPINS_BEFORE_YIELD) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    private static void unlock(Lock[] locks, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private static int stripeIndex(Account account) {
+        int hash = account.getAccountId().hashCode();
+        return (hash ^ hash >>> 16) & (STRIPES - 1);
+    }
+
+    record Held(int[] indexes, Lock[] hotLocks) {
+    }
+}
@@ -0,0 +1,381 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.concurrent.RingBuffer;
+import com.dws.challenge.concurrent.VirtualThreads;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * History of the balance changes of every account. The changing thread only
+ * offers the change to a {@link RingBuffer}; a dedicated writer appends it to
+ * the history of each account involved, so an entry shows up in queries
+ * shortly after the change rather than at once.
+ * <p>
+ * A history is a list of columnar chunks: primitive arrays of timestamps,
+ * unscaled amounts, scales and types, plus the counterparty references, which
+ * takes a fraction of the memory of an object per entry. Chunks start small
+ * and double up to {@value #MAX_CHUNK_SIZE} entries, and the oldest chunks are
+ * dropped once an account has more than {@code max-entries-per-account}
+ * entries. Timestamps are kept non-decreasing per account, so a time range is
+ * found by binary search and a page costs its size plus a logarithm.
+ * <p>
+ * The writer is the only thread mutating a history. It fills a row before
+ * publishing the new size through a volatile write, and never changes a row
+ * again, so queries read without locking.
+ */
+@Component
+@Slf4j
+public class AccountLedger implements DisposableBean {
+
+    private static final int MIN_CHUNK_SIZE = 8;
+    private static final int MAX_CHUNK_SIZE = 4096;
+    private static final int BATCH_SIZE = 256;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final byte DEPOSIT = 0;
+    private static final byte WITHDRAWAL = 1;
+    private static final byte TRANSFER_IN = 2;
+    private static final byte TRANSFER_OUT = 3;
+    private static final LedgerEntry.Type[] TYPES = { LedgerEntry.Type.DEPOSIT, LedgerEntry.Type.WITHDRAWAL,
+            LedgerEntry.Type.TRANSFER_IN, LedgerEntry.Type.TRANSFER_OUT };
+
+    private final int maxEntriesPerAccount;
+    private final RingBuffer<Movement> queue;
+    private final Thread writer;
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+    private volatile boolean writerParked;
+
+    /**
+     * @param maxEntriesPerAccount entries kept per account, the oldest chunks
+     *                             being dropped beyond
+     * @param virtualThreads       whether the writer runs on a virtual thread,
+     *                             when the runtime supports them.
+     */
+    public AccountLedger(int queueCapacity, int maxEntriesPerAccount, boolean virtualThreads) {
+        if (maxEntriesPerAccount < 1) {
+            throw new IllegalArgumentException("Must keep at least one entry per account: " + maxEntriesPerAccount);
+        }
+        this.maxEntriesPerAccount = maxEntriesPerAccount;
+        this.queue = new RingBuffer<>(queueCapacity);
+        this.writer = VirtualThreads.start("account-ledger-writer", virtualThreads, this::writeLoop);
+    }
+
+    @Autowired
+    public AccountLedger(@Value("${accounts.ledger.queue-capacity:65536}") int queueCapacity,
+                         @Value("${accounts.ledger.max-entries-per-account:100000}") int maxEntriesPerAccount,
+                         @Value("${accounts.virtual-threads.enabled:false}") boolean virtualThreads,
+                         AccountsMetrics metrics) {
+        this(queueCapacity, maxEntriesPerAccount, virtualThreads);
+        metrics.registerAccountLedger(this);
+    }
+
+    private AccountLedger() {
+        this.maxEntriesPerAccount = 0;
+        this.queue = null;
+        this.writer = null;
+    }
+
+    /**
+     * @return a ledger that keeps nothing, for services built outside of the
+     *         application context.
+     */
+    public static AccountLedger disabled() {
+        return new AccountLedger();
+    }
+
+    public void deposited(String accountId, BigDecimal amount) {
+        record(new Movement(System.currentTimeMillis(), null, accountId, amount));
+    }
+
+    public void withdrawn(String accountId, BigDecimal amount) {
+        record(new Movement(System.currentTimeMillis(), accountId, null, amount));
+    }
+
+    public void transferred(String fromAccountId, String toAccountId, BigDecimal amount) {
+        record(new Movement(System.currentTimeMillis(), fromAccountId, toAccountId, amount));
+    }
+
+    /**
+     * Returns the newest entries of the account, within the time range, older
+     * than the cursor.
+     *
+     * @param from   earliest time included, or null
+     * @param to     latest time included, or null
+     * @param cursor {@link LedgerPage#nextCursor()} of the previous page, or
+     *               null for the first page
+     * @throws IllegalArgumentException if the cursor was not returned by this
+     *                                  method
+     */
+    public LedgerPage page(String accountId, Instant from, Instant to, String cursor, int limit) {
+        long before = Long.MAX_VALUE;
+        if (cursor != null) {
+            try {
+                before = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+        History history = histories.get(accountId);
+        if (history == null) {
+            return new LedgerPage(List.of(), null);
+        }
+        return history.page(from == null ? Long.MIN_VALUE : from.toEpochMilli(),
+                to == null ? Long.MAX_VALUE : to.toEpochMilli(), before, limit);
+    }
+
+    /**
+     * @return the number of changes waiting to be appended.
+     */
+    public int getQueueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public void clear() {
+        histories.clear();
+    }
+
+    /**
+     * Stops the writer once the queued changes are appended.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        log.info("Account ledger writer stopped, still queued {}", getQueueDepth());
+    }
+
+    private void record(Movement movement) {
+        if (queue == null) {
+            return;
+        }
+        while (!queue.offer(movement)) {
+            wakeWriter();
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        wakeWriter();
+    }
+
+    private void wakeWriter() {
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        List<Movement> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            if (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                batch.forEach(this::append);
+                batch.clear();
+            } else if (!running) {
+                return;
+            } else {
+                writerParked = true;
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private void append(Movement movement) {
+        try {
+            if (movement.fromAccountId() != null) {
+                history(movement.fromAccountId()).append(movement.timestamp(),
+                        movement.toAccountId() == null ? WITHDRAWAL : TRANSFER_OUT, movement.amount().negate(),
+                        movement.toAccountId());
+            }
+            if (movement.toAccountId() != null) {
+                history(movement.toAccountId()).append(movement.timestamp(),
+                        movement.fromAccountId() == null ? DEPOSIT : TRANSFER_IN, movement.amount(),
+                        movement.fromAccountId());
+            }
+        } catch (RuntimeException e) {
+            log.error("Unable to append the change of {} from account {} to account {} to the ledger",
+                    movement.amount(), movement.fromAccountId(), movement.toAccountId(), e);
+        }
+    }
+
+    private History history(String accountId) {
+        return histories.computeIfAbsent(accountId, id -> new History(maxEntriesPerAccount));
+    }
+
+    /**
+     * A change captured on the changing thread: a deposit has no source
+     * account, a withdrawal no target account.
+     */
+    private record Movement(long timestamp, String fromAccountId, String toAccountId, BigDecimal amount) {
+    }
+
+    /**
+     * Entries of one account, in chunks of consecutive sequence numbers.
+     */
+    private static final class History {
+
+        private final int maxEntries;
+        private volatile Chunk[] chunks = new Chunk[] { new Chunk(0, MIN_CHUNK_SIZE) };
+        /** Sequence number of the next entry; entries below it are readable. */
+        private volatile long end;
+        /** Written by the writer thread only. */
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        History(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        void append(long timestamp, byte type, BigDecimal amount, String counterpartyAccountId) {
+            Chunk[] current = chunks;
+            Chunk last = current[current.length - 1];
+            long sequence = end;
+            if (sequence - last.firstSequence == last.capacity()) {
+                last = new Chunk(sequence, Math.min(last.capacity() * 2, MAX_CHUNK_SIZE));
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = last;
+                int dropped = 0;
+                // drop the chunks not needed to keep the newest maxEntries entries
+                while (dropped < current.length - 1
+                        && sequence + 1 - current[dropped + 1].firstSequence >= maxEntries) {
+                    dropped++;
+                }
+                if (dropped > 0) {
+                    current = Arrays.copyOfRange(current, dropped, current.length);
+                }
+            }
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            last.set((int) (sequence - last.firstSequence), lastTimestamp, type, amount, counterpartyAccountId);
+            chunks = current;
+            end = sequence + 1;
+        }
+
+        LedgerPage page(long from, long to, long before, int limit) {
+            long last = end;
+            Chunk[] current = chunks;
+            long first = current[0].firstSequence;
+            long start = Math.min(last, before) - 1;
+            if (to != Long.MAX_VALUE) {
+                start = Math.min(start, lastAtOrBefore(current, first, last, to));
+            }
+            List<LedgerEntry> entries = new ArrayList<>(Math.min(limit, 64));
+            long sequence = start;
+            for (; sequence >= first && timestamp(current, sequence) >= from; sequence--) {
+                if (entries.size() == limit) {
+                    return new LedgerPage(entries, String.valueOf(sequence + 1));
+                }
+                Chunk chunk = chunkOf(current, sequence);
+                entries.add(chunk.entry(sequence, (int) (sequence - chunk.firstSequence)));
+            }
+            return new LedgerPage(entries, null);
+        }
+
+        private static long timestamp(Chunk[] chunks, long sequence) {
+            Chunk chunk = chunkOf(chunks, sequence);
+            return chunk.timestamps[(int) (sequence - chunk.firstSequence)];
+        }
+
+        /**
+         * @return the greatest sequence number whose timestamp is at or before
+         *         the given time, or {@code first - 1} if there is none
+         */
+        private static long lastAtOrBefore(Chunk[] chunks, long first, long end, long time) {
+            long low = first;
+            long high = end - 1;
+            while (low <= high) {
+                long middle = (low + high) >>> 1;
+                if (timestamp(chunks, middle) <= time) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+
+        private static Chunk chunkOf(Chunk[] chunks, long sequence) {
+            int low = 0;
+            int high = chunks.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (chunks[middle].firstSequence <= sequence) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return chunks[low];
+        }
+    }
+
+    /**
+     * Columns of consecutive entries. An amount whose unscaled value does not
+     * fit in a {@code long}, or whose scale does not fit in a byte, is kept as
+     * is in the overflow column.
+     */
+    private static final class Chunk {
+
+        private final long firstSequence;
+        private final long[] timestamps;
+        private final long[] unscaledAmounts;
+        private final byte[] scales;
+        private final byte[] types;
+        private final String[] counterparties;
+        private BigDecimal[] overflow;
+
+        Chunk(long firstSequence, int capacity) {
+            this.firstSequence = firstSequence;
+            this.timestamps = new long[capacity];
+            this.unscaledAmounts = new long[capacity];
+            this.scales = new byte[capacity];
+            this.types = new byte[capacity];
+            this.counterparties = new String[capacity];
+        }
+
+        int capacity() {
+            return timestamps.length;
+        }
+
+        void set(int row, long timestamp, byte type, BigDecimal amount, String counterpartyAccountId) {
+            timestamps[row] = timestamp;
+            types[row] = type;
+            counterparties[row] = counterpartyAccountId;
+            if (amount.scale() == (byte) amount.scale() && amount.unscaledValue().bitLength() < Long.SIZE) {
+                unscaledAmounts[row] = amount.unscaledValue().longValue();
+                scales[row] = (byte) amount.scale();
+            } else {
+                if (overflow == null) {
+                    overflow = new BigDecimal[capacity()];
+                }
+                overflow[row] = amount;
+            }
+        }
+
+        LedgerEntry entry(long sequence, int row) {
+            BigDecimal amount = overflow != null && overflow[row] != null ? overflow[row]
+                    : BigDecimal.valueOf(unscaledAmounts[row], scales[row]);
+            return new LedgerEntry(sequence, Instant.ofEpochMilli(timestamps[row]), TYPES[types[row]], amount,
+                    counterparties[row]);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.dws.challenge.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.concurrent.AdaptiveConcurrencyLimit;
+import com.dws.challenge.concurrent.SegmentedCache;
+import com.dws.challenge.repository.AccountsRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * Micrometer meters of the account operations, published through the
+ * actuator {@code metrics} and {@code prometheus} endpoints:
+ * <ul>
+ * <li>{@code accounts.operation}: latency per operation, with a percentile
+ * histogram and the p50, p99 and p999 percentiles;</li>
+ * <li>{@code accounts.operation.failures}: failures per operation and
+ * exception type;</li>
+ * <li>{@code accounts.lock.wait} and {@code accounts.lock.hold}: time spent
+ * waiting for and holding account locks, the former per lock strategy and
+ * fairness;</li>
+ * <li>{@code accounts.lock.timeouts}: lock acquisitions given up at the lock
+ * timeout or the request deadline, per lock strategy;</li>
+ * <li>{@code accounts.count}: number of accounts in the repository;</li>
+ * <li>{@code accounts.admission.rejected}: requests rejected by admission
+ * control, per reason;</li>
+ * <li>{@code accounts.admission.limit} and {@code accounts.admission.in-flight}:
+ * adaptive concurrency limit and the requests currently admitted;</li>
+ * <li>{@code accounts.schedule.pending}, {@code accounts.schedule.fired} and
+ * {@code accounts.schedule.failed}: scheduled transfers waiting, made and
+ * rejected;</li>
+ * <li>{@code accounts.cache.size} and {@code accounts.cache.requests}: cached
+ * account views, and lookups per result, hit or miss;</li>
+ * <li>{@code accounts.notifications.queued},
+ * {@code accounts.notifications.spilled.backlog} and
+ * {@code accounts.notifications}: transfer notifications waiting in the queue
+ * and in the spill file, and notifications per outcome;</li>
+ * <li>{@code accounts.audit.queued} and {@code accounts.audit.records}:
+ * transfers waiting for the binary transaction log writer, and records per
+ * outcome;</li>
+ * <li>{@code accounts.ledger.queued}: changes waiting to be appended to the
+ * account histories.</li>
+ * </ul>
+ */
+@Component
+public class AccountsMetrics {
+
+    public enum Operation {
+        TRANSFER("transfer"),
+        BATCH_TRANSFER("batch_transfer"),
+        MULTI_LEG_TRANSFER("multi_leg_transfer"),
+        WITHDRAW("withdraw"),
+        DEPOSIT("deposit"),
+        LOOKUP("lookup"),
+        SNAPSHOT("snapshot");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final double[] PERCENTILES = { 0.5, 0.99, 0.999 };
+
+    private final MeterRegistry registry;
+    private final Map<Operation, Timer> operationTimers = new EnumMap<>(Operation.class);
+    private final Timer lockHoldTimer;
+    /** Failure counters of rejected results, registered on first use. */
+    private final Counter[][] rejectionCounters = new Counter[Operation.values().length][TransferResult.values().length];
+
+    @Autowired
+    public AccountsMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Operation operation : Operation.values()) {
+            operationTimers.put(operation, Timer.builder("accounts.operation")
+                    .description("Latency of account operations")
+                    .tag("operation", operation.tag)
+                    .publishPercentileHistogram()
+                    .publishPercentiles(PERCENTILES)
+                    .register(registry));
+        }
+        this.lockHoldTimer = Timer.builder("accounts.lock.hold")
+                .description("Time account locks are held")
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    /**
+     * @return metrics that are recorded nowhere, for services built outside of
+     *         the application context.
+     */
+    public static AccountsMetrics noop() {
+        return new AccountsMetrics(new CompositeMeterRegistry());
+    }
+
+    public void registerAccountCount(AccountsRepository accountsRepository) {
+        Gauge.builder("accounts.count", accountsRepository, AccountsRepository::getAccountCount)
+                .description("Number of accounts")
+                .register(registry);
+    }
+
+    public void registerConcurrencyLimit(AdaptiveConcurrencyLimit concurrencyLimit) {
+        Gauge.builder("accounts.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Adaptive limit of concurrently admitted requests")
+                .register(registry);
+        Gauge.builder("accounts.admission.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Requests currently admitted")
+                .register(registry);
+    }
+
+    public void registerScheduledTransfers(TransferScheduler transferScheduler) {
+        Gauge.builder("accounts.schedule.pending", transferScheduler, TransferScheduler::getPendingCount)
+                .description("Scheduled transfers not made yet")
+                .register(registry);
+        FunctionCounter.builder("accounts.schedule.fired", transferScheduler, TransferScheduler::getFiredCount)
+                .description("Scheduled transfers made, failed ones included")
+                .register(registry);
+        FunctionCounter.builder("accounts.schedule.failed", transferScheduler, TransferScheduler::getFailedCount)
+                .description("Scheduled transfers rejected when made")
+                .register(registry);
+    }
+
+    public void registerNotifications(AsyncNotificationService notificationService) {
+        Gauge.builder("accounts.notifications.queued", notificationService, AsyncNotificationService::getQueueDepth)
+                .description("Transfer notifications waiting in the queue")
+                .register(registry);
+        Gauge.builder("accounts.notifications.spilled.backlog", notificationService,
+                        AsyncNotificationService::getSpillBacklog)
+                .description("Transfer notifications waiting in the spill file")
+                .register(registry);
+        notificationCounter(notificationService, "dispatched", AsyncNotificationService::getDispatchedCount);
+        notificationCounter(notificationService, "dropped", AsyncNotificationService::getDroppedCount);
+        notificationCounter(notificationService, "spilled", AsyncNotificationService::getSpilledCount);
+        notificationCounter(notificationService, "failed", AsyncNotificationService::getFailedCount);
+    }
+
+    public void registerTransactionLog(BinaryTransactionLog transactionLog) {
+        Gauge.builder("accounts.audit.queued", transactionLog, BinaryTransactionLog::getQueueDepth)
+                .description("Transfers waiting to be written to the transaction log")
+                .register(registry);
+        FunctionCounter.builder("accounts.audit.records", transactionLog, BinaryTransactionLog::getWrittenCount)
+                .description("Transaction log records per outcome")
+                .tag("outcome", "written")
+                .register(registry);
+        FunctionCounter.builder("accounts.audit.records", transactionLog, BinaryTransactionLog::getFailedCount)
+                .description("Transaction log records per outcome")
+                .tag("outcome", "failed")
+                .register(registry);
+    }
+
+    public void registerAccountLedger(AccountLedger accountLedger) {
+        Gauge.builder("accounts.ledger.queued", accountLedger, AccountLedger::getQueueDepth)
+                .description("Balance changes waiting to be appended to the account histories")
+                .register(registry);
+    }
+
+    public void registerAccountCache(SegmentedCache<?, ?> cache) {
+        Gauge.builder("accounts.cache.size", cache, SegmentedCache::size)
+                .description("Account views in the cache")
+                .register(registry);
+    }
+
+    /**
+     * @param result {@code hit} or {@code miss}
+     * @return the counter of account cache lookups with the given result, to be
+     *         kept by the caller.
+     */
+    public Counter accountCacheRequests(String result) {
+        return Counter.builder("accounts.cache.requests")
+                .description("Account cache lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * @return the timer of lock waits under the given strategy, to be kept by
+     *         the caller.
+     */
+    public Timer lockWaitTimer(String strategy, boolean fair) {
+        return Timer.builder("accounts.lock.wait")
+                .description("Time spent waiting to acquire account locks")
+                .tag("strategy", strategy)
+                .tag("fair", String.valueOf(fair))
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    /**
+     * @return the counter of lock acquisitions given up under the given
+     *         strategy, to be kept by the caller.
+     */
+    public Counter lockTimeouts(String strategy) {
+        return Counter.builder("accounts.lock.timeouts")
+                .description("Lock acquisitions given up at the lock timeout or the request deadline")
+                .tag("strategy", strategy)
+                .register(registry);
+    }
+
+    /**
+     * @return the counter of requests rejected for the given reason, to be
+     *         kept by the caller.
+     */
+    public Counter admissionRejections(String reason) {
+        return Counter.builder("accounts.admission.rejected")
+                .description("Requests rejected by admission control")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    public void recordOperation(Operation operation, long durationNanos) {
+        operationTimers.get(operation).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailure(Operation operation, Exception exception) {
+        failureCounter(operation, exception.getClass()).increment();
+    }
+
+    /**
+     * Counts a rejected result under the exception type the throwing API
+     * reports it with, so both APIs share their failure counters.
+     */
+    public void recordFailure(Operation operation, TransferResult result) {
+        Counter counter = rejectionCounters[operation.ordinal()][result.ordinal()];
+        if (counter == null) {
+            // racing threads register the same counter
+            counter = failureCounter(operation, result.getExceptionType());
+            rejectionCounters[operation.ordinal()][result.ordinal()] = counter;
+        }
+        counter.increment();
+    }
+
+    private void notificationCounter(AsyncNotificationService notificationService, String outcome,
+                                     ToDoubleFunction<AsyncNotificationService> count) {
+        FunctionCounter.builder("accounts.notifications", notificationService, count)
+                .description("Transfer notifications per outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Counter failureCounter(Operation operation, Class<?> exceptionType) {
+        return Counter.builder("accounts.operation.failures")
+                .description("Failed account operations")
+                .tag("operation", operation.tag)
+                .tag("exception", exceptionType.getSimpleName())
+                .register(registry);
+    }
+
+    public void recordLockHold(long durationNanos) {
+        lockHoldTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+}
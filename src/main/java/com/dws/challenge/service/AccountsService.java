@@ -1,23 +1,42 @@
 package com.dws.challenge.service;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.HotAccount;
+import com.dws.challenge.domain.MinorUnits;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.domain.TransferInstruction;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferOutcome;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.InsufficientFundsException;
 import com.dws.challenge.exception.InvalidAccountException;
 import com.dws.challenge.exception.InvalidAmountException;
 import com.dws.challenge.exception.LockException;
+import com.dws.challenge.exception.LockTimeoutException;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountsMetrics.Operation;
 
+import io.micrometer.common.util.StringUtils;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,26 +48,162 @@ public class AccountsService {
     @Getter
     private final AccountsRepository accountsRepository;
     private final NotificationService notificationService;
+    private final BalanceEngine balanceEngine;
+    private final AccountsMetrics metrics;
+    private final TransactionLog transactionLog;
+    private final AccountLedger accountLedger;
+    private final BalanceSnapshots balanceSnapshots;
 
-    private final Lock transferLock = new ReentrantLock();
-    private final Lock withdrawLock = new ReentrantLock();
-    private final Lock depositLock = new ReentrantLock();
-    @Autowired
     public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService) {
+        this(accountsRepository, notificationService, new LockingBalanceEngine());
+    }
+
+    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService,
+                           BalanceEngine balanceEngine) {
+        this(accountsRepository, notificationService, balanceEngine, AccountsMetrics.noop());
+    }
+
+    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService,
+                           BalanceEngine balanceEngine, AccountsMetrics metrics) {
+        this(accountsRepository, notificationService, balanceEngine, metrics, new LoggingTransactionLog());
+    }
+
+    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService,
+                           BalanceEngine balanceEngine, AccountsMetrics metrics, TransactionLog transactionLog) {
+        this(accountsRepository, notificationService, balanceEngine, metrics, transactionLog,
+                AccountLedger.disabled());
+    }
+
+    @Autowired
+    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService,
+                           BalanceEngine balanceEngine, AccountsMetrics metrics, TransactionLog transactionLog,
+                           AccountLedger accountLedger) {
         this.accountsRepository = accountsRepository;
         this.notificationService = notificationService;
+        this.balanceEngine = balanceEngine;
+        this.metrics = metrics;
+        this.transactionLog = transactionLog;
+        this.accountLedger = accountLedger;
+        this.balanceSnapshots = new BalanceSnapshots(accountsRepository.requiresOrderedSaves());
+        metrics.registerAccountCount(accountsRepository);
     }
 
     public void createAccount(Account account) {
-        this.accountsRepository.createAccount(account);
+        BalanceSnapshots.Write write = balanceSnapshots.beginWrite(account);
+        try {
+            this.accountsRepository.createAccount(account);
+            write.created(account);
+        } finally {
+            endWrite(write);
+        }
+    }
+
+    /**
+     * Creates many accounts at once, skipping those whose id already exists.
+     *
+     * @return the given accounts that were not created
+     */
+    public List<Account> createAccounts(List<Account> accounts) {
+        BalanceSnapshots.Write write = balanceSnapshots.beginWrite(accounts);
+        try {
+            List<Account> skipped = this.accountsRepository.createAccounts(accounts);
+            Set<Account> skippedAccounts = Collections.newSetFromMap(new IdentityHashMap<>());
+            skippedAccounts.addAll(skipped);
+            for (Account account : accounts) {
+                if (!skippedAccounts.contains(account)) {
+                    write.created(account);
+                }
+            }
+            return skipped;
+        } finally {
+            endWrite(write);
+        }
+    }
+
+    /**
+     * Passes every account to the action without copying the accounts first.
+     * Balances are read as the accounts are visited, so transfers made in the
+     * meantime may be seen on one side only; see
+     * {@link #forEachAccountAtCut(BiConsumer)} for a consistent view.
+     */
+    public void forEachAccount(Consumer<Account> action) {
+        this.accountsRepository.forEachAccount(action);
+    }
+
+    /**
+     * Passes every account to the action with its balance at one cut through
+     * all balance changes: each transfer is seen on both sides or not at all.
+     * Transfers are not paused meanwhile; see {@link BalanceSnapshots}.
+     */
+    public void forEachAccountAtCut(BiConsumer<Account, BigDecimal> action) {
+        long start = System.nanoTime();
+        try {
+            balanceSnapshots.read(accountsRepository, action);
+        } finally {
+            metrics.recordOperation(Operation.SNAPSHOT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Sums all balances at one cut, per currency, for reconciliation.
+     */
+    public BalanceAudit auditBalances() {
+        long[] accountCount = { 0 };
+        BigDecimal[] total = { BigDecimal.ZERO };
+        Map<String, BigDecimal> totalsByCurrency = new TreeMap<>();
+        forEachAccountAtCut((account, balance) -> {
+            accountCount[0]++;
+            String currency = currencyOf(account);
+            if (currency == null) {
+                total[0] = total[0].add(balance);
+            } else {
+                totalsByCurrency.merge(currency, balance, BigDecimal::add);
+            }
+        });
+        return new BalanceAudit(accountCount[0], total[0], totalsByCurrency);
+    }
+
+    /**
+     * Returns a page of the deposits, withdrawals and transfers of an account,
+     * newest first; see {@link AccountLedger#page(String, Instant, Instant, String, int)}.
+     *
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    public LedgerPage getTransactions(String accountId, Instant from, Instant to, String cursor, int limit)
+            throws InvalidAccountException, AccountNotFoundException {
+        getAccount(accountId);
+        return accountLedger.page(accountId, from, to, cursor, limit);
     }
 
     public Account getAccount(String accountId) throws InvalidAccountException, AccountNotFoundException {
-        return this.accountsRepository.getAccount(accountId);
+        long start = System.nanoTime();
+        try {
+            return this.accountsRepository.getAccount(accountId);
+        } catch (Exception e) {
+            metrics.recordFailure(Operation.LOOKUP, e);
+            throw e;
+        } finally {
+            metrics.recordOperation(Operation.LOOKUP, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Looks up many accounts in one call, leaving unknown ids out.
+     *
+     * @return the accounts found, by id, in the order of the given ids
+     */
+    public Map<String, Account> getAccounts(Collection<String> accountIds) {
+        long start = System.nanoTime();
+        try {
+            return this.accountsRepository.getAccounts(accountIds);
+        } finally {
+            metrics.recordOperation(Operation.LOOKUP, System.nanoTime() - start);
+        }
     }
 
     public void clearAccounts() {
         accountsRepository.clearAccounts();
+        accountLedger.clear();
     }
 
     /**
@@ -68,12 +223,452 @@ public class AccountsService {
     public boolean transferAmount(String fromAccountId, String toAccountId, BigDecimal amount)
             throws InsufficientFundsException, InterruptedException, InvalidAccountException, InvalidAmountException,
             AccountNotFoundException, LockException {
-        if (validatePositiveAmount(amount)) {
-            Account fromAccount = accountsRepository.getAccount(fromAccountId);
-            Account toAccount = accountsRepository.getAccount(toAccountId);
-            return transfer(fromAccount, toAccount, amount);
+        TransferResult result = tryTransfer(fromAccountId, toAccountId, amount);
+        if (!result.isSuccess()) {
+            throwTransferRejection(result, fromAccountId, toAccountId, amount);
+        }
+        return true;
+    }
+
+    /**
+     * tryTransfer: variant of {@link #transferAmount(String, String, BigDecimal)}
+     * that reports a rejected transfer as its result instead of throwing, so a
+     * rejection builds no exception, message or log line.
+     *
+     * @return {@link TransferResult#SUCCESS} or the reason the transfer was
+     *         rejected
+     */
+    public TransferResult tryTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        long start = System.nanoTime();
+        try {
+            return recordResult(Operation.TRANSFER, transferIfValid(fromAccountId, toAccountId, amount));
+        } catch (LockTimeoutException e) {
+            return recordResult(Operation.TRANSFER, TransferResult.LOCK_TIMEOUT);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.TRANSFER, e);
+            throw e;
+        } finally {
+            metrics.recordOperation(Operation.TRANSFER, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * transferAmount: minor-unit variant of
+     * {@link #transferAmount(String, String, BigDecimal)}. Both accounts must be
+     * held in the given currency and the amount is expressed in its minor unit,
+     * so the transfer does no decimal arithmetic.
+     *
+     * @param fromAccountId
+     * @param toAccountId
+     * @param amount        amount in minor units of the currency
+     * @param currency      ISO 4217 code of both accounts
+     * @throws InsufficientFundsException
+     * @throws InterruptedException
+     * @throws InvalidAccountException    If an account is not held in minor units of the currency.
+     * @throws InvalidAmountException
+     * @throws AccountNotFoundException
+     * @throws LockException
+     */
+    public boolean transferAmount(String fromAccountId, String toAccountId, long amount, String currency)
+            throws InsufficientFundsException, InterruptedException, InvalidAccountException, InvalidAmountException,
+            AccountNotFoundException, LockException {
+        TransferResult result = tryTransfer(fromAccountId, toAccountId, amount, currency);
+        if (!result.isSuccess()) {
+            throwTransferRejection(result, fromAccountId, toAccountId, amount, currency);
+        }
+        return true;
+    }
+
+    /**
+     * tryTransfer: minor-unit variant of
+     * {@link #tryTransfer(String, String, BigDecimal)}.
+     *
+     * @see #transferAmount(String, String, long, String)
+     */
+    public TransferResult tryTransfer(String fromAccountId, String toAccountId, long amount, String currency) {
+        long start = System.nanoTime();
+        try {
+            return recordResult(Operation.TRANSFER, transferIfValid(fromAccountId, toAccountId, amount, currency));
+        } catch (LockTimeoutException e) {
+            return recordResult(Operation.TRANSFER, TransferResult.LOCK_TIMEOUT);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.TRANSFER, e);
+            throw e;
+        } finally {
+            metrics.recordOperation(Operation.TRANSFER, System.nanoTime() - start);
+        }
+    }
+
+    private TransferResult transferIfValid(String fromAccountId, String toAccountId, BigDecimal amount) {
+        if (!isPositive(amount)) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        if (StringUtils.isEmpty(fromAccountId) || StringUtils.isEmpty(toAccountId)) {
+            return TransferResult.INVALID_ACCOUNT;
+        }
+        Account fromAccount = accountsRepository.findAccount(fromAccountId);
+        Account toAccount = accountsRepository.findAccount(toAccountId);
+        if (fromAccount == null || toAccount == null) {
+            return TransferResult.ACCOUNT_NOT_FOUND;
+        }
+        if (!Objects.equals(currencyOf(fromAccount), currencyOf(toAccount))) {
+            return TransferResult.INVALID_ACCOUNT;
+        }
+        return transfer(fromAccount, toAccount, amount);
+    }
+
+    private TransferResult transferIfValid(String fromAccountId, String toAccountId, long amount, String currency) {
+        if (amount <= 0) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        if (StringUtils.isEmpty(fromAccountId) || StringUtils.isEmpty(toAccountId)) {
+            return TransferResult.INVALID_ACCOUNT;
+        }
+        Account fromAccount = accountsRepository.findAccount(fromAccountId);
+        Account toAccount = accountsRepository.findAccount(toAccountId);
+        if (fromAccount == null || toAccount == null) {
+            return TransferResult.ACCOUNT_NOT_FOUND;
+        }
+        if (!isHeldIn(fromAccount, currency) || !isHeldIn(toAccount, currency)) {
+            return TransferResult.INVALID_ACCOUNT;
+        }
+        return transfer((MinorUnitsAccount) fromAccount, (MinorUnitsAccount) toAccount, amount);
+    }
+
+    /**
+     * Throws the exception the throwing API reports a rejected transfer with,
+     * message included, by validating the transfer again the throwing way.
+     * Should the accounts have changed since the rejection, the exception is
+     * derived from the result alone.
+     */
+    private void throwTransferRejection(TransferResult result, String fromAccountId, String toAccountId,
+                                        BigDecimal amount)
+            throws InsufficientFundsException, InvalidAccountException, InvalidAmountException,
+            AccountNotFoundException, LockException {
+        validatePositiveAmount(amount);
+        Account fromAccount = accountsRepository.getAccount(fromAccountId);
+        Account toAccount = accountsRepository.getAccount(toAccountId);
+        validateSameCurrency(fromAccount, toAccount);
+        if (fromAccount instanceof MinorUnitsAccount minorFromAccount) {
+            amount = MinorUnits.toBigDecimal(toMinorUnits(minorFromAccount, amount), minorFromAccount.getScale());
+        }
+        throwRejection(result, fromAccount, amount);
+    }
+
+    private void throwTransferRejection(TransferResult result, String fromAccountId, String toAccountId, long amount,
+                                        String currency)
+            throws InsufficientFundsException, InvalidAccountException, InvalidAmountException,
+            AccountNotFoundException, LockException {
+        validatePositiveAmount(amount);
+        MinorUnitsAccount fromAccount = minorUnitsAccount(accountsRepository.getAccount(fromAccountId), currency);
+        minorUnitsAccount(accountsRepository.getAccount(toAccountId), currency);
+        throwRejection(result, fromAccount, MinorUnits.toBigDecimal(amount, fromAccount.getScale()));
+    }
+
+    private void throwRejection(TransferResult result, Account fromAccount, BigDecimal amount)
+            throws InsufficientFundsException, InvalidAccountException, InvalidAmountException,
+            AccountNotFoundException, LockException {
+        switch (result) {
+            case LOCK_TIMEOUT -> throw logged(new LockException(LockPolicy.TIMEOUT_MESSAGE));
+            case ACCOUNT_NOT_FOUND ->
+                    throw logged(new AccountNotFoundException("Account of the transfer does not exist"));
+            case INVALID_ACCOUNT ->
+                    throw logged(new InvalidAccountException("Accounts of the transfer are not valid"));
+            case INVALID_AMOUNT -> throw logged(new InvalidAmountException("Amount " + amount + " is not valid"));
+            default -> throw insufficientFunds(fromAccount, amount);
+        }
+    }
+
+    private TransferResult recordResult(Operation operation, TransferResult result) {
+        if (!result.isSuccess()) {
+            metrics.recordFailure(operation, result);
+        }
+        return result;
+    }
+
+    /**
+     * tryTransfer: moves money between several accounts at once, such as a
+     * payment split between a merchant, a platform fee and a tax. The legs must
+     * sum to zero and all accounts be held in the same currency; an account
+     * may appear in several legs. The net change of every account is applied
+     * as one unit, under a single acquisition of all accounts in their natural
+     * order, so either every leg is applied or none is.
+     *
+     * @return {@link TransferResult#SUCCESS} or the reason the transfer was
+     *         rejected: {@link TransferResult#INVALID_AMOUNT} for a missing or
+     *         zero amount or legs not summing to zero
+     */
+    public TransferResult tryTransfer(List<TransferLeg> legs) {
+        long start = System.nanoTime();
+        try {
+            return recordResult(Operation.MULTI_LEG_TRANSFER, transferLegsIfValid(legs));
+        } catch (LockTimeoutException e) {
+            return recordResult(Operation.MULTI_LEG_TRANSFER, TransferResult.LOCK_TIMEOUT);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.MULTI_LEG_TRANSFER, e);
+            throw e;
+        } finally {
+            metrics.recordOperation(Operation.MULTI_LEG_TRANSFER, System.nanoTime() - start);
+        }
+    }
+
+    private TransferResult transferLegsIfValid(List<TransferLeg> legs) {
+        if (legs.isEmpty()) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        Map<Account, BigDecimal> netChanges = new TreeMap<>();
+        BigDecimal sum = BigDecimal.ZERO;
+        String currency = null;
+        for (TransferLeg leg : legs) {
+            if (leg.getAmount() == null || leg.getAmount().signum() == 0) {
+                return TransferResult.INVALID_AMOUNT;
+            }
+            if (StringUtils.isEmpty(leg.getAccountId())) {
+                return TransferResult.INVALID_ACCOUNT;
+            }
+            Account account = accountsRepository.findAccount(leg.getAccountId());
+            if (account == null) {
+                return TransferResult.ACCOUNT_NOT_FOUND;
+            }
+            if (netChanges.isEmpty()) {
+                currency = currencyOf(account);
+            } else if (!Objects.equals(currency, currencyOf(account))) {
+                return TransferResult.INVALID_ACCOUNT;
+            }
+            if (!account.canHold(leg.getAmount())) {
+                return TransferResult.INVALID_AMOUNT;
+            }
+            netChanges.merge(account, leg.getAmount(), BigDecimal::add);
+            sum = sum.add(leg.getAmount());
+        }
+        if (sum.signum() != 0) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        netChanges.values().removeIf(delta -> delta.signum() == 0);
+        if (netChanges.isEmpty()) {
+            return TransferResult.SUCCESS;
+        }
+        return transferLegs(new ArrayList<>(netChanges.keySet()), new ArrayList<>(netChanges.values()));
+    }
+
+    private TransferResult transferLegs(List<Account> accounts, List<BigDecimal> deltas) {
+        BigDecimal[] balances;
+        BalanceSnapshots.Write write = balanceSnapshots.beginWrite(accounts);
+        try {
+            if (balanceEngine.applyDeltas(accounts, deltas) >= 0) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            write.changed(accounts, deltas);
+            saveBalances(write, accounts.toArray(new Account[0]));
+            balances = balancesOf(accounts);
+        } finally {
+            endWrite(write);
+        }
+        notifyAndLogLegs(accounts, deltas, balances);
+        return TransferResult.SUCCESS;
+    }
+
+    /**
+     * Reports applied legs as transfers from the debited to the credited
+     * accounts, pairing debits and credits in account order, so notifications
+     * and logs see at most one transfer fewer than there are accounts. Each is
+     * logged with the balances the accounts had once all legs were applied.
+     */
+    private void notifyAndLogLegs(List<Account> accounts, List<BigDecimal> deltas, BigDecimal[] balances) {
+        BigDecimal[] remaining = deltas.toArray(new BigDecimal[0]);
+        int debit = nextLeg(remaining, 0, -1);
+        int credit = nextLeg(remaining, 0, 1);
+        while (debit < remaining.length && credit < remaining.length) {
+            BigDecimal amount = remaining[debit].negate().min(remaining[credit]);
+            notifyAndLogTransfer(accounts.get(debit), accounts.get(credit), amount, balances[debit],
+                    balances[credit]);
+            remaining[debit] = remaining[debit].add(amount);
+            remaining[credit] = remaining[credit].subtract(amount);
+            debit = nextLeg(remaining, debit, -1);
+            credit = nextLeg(remaining, credit, 1);
+        }
+    }
+
+    /**
+     * Reads the balances of the accounts right after a change, before its write
+     * ends.
+     */
+    private static BigDecimal[] balancesOf(List<Account> accounts) {
+        BigDecimal[] balances = new BigDecimal[accounts.size()];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = accounts.get(i).getBalance();
+        }
+        return balances;
+    }
+
+    /**
+     * @return the index of the first remaining change with the given sign, from
+     *         the given index, or the number of changes if there is none
+     */
+    private static int nextLeg(BigDecimal[] remaining, int from, int signum) {
+        while (from < remaining.length && remaining[from].signum() != signum) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * transferBatch: applies a batch of transfers. Transfers are grouped by the
+     * pair of accounts they involve so that the accounts of a pair are locked
+     * once for the whole group; within a group the submission order is kept.
+     * In {@link BatchTransferMode#ATOMIC} mode the net change of every account
+     * is applied under a single acquisition of all involved accounts.
+     *
+     * @param transfers transfers in submission order
+     * @param mode      whether the batch is applied as a whole or per transfer
+     * @return one outcome per transfer, in submission order
+     */
+    public List<TransferOutcome> transferBatch(List<TransferInstruction> transfers, BatchTransferMode mode) {
+        long start = System.nanoTime();
+        try {
+            return applyBatch(transfers, mode);
+        } finally {
+            metrics.recordOperation(Operation.BATCH_TRANSFER, System.nanoTime() - start);
+        }
+    }
+
+    private List<TransferOutcome> applyBatch(List<TransferInstruction> transfers, BatchTransferMode mode) {
+        TransferOutcome[] outcomes = new TransferOutcome[transfers.size()];
+        List<ResolvedTransfer> resolvedTransfers = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            try {
+                resolvedTransfers.add(resolve(i, transfers.get(i)));
+            } catch (InvalidAmountException | InvalidAccountException | AccountNotFoundException e) {
+                outcomes[i] = outcome(i, transfers.get(i), e.getMessage());
+            }
+        }
+        if (mode == BatchTransferMode.ATOMIC) {
+            transferAtomically(transfers, resolvedTransfers, outcomes);
+        } else {
+            transferPerPair(transfers, resolvedTransfers, outcomes);
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    private void transferAtomically(List<TransferInstruction> transfers, List<ResolvedTransfer> resolvedTransfers,
+                                    TransferOutcome[] outcomes) {
+        String rejection = null;
+        Map<Account, BigDecimal> balances = new TreeMap<>();
+        if (resolvedTransfers.size() < transfers.size()) {
+            rejection = "Batch rejected because at least one transfer is invalid";
+        } else {
+            Map<Account, BigDecimal> netChanges = new TreeMap<>();
+            for (ResolvedTransfer transfer : resolvedTransfers) {
+                netChanges.merge(transfer.fromAccount(), transfer.amount().negate(), BigDecimal::add);
+                netChanges.merge(transfer.toAccount(), transfer.amount(), BigDecimal::add);
+            }
+            List<Account> accounts = new ArrayList<>(netChanges.keySet());
+            List<BigDecimal> deltas = new ArrayList<>(netChanges.values());
+            BalanceSnapshots.Write write = balanceSnapshots.beginWrite(accounts);
+            try {
+                int insufficientAccount = balanceEngine.applyDeltas(accounts, deltas);
+                if (insufficientAccount >= 0) {
+                    rejection = "Batch rejected because of insufficient funds in account:"
+                            + accounts.get(insufficientAccount).getAccountId();
+                } else {
+                    write.changed(accounts, deltas);
+                    saveBalances(write, accounts.toArray(new Account[0]));
+                    for (Account account : accounts) {
+                        balances.put(account, account.getBalance());
+                    }
+                }
+            } catch (LockTimeoutException e) {
+                rejection = "Batch rejected: " + e.getMessage();
+            } finally {
+                endWrite(write);
+            }
+        }
+        for (ResolvedTransfer transfer : resolvedTransfers) {
+            outcomes[transfer.index()] = outcome(transfer.index(), transfers.get(transfer.index()), rejection);
+            if (rejection == null) {
+                notifyAndLogTransfer(transfer.fromAccount(), transfer.toAccount(), transfer.amount(),
+                        balances.get(transfer.fromAccount()), balances.get(transfer.toAccount()));
+            }
+        }
+    }
+
+    private void transferPerPair(List<TransferInstruction> transfers, List<ResolvedTransfer> resolvedTransfers,
+                                 TransferOutcome[] outcomes) {
+        BigDecimal[] fromBalances = new BigDecimal[transfers.size()];
+        BigDecimal[] toBalances = new BigDecimal[transfers.size()];
+        Map<String, List<ResolvedTransfer>> transfersByPair = new LinkedHashMap<>();
+        for (ResolvedTransfer transfer : resolvedTransfers) {
+            transfersByPair.computeIfAbsent(transfer.pairKey(), key -> new ArrayList<>()).add(transfer);
+        }
+        for (List<ResolvedTransfer> group : transfersByPair.values()) {
+            ResolvedTransfer first = group.get(0);
+            BalanceSnapshots.Write write = balanceSnapshots.beginWrite(first.fromAccount(), first.toAccount());
+            try {
+                balanceEngine.runOnPair(first.fromAccount(), first.toAccount(), () -> {
+                    for (ResolvedTransfer transfer : group) {
+                        boolean applied = applyTransfer(transfer);
+                        if (applied) {
+                            write.transferred(transfer.fromAccount(), transfer.toAccount(), transfer.amount());
+                            fromBalances[transfer.index()] = transfer.fromAccount().getBalance();
+                            toBalances[transfer.index()] = transfer.toAccount().getBalance();
+                        }
+                        outcomes[transfer.index()] = outcome(transfer.index(), transfers.get(transfer.index()),
+                                applied ? null : insufficientFundsMessage(transfer.fromAccount(), transfer.amount()));
+                    }
+                });
+                saveBalances(write, first.fromAccount(), first.toAccount());
+            } catch (LockTimeoutException e) {
+                // the locks are taken before any transfer of the group runs
+                for (ResolvedTransfer transfer : group) {
+                    outcomes[transfer.index()] = outcome(transfer.index(), transfers.get(transfer.index()),
+                            e.getMessage());
+                }
+            } finally {
+                endWrite(write);
+            }
+            for (ResolvedTransfer transfer : group) {
+                if (outcomes[transfer.index()].isSuccess()) {
+                    notifyAndLogTransfer(transfer.fromAccount(), transfer.toAccount(), transfer.amount(),
+                            fromBalances[transfer.index()], toBalances[transfer.index()]);
+                }
+            }
         }
-        return false;
+    }
+
+    private boolean applyTransfer(ResolvedTransfer transfer) {
+        if (transfer.fromAccount() instanceof MinorUnitsAccount minorFromAccount
+                && transfer.toAccount() instanceof MinorUnitsAccount minorToAccount) {
+            return balanceEngine.transfer(minorFromAccount, minorToAccount, transfer.minorUnitsAmount());
+        }
+        return transferBalance(transfer.fromAccount(), transfer.toAccount(), transfer.amount());
+    }
+
+    private ResolvedTransfer resolve(int index, TransferInstruction transfer)
+            throws InvalidAmountException, InvalidAccountException, AccountNotFoundException {
+        if (transfer.getAmount() == null) {
+            throw new InvalidAmountException("Amount can not be null");
+        }
+        validatePositiveAmount(transfer.getAmount());
+        Account fromAccount = accountsRepository.getAccount(transfer.getFromAccountId());
+        Account toAccount = accountsRepository.getAccount(transfer.getToAccountId());
+        validateSameCurrency(fromAccount, toAccount);
+        if (!fromAccount.canHold(transfer.getAmount()) || !toAccount.canHold(transfer.getAmount())) {
+            throw new InvalidAmountException("Amount " + transfer.getAmount() + " has more decimal places than "
+                    + "the balances of accounts " + fromAccount.getAccountId() + " and " + toAccount.getAccountId());
+        }
+        long minorUnitsAmount = 0;
+        if (transfer.getCurrency() != null) {
+            minorUnitsAmount = toMinorUnits(minorUnitsAccount(fromAccount, transfer.getCurrency()), transfer.getAmount());
+            minorUnitsAccount(toAccount, transfer.getCurrency());
+        } else if (fromAccount instanceof MinorUnitsAccount minorFromAccount) {
+            minorUnitsAmount = toMinorUnits(minorFromAccount, transfer.getAmount());
+        }
+        return new ResolvedTransfer(index, fromAccount, toAccount, transfer.getAmount(), minorUnitsAmount);
+    }
+
+    private static TransferOutcome outcome(int index, TransferInstruction transfer, String failure) {
+        return new TransferOutcome(index, transfer.getFromAccountId(), transfer.getToAccountId(), failure == null,
+                failure);
     }
 
     /**
@@ -82,40 +677,118 @@ public class AccountsService {
      * @param fromAccount The account from which the amount is to be transferred.
      * @param toAccount   The account to which the amount is to be transferred.
      * @param amount      The amount to be transferred.
-     * @return True if the transfer is successful, false otherwise.
-     * @throws InsufficientFundsException If there are insufficient funds in the source account.
-     * @throws InterruptedException       If the thread is interrupted during the transfer.
-     * @throws InvalidAmountException     If the amount to be transferred is invalid.
-     * @throws LockException              If unable to acquire locks on the accounts.
-     */
-    private boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount)
-            throws InsufficientFundsException, InterruptedException, InvalidAmountException, LockException {
-        // Sort accounts based on their IDs to ensure consistent locking order
-        Account[] sortedAccounts = {fromAccount, toAccount};
-        Arrays.sort(sortedAccounts, Comparator.comparing(Account::getAccountId));
-
-        try {
-            transferLock.lock();  // Acquire the transfer lock to ensure atomicity
-            if (withdrawAmount(fromAccount, amount)) {
-                if (depositAmount(toAccount, amount)) {
-                    notificationService.notifyAboutTransfer(fromAccount,
-                            "Amount: " + amount + " transferred from account: " + fromAccount.getAccountId()
-                                    + " to account: " + toAccount.getAccountId());
-                    logTransaction(amount, fromAccount.getAccountId(), toAccount.getAccountId(),
-                            fromAccount.getBalance(), toAccount.getBalance());
-                    return true;
-                } else {
-                    // if Deposit fails, rollback withdrawal
-                    fromAccount.setBalance(fromAccount.getBalance().add(amount));
-                }
+     * @return {@link TransferResult#SUCCESS}, or the reason the transfer was rejected.
+     */
+    private TransferResult transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        if (fromAccount instanceof MinorUnitsAccount minorFromAccount
+                && toAccount instanceof MinorUnitsAccount minorToAccount) {
+            if (!MinorUnits.isRepresentable(amount, minorFromAccount.getScale())) {
+                return TransferResult.INVALID_AMOUNT;
+            }
+            return transfer(minorFromAccount, minorToAccount,
+                    MinorUnits.toMinorUnits(amount, minorFromAccount.getScale()));
+        }
+        if (!fromAccount.canHold(amount) || !toAccount.canHold(amount)) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        BigDecimal fromBalance;
+        BigDecimal toBalance;
+        BalanceSnapshots.Write write = balanceSnapshots.beginWrite(fromAccount, toAccount);
+        try {
+            if (!transferBalance(fromAccount, toAccount, amount)) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            write.transferred(fromAccount, toAccount, amount);
+            saveBalances(write, fromAccount, toAccount);
+            fromBalance = fromAccount.getBalance();
+            toBalance = toAccount.getBalance();
+        } finally {
+            endWrite(write);
+        }
+        notifyAndLogTransfer(fromAccount, toAccount, amount, fromBalance, toBalance);
+        return TransferResult.SUCCESS;
+    }
+
+    private TransferResult transfer(MinorUnitsAccount fromAccount, MinorUnitsAccount toAccount, long amount) {
+        BigDecimal fromBalance;
+        BigDecimal toBalance;
+        BalanceSnapshots.Write write = balanceSnapshots.beginWrite(fromAccount, toAccount);
+        try {
+            if (!balanceEngine.transfer(fromAccount, toAccount, amount)) {
+                return TransferResult.INSUFFICIENT_FUNDS;
             }
+            write.transferred(fromAccount, toAccount, amount);
+            saveBalances(write, fromAccount, toAccount);
+            fromBalance = fromAccount.getBalance();
+            toBalance = toAccount.getBalance();
         } finally {
-            transferLock.unlock();  // Release the transfer lock
+            endWrite(write);
         }
+        notifyAndLogTransfer(fromAccount, toAccount, MinorUnits.toBigDecimal(amount, fromAccount.getScale()),
+                fromBalance, toBalance);
+        return TransferResult.SUCCESS;
+    }
+
+    /**
+     * Hot accounts synchronize their own balance, so a transfer involving one is
+     * a debit followed by a credit rather than a transfer coordinated by the
+     * engine; a credit cannot fail, so the amount is never lost in between.
+     */
+    private boolean transferBalance(Account fromAccount, Account toAccount, BigDecimal amount) {
+        if (!(fromAccount instanceof HotAccount) && !(toAccount instanceof HotAccount)) {
+            return balanceEngine.transfer(fromAccount, toAccount, amount);
+        }
+        if (!debit(fromAccount, amount)) {
+            return false;
+        }
+        credit(toAccount, amount);
+        return true;
+    }
+
+    private boolean debit(Account account, BigDecimal amount) {
+        if (account instanceof HotAccount hotAccount) {
+            return hotAccount.withdraw(amount);
+        }
+        return balanceEngine.withdraw(account, amount);
+    }
+
+    private void credit(Account account, BigDecimal amount) {
+        if (account instanceof HotAccount hotAccount) {
+            hotAccount.deposit(amount);
+        } else {
+            balanceEngine.deposit(account, amount);
+        }
+    }
+
+    /**
+     * Saves the balances changed by the write before it ends, while the write
+     * still holds its accounts when the repository requires ordered saves.
+     */
+    private void saveBalances(BalanceSnapshots.Write write, Account... accounts) {
+        write.saved(accountsRepository.saveBalances(accounts));
+    }
 
-        LockException lockException = new LockException("Unable to acquire locks on the accounts");
-        log.error(lockException.getMessage(), lockException);
-        throw lockException;
+    /**
+     * Ends the write, then waits for its balances to be saved.
+     */
+    private void endWrite(BalanceSnapshots.Write write) {
+        write.end();
+        accountsRepository.awaitSaved(write.savedTicket());
+    }
+
+    /**
+     * @param fromBalance balance of the source account, read right after the
+     *                    transfer and before its write ended
+     * @param toBalance   balance of the target account, read likewise
+     */
+    private void notifyAndLogTransfer(Account fromAccount, Account toAccount, BigDecimal amount,
+                                      BigDecimal fromBalance, BigDecimal toBalance) {
+        notificationService.notifyAboutTransfer(fromAccount,
+                "Amount: " + amount + " transferred from account: " + fromAccount.getAccountId()
+                        + " to account: " + toAccount.getAccountId());
+        transactionLog.transferred(fromAccount.getAccountId(), toAccount.getAccountId(), amount, fromBalance,
+                toBalance);
+        accountLedger.transferred(fromAccount.getAccountId(), toAccount.getAccountId(), amount);
     }
 
     /**
@@ -130,24 +803,126 @@ public class AccountsService {
      */
     public boolean withdrawAmount(Account account, BigDecimal amount)
             throws InsufficientFundsException, InterruptedException, InvalidAmountException {
-        withdrawLock.lock();  // Acquire the withdraw lock
+        TransferResult result = tryWithdraw(account, amount);
+        if (!result.isSuccess()) {
+            throwWithdrawalRejection(result, account, amount);
+        }
+        return true;
+    }
+
+    /**
+     * Withdraws an amount expressed in minor units of the account's currency.
+     *
+     * @see #withdrawAmount(Account, BigDecimal)
+     */
+    public boolean withdrawAmount(MinorUnitsAccount account, long amount)
+            throws InsufficientFundsException, InvalidAmountException {
+        TransferResult result = tryWithdraw(account, amount);
+        if (!result.isSuccess()) {
+            throwWithdrawalRejection(result, account, amount);
+        }
+        return true;
+    }
+
+    /**
+     * tryWithdraw: variant of {@link #withdrawAmount(Account, BigDecimal)} that
+     * reports a rejected withdrawal as its result instead of throwing.
+     *
+     * @return {@link TransferResult#SUCCESS}, {@link TransferResult#INVALID_AMOUNT}
+     *         or {@link TransferResult#INSUFFICIENT_FUNDS}
+     */
+    public TransferResult tryWithdraw(Account account, BigDecimal amount) {
+        long start = System.nanoTime();
         try {
-            if (validatePositiveAmount(amount)) {
-                if (account.getBalance().compareTo(amount) >= 0) {
-                    account.setBalance(account.getBalance().subtract(amount));
-                    return true;
-                } else {
-                    InsufficientFundsException insufficientFundsException = new InsufficientFundsException(
-                            "Insufficient funds in account:" + account.getAccountId() + " withdrawn amount :" + amount
-                                    + " is greater than Account balance : " + account.getBalance());
-                    log.error(insufficientFundsException.getMessage(), insufficientFundsException);
-                    throw insufficientFundsException;
-                }
+            return recordResult(Operation.WITHDRAW, withdraw(account, amount));
+        } catch (LockTimeoutException e) {
+            return recordResult(Operation.WITHDRAW, TransferResult.LOCK_TIMEOUT);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.WITHDRAW, e);
+            throw e;
+        } finally {
+            metrics.recordOperation(Operation.WITHDRAW, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * tryWithdraw: minor-unit variant of {@link #tryWithdraw(Account, BigDecimal)}.
+     */
+    public TransferResult tryWithdraw(MinorUnitsAccount account, long amount) {
+        long start = System.nanoTime();
+        try {
+            return recordResult(Operation.WITHDRAW, withdraw(account, amount));
+        } catch (LockTimeoutException e) {
+            return recordResult(Operation.WITHDRAW, TransferResult.LOCK_TIMEOUT);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.WITHDRAW, e);
+            throw e;
+        } finally {
+            metrics.recordOperation(Operation.WITHDRAW, System.nanoTime() - start);
+        }
+    }
+
+    private TransferResult withdraw(Account account, BigDecimal amount) {
+        if (!isPositive(amount)) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        if (account instanceof MinorUnitsAccount minorUnitsAccount) {
+            if (!MinorUnits.isRepresentable(amount, minorUnitsAccount.getScale())) {
+                return TransferResult.INVALID_AMOUNT;
             }
-            return false;
+            return withdraw(minorUnitsAccount, MinorUnits.toMinorUnits(amount, minorUnitsAccount.getScale()));
+        }
+        BalanceSnapshots.Write write = balanceSnapshots.beginWrite(account);
+        try {
+            if (!debit(account, amount)) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            write.changed(account, amount.negate());
+            saveBalances(write, account);
+        } finally {
+            endWrite(write);
+        }
+        accountLedger.withdrawn(account.getAccountId(), amount);
+        return TransferResult.SUCCESS;
+    }
+
+    private TransferResult withdraw(MinorUnitsAccount account, long amount) {
+        if (amount <= 0) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        BalanceSnapshots.Write write = balanceSnapshots.beginWrite(account);
+        try {
+            if (!balanceEngine.withdraw(account, amount)) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            write.changed(account, MinorUnits.toBigDecimal(-amount, account.getScale()));
+            saveBalances(write, account);
         } finally {
-            withdrawLock.unlock();  // Release the withdraw lock
+            endWrite(write);
         }
+        accountLedger.withdrawn(account.getAccountId(), MinorUnits.toBigDecimal(amount, account.getScale()));
+        return TransferResult.SUCCESS;
+    }
+
+    /**
+     * Throws the exception of the rejected withdrawal; a lock timeout, which
+     * the withdrawal methods do not declare, as a {@link LockTimeoutException}.
+     */
+    private void throwWithdrawalRejection(TransferResult result, Account account, BigDecimal amount)
+            throws InsufficientFundsException, InvalidAmountException {
+        if (account instanceof MinorUnitsAccount minorUnitsAccount && amount != null) {
+            throwWithdrawalRejection(result, minorUnitsAccount, toMinorUnits(minorUnitsAccount, amount));
+        }
+        throwIfLockTimeout(result);
+        validatePositiveAmount(amount);
+        throw insufficientFunds(account, amount);
+    }
+
+    private void throwWithdrawalRejection(TransferResult result, MinorUnitsAccount account, long amount)
+            throws InsufficientFundsException, InvalidAmountException {
+        throwIfLockTimeout(result);
+        validatePositiveAmount(amount);
+        throw insufficientFunds(account, MinorUnits.toBigDecimal(amount, account.getScale()));
     }
 
     /**
@@ -161,18 +936,80 @@ public class AccountsService {
      */
     public boolean depositAmount(Account account, BigDecimal amount)
             throws InterruptedException, InvalidAmountException {
-        depositLock.lock();  // Acquire the deposit lock
+        long start = System.nanoTime();
         try {
+            if (account instanceof MinorUnitsAccount minorUnitsAccount) {
+                return deposit(minorUnitsAccount, toMinorUnits(minorUnitsAccount, amount));
+            }
             if (validatePositiveAmount(amount)) {
-                account.setBalance(account.getBalance().add(amount));
+                BalanceSnapshots.Write write = balanceSnapshots.beginWrite(account);
+                try {
+                    credit(account, amount);
+                    write.changed(account, amount);
+                    saveBalances(write, account);
+                } finally {
+                    endWrite(write);
+                }
+                accountLedger.deposited(account.getAccountId(), amount);
                 return true;
             }
             return false;
+        } catch (Exception e) {
+            metrics.recordFailure(Operation.DEPOSIT, e);
+            throw e;
         } finally {
-            depositLock.unlock();  // Release the deposit lock
+            metrics.recordOperation(Operation.DEPOSIT, System.nanoTime() - start);
         }
     }
 
+    /**
+     * Deposits an amount expressed in minor units of the account's currency.
+     *
+     * @see #depositAmount(Account, BigDecimal)
+     */
+    public boolean depositAmount(MinorUnitsAccount account, long amount) throws InvalidAmountException {
+        long start = System.nanoTime();
+        try {
+            return deposit(account, amount);
+        } catch (Exception e) {
+            metrics.recordFailure(Operation.DEPOSIT, e);
+            throw e;
+        } finally {
+            metrics.recordOperation(Operation.DEPOSIT, System.nanoTime() - start);
+        }
+    }
+
+    private boolean deposit(MinorUnitsAccount account, long amount) throws InvalidAmountException {
+        if (validatePositiveAmount(amount)) {
+            BigDecimal deposited = MinorUnits.toBigDecimal(amount, account.getScale());
+            BalanceSnapshots.Write write = balanceSnapshots.beginWrite(account);
+            try {
+                balanceEngine.deposit(account, amount);
+                write.changed(account, deposited);
+                saveBalances(write, account);
+            } finally {
+                endWrite(write);
+            }
+            accountLedger.deposited(account.getAccountId(), deposited);
+            return true;
+        }
+        return false;
+    }
+
+    private static void throwIfLockTimeout(TransferResult result) {
+        if (result == TransferResult.LOCK_TIMEOUT) {
+            throw logged(new LockTimeoutException(LockPolicy.TIMEOUT_MESSAGE));
+        }
+    }
+
+    private InsufficientFundsException insufficientFunds(Account account, BigDecimal amount) {
+        return logged(new InsufficientFundsException(insufficientFundsMessage(account, amount)));
+    }
+
+    private static <E extends Exception> E logged(E exception) {
+        log.error(exception.getMessage(), exception);
+        return exception;
+    }
 
     /**
      * validatePositiveAmount: validates if amount is positive else throw
@@ -183,26 +1020,71 @@ public class AccountsService {
      * @throws InvalidAmountException
      */
     private boolean validatePositiveAmount(BigDecimal amount) throws InvalidAmountException {
-        if (amount.compareTo(BigDecimal.ZERO) > 0) {
+        if (isPositive(amount)) {
+            return true;
+        } else {
+            throw new InvalidAmountException("Amount should not be negative");
+        }
+    }
+
+    private static boolean isPositive(BigDecimal amount) {
+        return amount != null && amount.signum() > 0;
+    }
+
+    private static String insufficientFundsMessage(Account account, BigDecimal amount) {
+        return "Insufficient funds in account:" + account.getAccountId() + " withdrawn amount :" + amount
+                + " is greater than Account balance : " + account.getBalance();
+    }
+
+    private boolean validatePositiveAmount(long amount) throws InvalidAmountException {
+        if (amount > 0) {
             return true;
         } else {
             throw new InvalidAmountException("Amount should not be negative");
         }
     }
 
+    private long toMinorUnits(MinorUnitsAccount account, BigDecimal amount) throws InvalidAmountException {
+        try {
+            return MinorUnits.toMinorUnits(amount, account.getScale());
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Amount " + amount + " can not be represented in " + account.getCurrency());
+        }
+    }
+
+    private void validateSameCurrency(Account fromAccount, Account toAccount) throws InvalidAccountException {
+        if (!Objects.equals(currencyOf(fromAccount), currencyOf(toAccount))) {
+            throw new InvalidAccountException("Accounts " + fromAccount.getAccountId() + " and "
+                    + toAccount.getAccountId() + " are held in different currencies");
+        }
+    }
+
+    private MinorUnitsAccount minorUnitsAccount(Account account, String currency) throws InvalidAccountException {
+        if (isHeldIn(account, currency)) {
+            return (MinorUnitsAccount) account;
+        }
+        throw new InvalidAccountException("Account " + account.getAccountId() + " is not held in " + currency);
+    }
+
+    private static boolean isHeldIn(Account account, String currency) {
+        return account instanceof MinorUnitsAccount minorUnitsAccount && minorUnitsAccount.getCurrency().equals(currency);
+    }
+
+    private static String currencyOf(Account account) {
+        return account instanceof MinorUnitsAccount minorUnitsAccount ? minorUnitsAccount.getCurrency() : null;
+    }
+
     /**
-     * logTransaction is used for test purpose.
-     *
-     * @param amount
-     * @param fromAccountID
-     * @param toAccountID
-     * @param fromAccountBalance
-     * @param toAccountBalance
-     */
-    private void logTransaction(BigDecimal amount, String fromAccountId, String toAccountId,
-                                BigDecimal fromAccountBalance, BigDecimal toAccountBalance) {
-        log.info("{} transferred {} from {} to {}. From Account balance: {} and To Account balance: {}",
-                Thread.currentThread().getName(), amount, fromAccountId, toAccountId, fromAccountBalance,
-                fromAccountBalance);
-    }
-}
\ No newline at end of file
+     * A batch transfer whose accounts have been looked up and validated.
+     */
+    private record ResolvedTransfer(int index, Account fromAccount, Account toAccount, BigDecimal amount,
+                                    long minorUnitsAmount) {
+
+        String pairKey() {
+            String fromAccountId = fromAccount.getAccountId();
+            String toAccountId = toAccount.getAccountId();
+            return fromAccountId.compareTo(toAccountId) <= 0 ? fromAccountId + '\n' + toAccountId
+                    : toAccountId + '\n' + fromAccountId;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.dws.challenge.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.concurrent.RingBuffer;
+import com.dws.challenge.concurrent.VirtualThreads;
+import com.dws.challenge.domain.Account;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decorates a {@link NotificationService} so that callers only enqueue the
+ * notification: a dedicated worker drains the bounded queue in batches and
+ * calls the delegate, keeping its latency off the transfer path.
+ * <p>
+ * When the queue is full the configured {@link BackpressurePolicy} applies.
+ * Notifications replayed from the spill file carry an account holding only
+ * its id, which is all the notification needs.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "notification.async.enabled", havingValue = "true")
+public class AsyncNotificationService implements NotificationService, DisposableBean {
+
+    /**
+     * What {@link #notifyAboutTransfer(Account, String)} does when the queue is full.
+     */
+    public enum BackpressurePolicy {
+        /** Wait until the worker frees a slot. */
+        BLOCK,
+        /** Discard the oldest queued notification to make room. */
+        DROP_OLDEST,
+        /** Append the notification to a file replayed once the queue drains. */
+        SPILL_TO_DISK
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final NotificationService delegate;
+    private final RingBuffer<PendingNotification> queue;
+    private final int batchSize;
+    private final BackpressurePolicy backpressurePolicy;
+    private final NotificationSpillFile spillFile;
+    private final Thread worker;
+
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile boolean workerParked;
+
+    public AsyncNotificationService(NotificationService delegate, int capacity, int batchSize,
+                                    BackpressurePolicy backpressurePolicy, Path spillDirectory) {
+        this(delegate, capacity, batchSize, backpressurePolicy, spillDirectory, false, AccountsMetrics.noop());
+    }
+
+    /**
+     * @param virtualThreads whether the worker runs on a virtual thread, when the
+     *                       runtime supports them.
+     */
+    @Autowired
+    public AsyncNotificationService(@Qualifier("emailNotificationService") NotificationService delegate,
+                                    @Value("${notification.async.capacity:8192}") int capacity,
+                                    @Value("${notification.async.batch-size:256}") int batchSize,
+                                    @Value("${notification.async.backpressure:BLOCK}") BackpressurePolicy backpressurePolicy,
+                                    @Value("${notification.async.spill-directory:${java.io.tmpdir}/challenge-notifications}") Path spillDirectory,
+                                    @Value("${accounts.virtual-threads.enabled:false}") boolean virtualThreads,
+                                    AccountsMetrics metrics) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.delegate = delegate;
+        this.queue = new RingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.backpressurePolicy = backpressurePolicy;
+        this.spillFile = backpressurePolicy == BackpressurePolicy.SPILL_TO_DISK
+                ? new NotificationSpillFile(spillDirectory) : null;
+        this.worker = VirtualThreads.start("notification-dispatcher", virtualThreads, this::drainLoop);
+        metrics.registerNotifications(this);
+    }
+
+    @Override
+    public void notifyAboutTransfer(Account account, String transferDescription) {
+        PendingNotification notification = new PendingNotification(account, transferDescription);
+        if (!queue.offer(notification)) {
+            switch (backpressurePolicy) {
+                case BLOCK -> {
+                    while (!queue.offer(notification)) {
+                        wakeWorker();
+                        LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    }
+                }
+                case DROP_OLDEST -> {
+                    while (!queue.offer(notification)) {
+                        if (queue.poll() != null) {
+                            droppedCount.incrementAndGet();
+                        }
+                    }
+                }
+                case SPILL_TO_DISK -> {
+                    spillFile.append(account.getAccountId(), transferDescription);
+                    spilledCount.incrementAndGet();
+                }
+            }
+        }
+        wakeWorker();
+    }
+
+    /**
+     * @return the number of notifications waiting in the queue.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.capacity();
+    }
+
+    /**
+     * @return the number of notifications waiting in the spill file.
+     */
+    public long getSpillBacklog() {
+        return spillFile == null ? 0 : spillFile.backlog();
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Stops the worker once the queued and spilled notifications are dispatched.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(worker);
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+        log.info("Notification dispatcher stopped: dispatched {}, dropped {}, spilled {}, failed {}, still queued {}",
+                getDispatchedCount(), getDroppedCount(), getSpilledCount(), getFailedCount(), getQueueDepth());
+    }
+
+    private void wakeWorker() {
+        if (workerParked) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingNotification> batch = new ArrayList<>(batchSize);
+        while (true) {
+            if (queue.drainTo(batch, batchSize) > 0) {
+                batch.forEach(notification -> dispatch(notification.account(), notification.transferDescription()));
+                batch.clear();
+            } else if (spillFile != null && spillFile.backlog() > 0) {
+                spillFile.replay((accountId, description) -> dispatch(new Account(accountId), description));
+            } else if (!running) {
+                return;
+            } else {
+                workerParked = true;
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                workerParked = false;
+            }
+        }
+    }
+
+    private void dispatch(Account account, String transferDescription) {
+        try {
+            delegate.notifyAboutTransfer(account, transferDescription);
+            dispatchedCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            failedCount.incrementAndGet();
+            log.error("Unable to send notification to owner of {}", account.getAccountId(), e);
+        }
+    }
+
+    private record PendingNotification(Account account, String transferDescription) {
+    }
+}
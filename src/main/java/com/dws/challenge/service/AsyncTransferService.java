@@ -0,0 +1,126 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.concurrent.RequestDeadline;
+import com.dws.challenge.concurrent.VirtualThreads;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.exception.TransferServiceException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs transfers on the service's own executor and returns their result as a
+ * {@link CompletableFuture}, so that the request thread is given back to the
+ * server while the transfer waits for account locks. The
+ * {@link RequestDeadline} of the caller travels with the transfer.
+ * <p>
+ * Transfers run on virtual threads when enabled and supported, and otherwise
+ * on a fixed pool of platform threads, which bounds the number of transfers
+ * waiting for locks at once. The pool queues at most {@code queue-capacity}
+ * transfers and refuses more with a {@link RejectedExecutionException}, so a
+ * burst beyond what admission control lets through is turned away rather
+ * than left to wait out its deadline in the queue. A transfer whose
+ * {@link RequestDeadline} passed while it was queued is not run and completes
+ * with {@link TransferResult#LOCK_TIMEOUT}, as if it had timed out on the
+ * account locks. A transfer of a caller without a deadline is given one of
+ * {@code request-timeout-ms}, so that no transfer is run long after its client
+ * has been answered.
+ */
+@Slf4j
+@Service
+public class AsyncTransferService implements DisposableBean {
+
+    private final IdempotentTransferService idempotentTransferService;
+    private final AccountsService accountsService;
+    private final ExecutorService executor;
+    private final long requestTimeoutMillis;
+
+    /**
+     * @param threads              number of platform threads running transfers,
+     *                             without virtual threads
+     * @param queueCapacity        number of transfers waiting for a platform
+     *                             thread
+     * @param requestTimeoutMillis deadline of transfers whose caller has none,
+     *                             or 0 for none
+     * @param virtualThreads       whether transfers run on virtual threads, when
+     *                             the runtime supports them
+     */
+    @Autowired
+    public AsyncTransferService(IdempotentTransferService idempotentTransferService, AccountsService accountsService,
+                                @Value("${accounts.async.threads:64}") int threads,
+                                @Value("${accounts.async.queue-capacity:1000}") int queueCapacity,
+                                @Value("${accounts.async.request-timeout-ms:30000}") long requestTimeoutMillis,
+                                @Value("${accounts.virtual-threads.enabled:false}") boolean virtualThreads) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Transfer threads and queue capacity must be positive: " + threads
+                    + ", " + queueCapacity);
+        }
+        this.idempotentTransferService = idempotentTransferService;
+        this.accountsService = accountsService;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.executor = virtualThreads && VirtualThreads.isSupported()
+                ? VirtualThreads.newThreadPerTaskExecutor("transfer-vt-")
+                : new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity), VirtualThreads.platformThreadFactory("transfer-"));
+    }
+
+    /**
+     * Transfers like {@link IdempotentTransferService#transfer}. The future
+     * completes exceptionally with the exceptions it throws.
+     *
+     * @throws RejectedExecutionException if the transfer queue is full
+     */
+    public CompletableFuture<TransferResult> transfer(String requestId, String fromAccountId, String toAccountId,
+                                                      BigDecimal amount, String currency) {
+        return submit(() -> {
+            try {
+                return idempotentTransferService.transfer(requestId, fromAccountId, toAccountId, amount, currency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (TransferServiceException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Transfers like {@link AccountsService#tryTransfer(List)}.
+     *
+     * @throws RejectedExecutionException if the transfer queue is full
+     */
+    public CompletableFuture<TransferResult> transfer(List<TransferLeg> legs) {
+        return submit(() -> accountsService.tryTransfer(legs));
+    }
+
+    private CompletableFuture<TransferResult> submit(Supplier<TransferResult> transfer) {
+        Supplier<TransferResult> unlessExpired = () -> RequestDeadline.remainingNanos() > 0
+                ? transfer.get() : TransferResult.LOCK_TIMEOUT;
+        return CompletableFuture.supplyAsync(requestTimeoutMillis > 0
+                ? RequestDeadline.propagate(unlessExpired, requestTimeoutMillis, TimeUnit.MILLISECONDS)
+                : RequestDeadline.propagate(unlessExpired), executor);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Transfers still running at shutdown");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Sum of all balances at one cut, see {@link AccountsService#auditBalances()}.
+ *
+ * @param accountCount     number of accounts at the cut
+ * @param total            sum of the balances of the accounts without a currency
+ * @param totalsByCurrency sum of the balances of the accounts held in each
+ *                         currency, by ISO 4217 code
+ */
+public record BalanceAudit(long accountCount, BigDecimal total, Map<String, BigDecimal> totalsByCurrency) {
+}
@@ -0,0 +1,43 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * Applies the net changes of {@link BalanceEngine#applyDeltas(List, List)} once
+ * the engine has made itself the only writer of their accounts. Every change
+ * is checked before the first balance is written, so none is left half
+ * applied.
+ */
+final class BalanceDeltas {
+
+    private BalanceDeltas() {
+    }
+
+    /**
+     * @return the index of the first account with insufficient funds, or -1 if
+     * the changes were applied.
+     * @throws IllegalArgumentException if an account can not hold its change,
+     *                                  see {@link Account#canHold(BigDecimal)};
+     *                                  no balance is changed then either.
+     */
+    static int apply(List<Account> accounts, List<BigDecimal> deltas) {
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            if (!account.canHold(deltas.get(i))) {
+                throw new IllegalArgumentException(
+                        "Account " + account.getAccountId() + " can not hold a change of " + deltas.get(i));
+            }
+            if (account.getBalance().add(deltas.get(i)).signum() < 0) {
+                return i;
+            }
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            account.setBalance(account.getBalance().add(deltas.get(i)));
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,71 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+
+/**
+ * Applies balance mutations to accounts. Amounts are expected to be validated
+ * (positive) by the caller; implementations only decide how concurrent
+ * mutations of the same account are coordinated.
+ * <p>
+ * The {@code long} overloads work on minor units and must not allocate; both
+ * accounts of a minor-unit transfer are expected to share the same currency.
+ */
+public interface BalanceEngine {
+
+    /**
+     * Debits the amount from the account if its balance covers it.
+     *
+     * @return true if the amount was debited, false if the balance is insufficient.
+     */
+    boolean withdraw(Account account, BigDecimal amount);
+
+    /**
+     * Credits the amount to the account.
+     */
+    void deposit(Account account, BigDecimal amount);
+
+    /**
+     * Moves the amount from one account to the other.
+     *
+     * @return true if the amount was moved, false if the source balance is
+     * insufficient, in which case neither account is changed.
+     */
+    boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount);
+
+    /**
+     * Minor-unit variant of {@link #withdraw(Account, BigDecimal)}.
+     */
+    boolean withdraw(MinorUnitsAccount account, long amount);
+
+    /**
+     * Minor-unit variant of {@link #deposit(Account, BigDecimal)}.
+     */
+    void deposit(MinorUnitsAccount account, long amount);
+
+    /**
+     * Minor-unit variant of {@link #transfer(Account, Account, BigDecimal)}.
+     */
+    boolean transfer(MinorUnitsAccount fromAccount, MinorUnitsAccount toAccount, long amount);
+
+    /**
+     * Runs several operations on the same two accounts, acquiring whatever the
+     * engine needs to coordinate them once for all operations.
+     */
+    void runOnPair(Account firstAccount, Account secondAccount, Runnable operations);
+
+    /**
+     * Applies a net balance change to each account as one unit: either every
+     * account ends up with its new balance or, if any balance would become
+     * negative, none is changed.
+     *
+     * @param accounts distinct accounts in their natural order
+     * @param deltas   change per account, negative for a debit
+     * @return the index of the first account with insufficient funds, or -1 if
+     * the changes were applied.
+     */
+    int applyDeltas(List<Account> accounts, List<BigDecimal> deltas);
+}
@@ -0,0 +1,275 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import com.dws.challenge.concurrent.EpochGuard;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnits;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.repository.AccountsRepository;
+
+/**
+ * Point-in-time reads of all balances while transfers go on. Every balance
+ * change made by {@link AccountsService} is wrapped in a {@link Write}, which
+ * enters the current epoch of an {@link EpochGuard} on the lock stripes of its
+ * accounts. A snapshot:
+ * <ol>
+ * <li>starts recording the changes of the next epoch, per account, as deltas,
+ * and advances the epoch;</li>
+ * <li>waits for the writes of the previous epoch to finish, which fixes the
+ * cut: every change of the previous epoch and none of the new one;</li>
+ * <li>copies each account's balance less the deltas recorded for it so far,
+ * which gives its balance at the cut;</li>
+ * <li>stops recording, and only then hands the copied balances to the
+ * reader.</li>
+ * </ol>
+ * A write of the new epoch waits, before changing anything, until the writes
+ * of the previous epoch on its own lock stripes have finished; writes on other
+ * stripes go on. No write of the new epoch can therefore change an account
+ * before a write of the previous one, and every balance at the cut is one the
+ * account actually held. That wait lasts at most as long as the conflicting
+ * writes already running, and is the only time a write waits for a snapshot.
+ * <p>
+ * Outside of snapshots a write only enters and exits the epoch; while balances
+ * are copied, a write also holds the lock stripes of its accounts, so that a
+ * balance and its delta are read together. The stripes are taken in index
+ * order by writes and one at a time by the snapshot, so they cannot deadlock.
+ * Recording ends with the copy, however slowly the reader then consumes it.
+ * <p>
+ * With ordered writes, for repositories that must save balances in the order
+ * they changed, every write holds its stripes, and writes sharing an account
+ * therefore run one after the other.
+ */
+final class BalanceSnapshots {
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final boolean orderedWrites;
+    private final EpochGuard epochGuard = new EpochGuard(LOCK_STRIPES);
+    private final Lock[] stripes = new Lock[LOCK_STRIPES];
+    /** Snapshots are copied one at a time; writes never take this lock. */
+    private final Lock snapshotLock = new ReentrantLock();
+    private volatile Recording recording;
+
+    BalanceSnapshots() {
+        this(false);
+    }
+
+    /**
+     * @param orderedWrites whether writes always hold the lock stripes of their
+     *                      accounts, not only while a snapshot is copied
+     */
+    BalanceSnapshots(boolean orderedWrites) {
+        this.orderedWrites = orderedWrites;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Starts a change of the accounts. The write must be ended by the same
+     * thread, in a finally block.
+     */
+    Write beginWrite(Account account) {
+        return beginWrite(new int[] { stripeIndex(account) });
+    }
+
+    Write beginWrite(Account firstAccount, Account secondAccount) {
+        int first = stripeIndex(firstAccount);
+        int second = stripeIndex(secondAccount);
+        return beginWrite(first == second ? new int[] { first }
+                : new int[] { Math.min(first, second), Math.max(first, second) });
+    }
+
+    Write beginWrite(List<Account> accounts) {
+        int[] indexes = new int[accounts.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = stripeIndex(accounts.get(i));
+        }
+        Arrays.sort(indexes);
+        int count = 0;
+        for (int index : indexes) {
+            // accounts sharing a stripe take it once
+            if (count == 0 || indexes[count - 1] != index) {
+                indexes[count++] = index;
+            }
+        }
+        return beginWrite(Arrays.copyOf(indexes, count));
+    }
+
+    /**
+     * Passes every account to the action with its balance at one consistent
+     * cut. Transfers keep going while the balances are copied, taking lock
+     * stripes meanwhile, and the action only sees the copy, so it may take as
+     * long as it needs. Accounts created after the cut are left out.
+     */
+    void read(AccountsRepository accountsRepository, BiConsumer<Account, BigDecimal> action) {
+        List<Account> accounts = new ArrayList<>();
+        List<BigDecimal> balances = new ArrayList<>();
+        snapshotLock.lock();
+        try {
+            Recording current = new Recording(epochGuard.current() + 1);
+            recording = current;
+            try {
+                // also clears the parity the next snapshot advances to
+                epochGuard.awaitExit(epochGuard.advance());
+                accountsRepository.forEachAccount(account -> {
+                    BigDecimal balance;
+                    Lock stripe = stripes[stripeIndex(account)];
+                    stripe.lock();
+                    try {
+                        balance = current.balanceAtCut(account);
+                    } finally {
+                        stripe.unlock();
+                    }
+                    if (balance != null) {
+                        accounts.add(account);
+                        balances.add(balance);
+                    }
+                });
+            } finally {
+                recording = null;
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            action.accept(accounts.get(i), balances.get(i));
+        }
+    }
+
+    private Write beginWrite(int[] sortedIndexes) {
+        long epoch = epochGuard.enter(sortedIndexes);
+        Recording current = recording;
+        if (current == null || current.epoch != epoch) {
+            return new Write(epoch, sortedIndexes, null, orderedWrites ? lockStripes(sortedIndexes) : null);
+        }
+        for (int index : sortedIndexes) {
+            // before taking the stripes, which writes of the previous epoch may still need
+            epochGuard.awaitExit(epoch - 1, index);
+        }
+        return new Write(epoch, sortedIndexes, current, lockStripes(sortedIndexes));
+    }
+
+    private Lock[] lockStripes(int[] sortedIndexes) {
+        Lock[] locked = new Lock[sortedIndexes.length];
+        for (int i = 0; i < sortedIndexes.length; i++) {
+            locked[i] = stripes[sortedIndexes[i]];
+            locked[i].lock();
+        }
+        return locked;
+    }
+
+    private static int stripeIndex(Account account) {
+        int hash = account.getAccountId().hashCode();
+        return (hash ^ hash >>> 16) & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Changes made in the epoch following a cut.
+     */
+    private static final class Recording {
+
+        private final long epoch;
+        private final Map<String, BigDecimal> deltas = new ConcurrentHashMap<>();
+        private final Set<String> created = ConcurrentHashMap.newKeySet();
+
+        Recording(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * @return the balance at the cut, or null if the account did not exist
+         *         yet
+         */
+        BigDecimal balanceAtCut(Account account) {
+            if (created.contains(account.getAccountId())) {
+                return null;
+            }
+            BigDecimal balance = account.getBalance();
+            BigDecimal delta = deltas.get(account.getAccountId());
+            return delta == null ? balance : balance.subtract(delta);
+        }
+    }
+
+    /**
+     * A change of balances, recorded only while a snapshot is copied.
+     */
+    final class Write {
+
+        private final long epoch;
+        private final int[] stripeIndexes;
+        private final Recording recording;
+        private final Lock[] lockedStripes;
+        private long savedTicket;
+
+        private Write(long epoch, int[] stripeIndexes, Recording recording, Lock[] lockedStripes) {
+            this.epoch = epoch;
+            this.stripeIndexes = stripeIndexes;
+            this.recording = recording;
+            this.lockedStripes = lockedStripes;
+        }
+
+        void changed(Account account, BigDecimal delta) {
+            if (recording != null) {
+                recording.deltas.merge(account.getAccountId(), delta, BigDecimal::add);
+            }
+        }
+
+        void changed(List<Account> accounts, List<BigDecimal> deltas) {
+            for (int i = 0; recording != null && i < accounts.size(); i++) {
+                changed(accounts.get(i), deltas.get(i));
+            }
+        }
+
+        void transferred(Account fromAccount, Account toAccount, BigDecimal amount) {
+            if (recording != null) {
+                changed(fromAccount, amount.negate());
+                changed(toAccount, amount);
+            }
+        }
+
+        void transferred(MinorUnitsAccount fromAccount, MinorUnitsAccount toAccount, long amount) {
+            if (recording != null) {
+                transferred(fromAccount, toAccount, MinorUnits.toBigDecimal(amount, fromAccount.getScale()));
+            }
+        }
+
+        void created(Account account) {
+            if (recording != null) {
+                recording.created.add(account.getAccountId());
+            }
+        }
+
+        /**
+         * @param ticket returned by
+         *               {@link AccountsRepository#saveBalances(Account...)} for
+         *               the balances of this write
+         */
+        void saved(long ticket) {
+            savedTicket = ticket;
+        }
+
+        long savedTicket() {
+            return savedTicket;
+        }
+
+        void end() {
+            if (lockedStripes != null) {
+                for (int i = lockedStripes.length - 1; i >= 0; i--) {
+                    lockedStripes[i].unlock();
+                }
+            }
+            epochGuard.exit(epoch, stripeIndexes);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.dws.challenge.service;
+
+/**
+ * How a batch of transfers is applied.
+ */
+public enum BatchTransferMode {
+
+    /**
+     * Every transfer is applied or none is. Funds are checked on the net
+     * position of each account across the whole batch.
+     */
+    ATOMIC,
+
+    /**
+     * Each transfer succeeds or fails on its own.
+     */
+    BEST_EFFORT
+}
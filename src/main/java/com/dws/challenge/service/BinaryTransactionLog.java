@@ -0,0 +1,247 @@
+package com.dws.challenge.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.concurrent.RingBuffer;
+import com.dws.challenge.concurrent.VirtualThreads;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transaction log writing fixed-size binary records (see
+ * {@link TransactionLogFormat}) to memory-mapped segment files. The
+ * transferring thread only captures the transfer and offers it to a
+ * {@link RingBuffer}; a dedicated writer encodes the records, so neither
+ * formatting nor I/O happens on the transfer path.
+ * <p>
+ * Each start opens a new segment, and a full segment rolls over to the next
+ * one; only the newest {@code max-segments} segments are kept. Segments are
+ * forced to disk when they roll over and at shutdown, and otherwise left to
+ * the operating system: a process crash only loses the transfers still
+ * queued, a machine crash may also lose the records of the current segment.
+ * Segments are decoded with {@link TransactionLogReader}.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "accounts.audit.log", havingValue = "binary")
+public class BinaryTransactionLog implements TransactionLog, DisposableBean {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final RingBuffer<Transfer> queue;
+    private final Thread writer;
+
+    /** Written by the writer thread only. */
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private long sequence;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile boolean writerParked;
+
+    /**
+     * @param segmentSize    size of a segment file, rounded down to whole records
+     * @param maxSegments    number of segment files kept
+     * @param virtualThreads whether the writer runs on a virtual thread, when the
+     *                       runtime supports them.
+     */
+    public BinaryTransactionLog(Path directory, int segmentSize, int maxSegments, int queueCapacity,
+                                boolean virtualThreads) {
+        if (segmentSize < TransactionLogFormat.RECORD_SIZE || maxSegments < 1) {
+            throw new IllegalArgumentException("Need at least one segment of at least one record: " + maxSegments
+                    + " x " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % TransactionLogFormat.RECORD_SIZE;
+        this.maxSegments = maxSegments;
+        this.queue = new RingBuffer<>(queueCapacity);
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = TransactionLogReader.segments(directory);
+            this.segmentIndex = segments.isEmpty() ? 0 : indexOf(segments.get(segments.size() - 1)) + 1;
+            this.sequence = nextSequence(segments);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open transaction log in " + directory, e);
+        }
+        this.segment = map(segmentIndex);
+        deleteOldSegments();
+        log.info("Writing transaction log to {} from segment {} and record {}", directory, segmentIndex, sequence);
+        this.writer = VirtualThreads.start("transaction-log-writer", virtualThreads, this::writeLoop);
+    }
+
+    @Autowired
+    public BinaryTransactionLog(@Value("${accounts.audit.directory:${java.io.tmpdir}/challenge-audit}") Path directory,
+                                @Value("${accounts.audit.segment-size:67108864}") int segmentSize,
+                                @Value("${accounts.audit.max-segments:16}") int maxSegments,
+                                @Value("${accounts.audit.queue-capacity:65536}") int queueCapacity,
+                                @Value("${accounts.virtual-threads.enabled:false}") boolean virtualThreads,
+                                AccountsMetrics metrics) {
+        this(directory, segmentSize, maxSegments, queueCapacity, virtualThreads);
+        metrics.registerTransactionLog(this);
+    }
+
+    /**
+     * Captures the transfer and queues it for the writer, waiting only while the
+     * queue is full.
+     */
+    @Override
+    public void transferred(String fromAccountId, String toAccountId, BigDecimal amount, BigDecimal fromBalance,
+                            BigDecimal toBalance) {
+        Transfer transfer = new Transfer(System.currentTimeMillis(), fromAccountId, toAccountId, amount, fromBalance,
+                toBalance, Thread.currentThread().getName());
+        while (!queue.offer(transfer)) {
+            wakeWriter();
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        wakeWriter();
+    }
+
+    /**
+     * @return the number of transfers waiting to be written.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Stops the writer once the queued transfers are written, and forces the
+     * current segment to disk.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        log.info("Transaction log writer stopped: written {}, failed {}, still queued {}", getWrittenCount(),
+                getFailedCount(), getQueueDepth());
+    }
+
+    private void wakeWriter() {
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        List<Transfer> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            if (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                batch.forEach(this::write);
+                batch.clear();
+            } else if (!running) {
+                segment.force();
+                return;
+            } else {
+                writerParked = true;
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private void write(Transfer transfer) {
+        try {
+            if (segment.remaining() < TransactionLogFormat.RECORD_SIZE) {
+                roll();
+            }
+            TransactionLogFormat.encode(segment, sequence, transfer.timestamp(), transfer.fromAccountId(),
+                    transfer.toAccountId(), transfer.amount(), transfer.fromBalance(), transfer.toBalance(),
+                    transfer.threadName());
+            sequence++;
+            writtenCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            failedCount.incrementAndGet();
+            log.error("Unable to write transfer from {} to {} to the transaction log", transfer.fromAccountId(),
+                    transfer.toAccountId(), e);
+        }
+    }
+
+    private void roll() {
+        segment.force();
+        segment = map(segmentIndex + 1);
+        segmentIndex++;
+        deleteOldSegments();
+    }
+
+    private MappedByteBuffer map(long index) {
+        try (FileChannel channel = FileChannel.open(TransactionLogFormat.segmentFile(directory, index),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map transaction log segment " + index + " in " + directory, e);
+        }
+    }
+
+    private void deleteOldSegments() {
+        for (long index = segmentIndex - maxSegments; index >= 0; index--) {
+            try {
+                if (!Files.deleteIfExists(TransactionLogFormat.segmentFile(directory, index))) {
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Unable to delete transaction log segment {}", index, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the sequence number following the last record of the newest
+     *         segment holding any
+     */
+    private static long nextSequence(List<Path> segments) throws IOException {
+        long[] last = { -1 };
+        for (int i = segments.size() - 1; i >= 0 && last[0] < 0; i--) {
+            TransactionLogReader.read(segments.get(i), record -> last[0] = record.sequence());
+        }
+        return last[0] + 1;
+    }
+
+    private static long indexOf(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return Long.parseLong(name.substring("audit-".length(), name.length() - ".log".length()));
+    }
+
+    /**
+     * A transfer captured on the transferring thread, encoded by the writer.
+     */
+    private record Transfer(long timestamp, String fromAccountId, String toAccountId, BigDecimal amount,
+                            BigDecimal fromBalance, BigDecimal toBalance, String threadName) {
+    }
+}
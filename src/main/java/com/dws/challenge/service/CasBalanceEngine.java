@@ -0,0 +1,148 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+
+/**
+ * Lock-free engine: each balance is an atomic cell holding an immutable
+ * {@link BigDecimal} and every mutation is a compare-and-set retry loop, so a
+ * deposit or withdrawal never parks a thread.
+ * <p>
+ * A transfer debits the source first and credits the target afterwards. The
+ * amount is briefly in flight between the two steps, but since a credit cannot
+ * fail it is never lost and the transfer needs no lock on either account.
+ * <p>
+ * Multi-account changes must not show some of their changes, nor undo a debit
+ * another mutation has already seen, so they go through an {@link AccountGate}:
+ * every mutation passes the stripe of its account in shared mode, and a
+ * multi-account change holds the stripes of all its accounts exclusively while
+ * it checks and applies every delta. The gate spins rather than parks, so a
+ * mutation arriving during such a change waits for it without parking either.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.balance-engine", havingValue = "cas")
+public class CasBalanceEngine implements BalanceEngine {
+
+    private final AccountGate gate = new AccountGate();
+
+    @Override
+    public boolean withdraw(Account account, BigDecimal amount) {
+        gate.enter(account);
+        try {
+            return debit(account, amount);
+        } finally {
+            gate.leave(account);
+        }
+    }
+
+    @Override
+    public void deposit(Account account, BigDecimal amount) {
+        gate.enter(account);
+        try {
+            credit(account, amount);
+        } finally {
+            gate.leave(account);
+        }
+    }
+
+    @Override
+    public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        if (!withdraw(fromAccount, amount)) {
+            return false;
+        }
+        deposit(toAccount, amount);
+        return true;
+    }
+
+    @Override
+    public boolean withdraw(MinorUnitsAccount account, long amount) {
+        gate.enter(account);
+        try {
+            return debit(account, amount);
+        } finally {
+            gate.leave(account);
+        }
+    }
+
+    @Override
+    public void deposit(MinorUnitsAccount account, long amount) {
+        gate.enter(account);
+        try {
+            credit(account, amount);
+        } finally {
+            gate.leave(account);
+        }
+    }
+
+    @Override
+    public boolean transfer(MinorUnitsAccount fromAccount, MinorUnitsAccount toAccount, long amount) {
+        if (!withdraw(fromAccount, amount)) {
+            return false;
+        }
+        deposit(toAccount, amount);
+        return true;
+    }
+
+    @Override
+    public void runOnPair(Account firstAccount, Account secondAccount, Runnable operations) {
+        operations.run();
+    }
+
+    @Override
+    public int applyDeltas(List<Account> accounts, List<BigDecimal> deltas) {
+        AccountGate.Held held = gate.hold(accounts);
+        try {
+            return BalanceDeltas.apply(accounts, deltas);
+        } finally {
+            gate.release(held);
+        }
+    }
+
+    private static boolean debit(Account account, BigDecimal amount) {
+        for (;;) {
+            BigDecimal current = account.getBalance();
+            if (current.compareTo(amount) < 0) {
+                return false;
+            }
+            if (account.compareAndSetBalance(current, current.subtract(amount))) {
+                return true;
+            }
+        }
+    }
+
+    private static void credit(Account account, BigDecimal amount) {
+        for (;;) {
+            BigDecimal current = account.getBalance();
+            if (account.compareAndSetBalance(current, current.add(amount))) {
+                return;
+            }
+        }
+    }
+
+    private static boolean debit(MinorUnitsAccount account, long amount) {
+        for (;;) {
+            long current = account.getMinorBalance();
+            if (current < amount) {
+                return false;
+            }
+            if (account.compareAndSetMinorBalance(current, current - amount)) {
+                return true;
+            }
+        }
+    }
+
+    private static void credit(MinorUnitsAccount account, long amount) {
+        for (;;) {
+            long current = account.getMinorBalance();
+            if (account.compareAndSetMinorBalance(current, Math.addExact(current, amount))) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.concurrent.RequestDeadline;
+import com.dws.challenge.concurrent.SegmentedCache;
+import com.dws.challenge.domain.MinorUnits;
+import com.dws.challenge.exception.TransferServiceException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs each transfer carrying a request id at most once. The outcome of every
+ * such transfer is kept in a {@link SegmentedCache} for a bounded time, so a
+ * client retrying after a timeout gets the original {@link TransferResult}
+ * back instead of moving the money a second time. A retry arriving while the
+ * original request is still running waits for its outcome, up to its own
+ * {@link RequestDeadline}, and gets {@link TransferResult#LOCK_TIMEOUT} beyond.
+ * A transfer that timed out on the account locks is forgotten, so that a retry
+ * runs it.
+ */
+@Service
+@Slf4j
+public class IdempotentTransferService {
+
+    private final AccountsService accountsService;
+    private final SegmentedCache<String, RecordedTransfer> transfers;
+
+    /**
+     * @param maxRequestIds maximum number of request ids remembered
+     * @param ttlSeconds    time a request id is remembered for
+     * @param segments      number of independently locked cache segments
+     */
+    @Autowired
+    public IdempotentTransferService(AccountsService accountsService,
+                                     @Value("${accounts.idempotency.max-request-ids:100000}") int maxRequestIds,
+                                     @Value("${accounts.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                                     @Value("${accounts.idempotency.segments:16}") int segments) {
+        this.accountsService = accountsService;
+        this.transfers = new SegmentedCache<>(maxRequestIds, ttlSeconds, TimeUnit.SECONDS, segments);
+    }
+
+    /**
+     * Transfers like {@link AccountsService#tryTransfer(String, String, BigDecimal)},
+     * or like its minor-unit variant when a currency is given, unless a transfer
+     * with the same request id was made before; a repeated request gets the
+     * result of the original one.
+     *
+     * @param requestId client-chosen id of the transfer, or null to transfer
+     *                  without deduplication
+     * @throws TransferServiceException If the request id was used for a
+     *                                  different transfer.
+     */
+    public TransferResult transfer(String requestId, String fromAccountId, String toAccountId, BigDecimal amount,
+                                   String currency)
+            throws InterruptedException, TransferServiceException {
+        if (requestId == null) {
+            return transfer(fromAccountId, toAccountId, amount, currency);
+        }
+        RecordedTransfer transfer = new RecordedTransfer(fromAccountId, toAccountId, amount, currency,
+                new CompletableFuture<>());
+        RecordedTransfer original = transfers.putIfAbsent(requestId, transfer);
+        if (original != null) {
+            return replay(requestId, original, transfer);
+        }
+        try {
+            TransferResult result = transfer(fromAccountId, toAccountId, amount, currency);
+            transfer.outcome().complete(result);
+            if (result == TransferResult.LOCK_TIMEOUT) {
+                // nothing was moved, a retry runs the transfer again
+                transfers.invalidate(requestId);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            transfer.outcome().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal amount, String currency) {
+        if (currency == null) {
+            return accountsService.tryTransfer(fromAccountId, toAccountId, amount);
+        }
+        int scale = MinorUnits.scaleOf(currency);
+        if (amount == null || !MinorUnits.isRepresentable(amount, scale)) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        return accountsService.tryTransfer(fromAccountId, toAccountId, MinorUnits.toMinorUnits(amount, scale),
+                currency);
+    }
+
+    private TransferResult replay(String requestId, RecordedTransfer original, RecordedTransfer retry)
+            throws InterruptedException, TransferServiceException {
+        if (!original.isSameTransfer(retry)) {
+            TransferServiceException transferServiceException = new TransferServiceException(
+                    "Request id " + requestId + " was already used for a different transfer");
+            log.error(transferServiceException.getMessage(), transferServiceException);
+            throw transferServiceException;
+        }
+        log.info("Replaying the outcome of transfer request {}", requestId);
+        try {
+            return original.outcome().get(RequestDeadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw new TransferServiceException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            return TransferResult.LOCK_TIMEOUT;
+        }
+    }
+
+    /**
+     * A transfer made with a request id and its outcome, completed once the
+     * transfer has run.
+     */
+    private record RecordedTransfer(String fromAccountId, String toAccountId, BigDecimal amount, String currency,
+                                    CompletableFuture<TransferResult> outcome) {
+
+        boolean isSameTransfer(RecordedTransfer other) {
+            return Objects.equals(fromAccountId, other.fromAccountId) && Objects.equals(toAccountId, other.toAccountId)
+                    && (amount == null ? other.amount == null
+                            : other.amount != null && amount.compareTo(other.amount) == 0)
+                    && Objects.equals(currency, other.currency);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One change of an account's balance, as kept by {@link AccountLedger}.
+ *
+ * @param sequence              position in the account's history, from 0
+ * @param timestamp             time the change was made, to the millisecond
+ * @param amount                signed change of the balance, negative for
+ *                              withdrawals and outgoing transfers
+ * @param counterpartyAccountId other account of a transfer, null for deposits
+ *                              and withdrawals
+ */
+public record LedgerEntry(long sequence, Instant timestamp, Type type, BigDecimal amount,
+                          String counterpartyAccountId) {
+
+    public enum Type {
+        DEPOSIT,
+        WITHDRAWAL,
+        TRANSFER_IN,
+        TRANSFER_OUT
+    }
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.service;
+
+import java.util.List;
+
+/**
+ * A page of an account's history, newest entry first.
+ *
+ * @param nextCursor cursor of the following, older page, or null if this is
+ *                   the last page
+ */
+public record LedgerPage(List<LedgerEntry> transactions, String nextCursor) {
+}
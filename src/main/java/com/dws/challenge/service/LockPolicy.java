@@ -0,0 +1,142 @@
+package com.dws.challenge.service;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.concurrent.RequestDeadline;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.LockTimeoutException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * How {@link LockingBalanceEngine} acquires account locks:
+ * <ul>
+ * <li>{@link Strategy#BLOCKING} waits as long as it takes, as
+ * {@link Lock#lock()} does;</li>
+ * <li>{@link Strategy#TIMED} waits at most {@code timeout-ms} for all locks of
+ * an operation, and fails the operation beyond;</li>
+ * <li>{@link Strategy#SPIN_THEN_PARK} first retries {@code spins} times without
+ * parking, which pays off when locks are held for less than a context switch,
+ * then waits like {@link Strategy#TIMED}.</li>
+ * </ul>
+ * Timed waits also end at the {@link RequestDeadline} of the current request.
+ * A lock not acquired in time throws a {@link LockTimeoutException}, after
+ * releasing the locks of the operation already acquired.
+ * <p>
+ * Fair locks hand the lock over to the longest waiting thread, which bounds
+ * the latency of every waiter but costs throughput; unfair locks let a thread
+ * arriving as the lock is released take it first.
+ */
+@Component
+public class LockPolicy {
+
+    public enum Strategy {
+        BLOCKING,
+        TIMED,
+        SPIN_THEN_PARK
+    }
+
+    static final String TIMEOUT_MESSAGE = "Unable to acquire locks on the accounts";
+
+    private final Strategy strategy;
+    private final long timeoutNanos;
+    private final int spins;
+    private final boolean fair;
+    private final Timer waitTimer;
+    private final Counter timeouts;
+
+    /**
+     * @param timeoutMillis maximum time to acquire the locks of one operation,
+     *                      for the timed strategies
+     * @param spins         attempts made without parking by
+     *                      {@link Strategy#SPIN_THEN_PARK}
+     * @param fair          whether account locks are fair, see
+     *                      {@link Account#getLock(boolean)}
+     */
+    @Autowired
+    public LockPolicy(@Value("${accounts.lock.strategy:BLOCKING}") Strategy strategy,
+                      @Value("${accounts.lock.timeout-ms:1000}") long timeoutMillis,
+                      @Value("${accounts.lock.spins:64}") int spins,
+                      @Value("${accounts.lock.fair:false}") boolean fair,
+                      AccountsMetrics metrics) {
+        if (timeoutMillis < 0 || spins < 0) {
+            throw new IllegalArgumentException("Lock timeout and spins can not be negative: " + timeoutMillis
+                    + " ms, " + spins);
+        }
+        String tag = strategy.name().toLowerCase(Locale.ROOT);
+        this.strategy = strategy;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.spins = spins;
+        this.fair = fair;
+        this.waitTimer = metrics.lockWaitTimer(tag, fair);
+        this.timeouts = metrics.lockTimeouts(tag);
+    }
+
+    /**
+     * @return a policy waiting as long as it takes on unfair locks, for
+     *         engines built outside of the application context.
+     */
+    public static LockPolicy blocking(AccountsMetrics metrics) {
+        return new LockPolicy(Strategy.BLOCKING, 0, 0, false, metrics);
+    }
+
+    /**
+     * @return the lock of the account, created with the configured fairness.
+     */
+    Lock lockOf(Account account) {
+        return account.getLock(fair);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} by which the locks of an operation
+     *         starting now must be acquired.
+     */
+    long deadline() {
+        return System.nanoTime() + Math.min(timeoutNanos, RequestDeadline.remainingNanos());
+    }
+
+    /**
+     * Acquires the lock, or throws if the strategy gives up before.
+     *
+     * @param deadline {@link #deadline()} of the operation
+     * @throws LockTimeoutException if the lock was not acquired by the deadline
+     */
+    void acquire(Lock lock, long deadline) {
+        switch (strategy) {
+            case BLOCKING -> lock.lock();
+            case TIMED -> tryLock(lock, deadline);
+            case SPIN_THEN_PARK -> {
+                for (int i = 0; i < spins; i++) {
+                    if (lock.tryLock()) {
+                        return;
+                    }
+                    Thread.onSpinWait();
+                }
+                tryLock(lock, deadline);
+            }
+        }
+    }
+
+    void recordWait(long durationNanos) {
+        waitTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void tryLock(Lock lock, long deadline) {
+        try {
+            if (lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        timeouts.increment();
+        throw new LockTimeoutException(TIMEOUT_MESSAGE);
+    }
+}
@@ -0,0 +1,225 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+
+/**
+ * Default engine: every mutation holds the lock of the accounts it touches.
+ * Transfers lock both accounts in their natural (account id) order so that
+ * opposing transfers cannot deadlock. Locks are acquired as the
+ * {@link LockPolicy} says, which may give up with a
+ * {@link com.dws.challenge.exception.LockTimeoutException}. Time spent waiting
+ * for and holding the locks is recorded in {@link AccountsMetrics}.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.balance-engine", havingValue = "locking", matchIfMissing = true)
+public class LockingBalanceEngine implements BalanceEngine {
+
+    private final AccountsMetrics metrics;
+    private final LockPolicy lockPolicy;
+
+    public LockingBalanceEngine() {
+        this(AccountsMetrics.noop());
+    }
+
+    public LockingBalanceEngine(AccountsMetrics metrics) {
+        this(metrics, LockPolicy.blocking(metrics));
+    }
+
+    @Autowired
+    public LockingBalanceEngine(AccountsMetrics metrics, LockPolicy lockPolicy) {
+        this.metrics = metrics;
+        this.lockPolicy = lockPolicy;
+    }
+
+    @Override
+    public boolean withdraw(Account account, BigDecimal amount) {
+        Lock lock = lockPolicy.lockOf(account);
+        long acquired = lock(lock);
+        try {
+            return debit(account, amount);
+        } finally {
+            unlock(lock, acquired);
+        }
+    }
+
+    @Override
+    public void deposit(Account account, BigDecimal amount) {
+        Lock lock = lockPolicy.lockOf(account);
+        long acquired = lock(lock);
+        try {
+            credit(account, amount);
+        } finally {
+            unlock(lock, acquired);
+        }
+    }
+
+    @Override
+    public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        // Lock accounts based on their IDs to ensure consistent locking order
+        Lock firstLock = lockPolicy.lockOf(firstInLockOrder(fromAccount, toAccount));
+        Lock secondLock = lockPolicy.lockOf(secondInLockOrder(fromAccount, toAccount));
+        long acquired = lock(firstLock, secondLock);
+        try {
+            if (!debit(fromAccount, amount)) {
+                return false;
+            }
+            credit(toAccount, amount);
+            return true;
+        } finally {
+            unlock(firstLock, secondLock, acquired);
+        }
+    }
+
+    @Override
+    public boolean withdraw(MinorUnitsAccount account, long amount) {
+        Lock lock = lockPolicy.lockOf(account);
+        long acquired = lock(lock);
+        try {
+            return debit(account, amount);
+        } finally {
+            unlock(lock, acquired);
+        }
+    }
+
+    @Override
+    public void deposit(MinorUnitsAccount account, long amount) {
+        Lock lock = lockPolicy.lockOf(account);
+        long acquired = lock(lock);
+        try {
+            credit(account, amount);
+        } finally {
+            unlock(lock, acquired);
+        }
+    }
+
+    @Override
+    public boolean transfer(MinorUnitsAccount fromAccount, MinorUnitsAccount toAccount, long amount) {
+        Lock firstLock = lockPolicy.lockOf(firstInLockOrder(fromAccount, toAccount));
+        Lock secondLock = lockPolicy.lockOf(secondInLockOrder(fromAccount, toAccount));
+        long acquired = lock(firstLock, secondLock);
+        try {
+            if (!debit(fromAccount, amount)) {
+                return false;
+            }
+            credit(toAccount, amount);
+            return true;
+        } finally {
+            unlock(firstLock, secondLock, acquired);
+        }
+    }
+
+    @Override
+    public void runOnPair(Account firstAccount, Account secondAccount, Runnable operations) {
+        Lock firstLock = lockPolicy.lockOf(firstInLockOrder(firstAccount, secondAccount));
+        Lock secondLock = lockPolicy.lockOf(secondInLockOrder(firstAccount, secondAccount));
+        long acquired = lock(firstLock, secondLock);
+        try {
+            operations.run();
+        } finally {
+            unlock(firstLock, secondLock, acquired);
+        }
+    }
+
+    @Override
+    public int applyDeltas(List<Account> accounts, List<BigDecimal> deltas) {
+        int locked = 0;
+        long waitStart = System.nanoTime();
+        long acquired = waitStart;
+        try {
+            long deadline = lockPolicy.deadline();
+            for (Account account : accounts) {
+                lockPolicy.acquire(lockPolicy.lockOf(account), deadline);
+                locked++;
+            }
+            acquired = System.nanoTime();
+            lockPolicy.recordWait(acquired - waitStart);
+            return BalanceDeltas.apply(accounts, deltas);
+        } finally {
+            if (locked == accounts.size()) {
+                metrics.recordLockHold(System.nanoTime() - acquired);
+            }
+            for (int i = locked - 1; i >= 0; i--) {
+                lockPolicy.lockOf(accounts.get(i)).unlock();
+            }
+        }
+    }
+
+    private static boolean debit(Account account, BigDecimal amount) {
+        if (account.getBalance().compareTo(amount) < 0) {
+            return false;
+        }
+        account.setBalance(account.getBalance().subtract(amount));
+        return true;
+    }
+
+    private static void credit(Account account, BigDecimal amount) {
+        account.setBalance(account.getBalance().add(amount));
+    }
+
+    private static boolean debit(MinorUnitsAccount account, long amount) {
+        long balance = account.getMinorBalance();
+        if (balance < amount) {
+            return false;
+        }
+        account.setMinorBalance(balance - amount);
+        return true;
+    }
+
+    private static void credit(MinorUnitsAccount account, long amount) {
+        account.setMinorBalance(Math.addExact(account.getMinorBalance(), amount));
+    }
+
+    /**
+     * @return the time the lock was acquired at, for {@link #unlock(Lock, long)}.
+     */
+    private long lock(Lock lock) {
+        long waitStart = System.nanoTime();
+        lockPolicy.acquire(lock, lockPolicy.deadline());
+        long acquired = System.nanoTime();
+        lockPolicy.recordWait(acquired - waitStart);
+        return acquired;
+    }
+
+    private long lock(Lock firstLock, Lock secondLock) {
+        long waitStart = System.nanoTime();
+        long deadline = lockPolicy.deadline();
+        lockPolicy.acquire(firstLock, deadline);
+        try {
+            lockPolicy.acquire(secondLock, deadline);
+        } catch (RuntimeException e) {
+            firstLock.unlock();
+            throw e;
+        }
+        long acquired = System.nanoTime();
+        lockPolicy.recordWait(acquired - waitStart);
+        return acquired;
+    }
+
+    private void unlock(Lock lock, long acquired) {
+        metrics.recordLockHold(System.nanoTime() - acquired);
+        lock.unlock();
+    }
+
+    private void unlock(Lock firstLock, Lock secondLock, long acquired) {
+        metrics.recordLockHold(System.nanoTime() - acquired);
+        secondLock.unlock();
+        firstLock.unlock();
+    }
+
+    private static Account firstInLockOrder(Account fromAccount, Account toAccount) {
+        return fromAccount.compareTo(toAccount) <= 0 ? fromAccount : toAccount;
+    }
+
+    private static Account secondInLockOrder(Account fromAccount, Account toAccount) {
+        return fromAccount.compareTo(toAccount) <= 0 ? toAccount : fromAccount;
+    }
+}
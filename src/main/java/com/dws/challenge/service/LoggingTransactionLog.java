@@ -0,0 +1,24 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes each transfer as a log line, formatted on the transferring thread.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "accounts.audit.log", havingValue = "text", matchIfMissing = true)
+public class LoggingTransactionLog implements TransactionLog {
+
+    @Override
+    public void transferred(String fromAccountId, String toAccountId, BigDecimal amount, BigDecimal fromBalance,
+                            BigDecimal toBalance) {
+        log.info("{} transferred {} from {} to {}. From Account balance: {} and To Account balance: {}",
+                Thread.currentThread().getName(), amount, fromAccountId, toAccountId, fromBalance, toBalance);
+    }
+}
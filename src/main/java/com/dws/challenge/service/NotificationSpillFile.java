@@ -0,0 +1,111 @@
+package com.dws.challenge.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Append-only overflow file for notifications that did not fit into the
+ * dispatcher queue. Entries are replayed, oldest first, once the queue has
+ * drained.
+ */
+class NotificationSpillFile {
+
+    private final Path file;
+    private final Lock lock = new ReentrantLock();
+    private DataOutputStream output;
+    private long backlog;
+
+    NotificationSpillFile(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            this.file = directory.resolve("notifications.spill");
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare notification spill file in " + directory, e);
+        }
+    }
+
+    void append(String accountId, String transferDescription) {
+        lock.lock();
+        try {
+            if (output == null) {
+                output = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            output.writeUTF(accountId);
+            output.writeUTF(transferDescription);
+            backlog++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to spill notification for account " + accountId, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of spilled notifications not yet replayed.
+     */
+    long backlog() {
+        lock.lock();
+        try {
+            return backlog;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands every spilled notification to the consumer and empties the file.
+     * The file is swapped out first, so producers can keep spilling while the
+     * entries are replayed.
+     *
+     * @return the number of replayed notifications.
+     */
+    long replay(BiConsumer<String, String> consumer) {
+        Path replaying = file.resolveSibling(file.getFileName() + ".replaying");
+        lock.lock();
+        try {
+            if (backlog == 0) {
+                return 0;
+            }
+            output.close();
+            output = null;
+            Files.move(file, replaying, StandardCopyOption.REPLACE_EXISTING);
+            backlog = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to rotate notification spill file " + file, e);
+        } finally {
+            lock.unlock();
+        }
+
+        long replayed = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(replaying)))) {
+            while (true) {
+                String accountId;
+                try {
+                    accountId = input.readUTF();
+                } catch (EOFException endOfFile) {
+                    break;
+                }
+                consumer.accept(accountId, input.readUTF());
+                replayed++;
+            }
+            Files.delete(replaying);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to replay spilled notifications from " + replaying, e);
+        }
+        return replayed;
+    }
+}
@@ -0,0 +1,180 @@
+package com.dws.challenge.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only file of the pending scheduled transfers: a record per
+ * scheduled or amended transfer, holding all of it, and a record per
+ * cancelled or fired one. The last record of an id wins on replay. The file
+ * is rewritten with the pending transfers only when it is opened and when it
+ * has grown past twice their number (see {@link #hasGrownPast(int)}).
+ * <p>
+ * Records are flushed to the operating system, not forced to disk: a process
+ * crash loses nothing, a machine crash may lose the latest records. A record
+ * torn by a crash ends the replay. Not thread-safe: the owner serializes all
+ * calls.
+ */
+@Slf4j
+class ScheduledTransferStore {
+
+    private static final byte SAVED = 1;
+    private static final byte REMOVED = 2;
+    private static final long MIN_COMPACTION_RECORDS = 100_000;
+
+    private final Path file;
+    private DataOutputStream output;
+    private long recordCount;
+
+    ScheduledTransferStore(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare scheduled transfer store in " + directory, e);
+        }
+        this.file = directory.resolve("scheduled-transfers.log");
+    }
+
+    /**
+     * Replays the file, rewrites it with the pending transfers only and opens
+     * it for appending.
+     *
+     * @return the pending transfers, by id
+     */
+    Map<String, ScheduledTransfer> open() {
+        Map<String, ScheduledTransfer> pending = new LinkedHashMap<>();
+        if (Files.exists(file)) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                replay(input, pending);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to replay scheduled transfers from " + file, e);
+            }
+        }
+        compact(pending.values());
+        log.info("Loaded {} scheduled transfers from {}", pending.size(), file);
+        return pending;
+    }
+
+    void saved(ScheduledTransfer transfer) {
+        try {
+            output.writeByte(SAVED);
+            output.writeUTF(transfer.getId());
+            output.writeUTF(transfer.getFromAccountId());
+            output.writeUTF(transfer.getToAccountId());
+            output.writeUTF(transfer.getAmount().toString());
+            output.writeUTF(transfer.getCurrency() == null ? "" : transfer.getCurrency());
+            output.writeLong(transfer.getExecuteAt().getEpochSecond());
+            output.writeInt(transfer.getExecuteAt().getNano());
+            output.writeUTF(transfer.getRepeat() == null ? "" : transfer.getRepeat());
+            recordCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store scheduled transfer " + transfer.getId(), e);
+        }
+    }
+
+    void removed(String id) {
+        try {
+            output.writeByte(REMOVED);
+            output.writeUTF(id);
+            recordCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to remove scheduled transfer " + id, e);
+        }
+    }
+
+    void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to flush scheduled transfers to " + file, e);
+        }
+    }
+
+    /**
+     * @return true if the file holds more than twice as many records as there
+     *         are pending transfers, and should be compacted
+     */
+    boolean hasGrownPast(int pendingCount) {
+        return recordCount > Math.max(MIN_COMPACTION_RECORDS, 2L * pendingCount);
+    }
+
+    void close() {
+        try {
+            if (output != null) {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close " + file, e);
+        }
+    }
+
+    /**
+     * Writes the pending transfers to a new file that then replaces the current
+     * one, so a crash meanwhile leaves the current file in place.
+     */
+    void compact(Collection<ScheduledTransfer> pending) {
+        Path compacting = file.resolveSibling(file.getFileName() + ".compacting");
+        try {
+            close();
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacting)));
+            recordCount = 0;
+            for (ScheduledTransfer transfer : pending) {
+                saved(transfer);
+            }
+            output.close();
+            Files.move(compacting, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compact scheduled transfers into " + file, e);
+        }
+    }
+
+    private static void replay(DataInputStream input, Map<String, ScheduledTransfer> pending) throws IOException {
+        try {
+            while (true) {
+                byte type;
+                try {
+                    type = input.readByte();
+                } catch (EOFException endOfFile) {
+                    return;
+                }
+                if (type == SAVED) {
+                    ScheduledTransfer transfer = new ScheduledTransfer(input.readUTF(), input.readUTF(),
+                            input.readUTF(), new BigDecimal(input.readUTF()), emptyToNull(input.readUTF()),
+                            Instant.ofEpochSecond(input.readLong(), input.readInt()), emptyToNull(input.readUTF()));
+                    pending.put(transfer.getId(), transfer);
+                } else if (type == REMOVED) {
+                    pending.remove(input.readUTF());
+                } else {
+                    log.warn("Ignoring scheduled transfers after a record of unknown type {}", type);
+                    return;
+                }
+            }
+        } catch (EOFException tornRecord) {
+            log.warn("Ignoring a scheduled transfer record torn by a crash");
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
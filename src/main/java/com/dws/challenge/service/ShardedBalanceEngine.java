@@ -0,0 +1,365 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.concurrent.RingBuffer;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+
+/**
+ * Single-writer engine: accounts are partitioned by the hash of their id into
+ * shards, and every balance of a shard is only ever written by that shard's
+ * thread. Callers hand their mutation to the owning shard through its
+ * {@link RingBuffer} and wait for the result, so no account lock is taken.
+ * <p>
+ * A transfer within one shard is a single command. A transfer across shards
+ * runs in two phases: the source shard reserves the amount by debiting it,
+ * then the target shard commits it by crediting it; should the credit fail,
+ * the reservation is released back to the source. As with
+ * {@link CasBalanceEngine}, the amount is briefly in flight between the two
+ * phases but is never lost.
+ * <p>
+ * Multi-account changes go through an {@link AccountGate} instead of the
+ * shards: callers pass the stripes of a command's accounts in shared mode until
+ * the command completes, so a caller holding the stripes of all accounts of a
+ * change exclusively is their only writer and checks and applies every delta
+ * itself.
+ * <p>
+ * Each calling thread reuses one command object, so a mutation allocates
+ * nothing beyond what the balance arithmetic itself needs.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.balance-engine", havingValue = "sharded")
+public class ShardedBalanceEngine implements BalanceEngine, DisposableBean {
+
+    // spinning only pays off while another processor can make progress
+    private static final int SPINS_BEFORE_PARK = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Shard[] shards;
+    private final AccountGate gate = new AccountGate();
+    private final ThreadLocal<Command> commands = ThreadLocal.withInitial(Command::new);
+
+    /**
+     * @param shardCount number of shards, or 0 for one per available processor.
+     */
+    @Autowired
+    public ShardedBalanceEngine(@Value("${accounts.sharded.shards:0}") int shardCount,
+                                @Value("${accounts.sharded.queue-capacity:4096}") int queueCapacity) {
+        if (shardCount < 0) {
+            throw new IllegalArgumentException("Shard count must not be negative: " + shardCount);
+        }
+        this.shards = new Shard[shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+    }
+
+    @Override
+    public boolean withdraw(Account account, BigDecimal amount) {
+        return execute(shardOf(account), Operation.WITHDRAW, account, null, amount, 0);
+    }
+
+    @Override
+    public void deposit(Account account, BigDecimal amount) {
+        execute(shardOf(account), Operation.DEPOSIT, account, null, amount, 0);
+    }
+
+    @Override
+    public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        Shard fromShard = shardOf(fromAccount);
+        Shard toShard = shardOf(toAccount);
+        if (fromShard == toShard) {
+            return execute(fromShard, Operation.TRANSFER, fromAccount, toAccount, amount, 0);
+        }
+        if (!execute(fromShard, Operation.WITHDRAW, fromAccount, null, amount, 0)) {
+            return false;
+        }
+        try {
+            execute(toShard, Operation.DEPOSIT, toAccount, null, amount, 0);
+        } catch (RuntimeException e) {
+            execute(fromShard, Operation.DEPOSIT, fromAccount, null, amount, 0);
+            throw e;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean withdraw(MinorUnitsAccount account, long amount) {
+        return execute(shardOf(account), Operation.WITHDRAW_MINOR, account, null, null, amount);
+    }
+
+    @Override
+    public void deposit(MinorUnitsAccount account, long amount) {
+        execute(shardOf(account), Operation.DEPOSIT_MINOR, account, null, null, amount);
+    }
+
+    @Override
+    public boolean transfer(MinorUnitsAccount fromAccount, MinorUnitsAccount toAccount, long amount) {
+        Shard fromShard = shardOf(fromAccount);
+        Shard toShard = shardOf(toAccount);
+        if (fromShard == toShard) {
+            return execute(fromShard, Operation.TRANSFER_MINOR, fromAccount, toAccount, null, amount);
+        }
+        if (!execute(fromShard, Operation.WITHDRAW_MINOR, fromAccount, null, null, amount)) {
+            return false;
+        }
+        try {
+            execute(toShard, Operation.DEPOSIT_MINOR, toAccount, null, null, amount);
+        } catch (RuntimeException e) {
+            execute(fromShard, Operation.DEPOSIT_MINOR, fromAccount, null, null, amount);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the operations on the calling thread; each of them is a command to
+     * the owning shards.
+     */
+    @Override
+    public void runOnPair(Account firstAccount, Account secondAccount, Runnable operations) {
+        operations.run();
+    }
+
+    @Override
+    public int applyDeltas(List<Account> accounts, List<BigDecimal> deltas) {
+        AccountGate.Held held = gate.hold(accounts);
+        try {
+            return BalanceDeltas.apply(accounts, deltas);
+        } finally {
+            gate.release(held);
+        }
+    }
+
+    /**
+     * Stops the shard threads once their queues are empty.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            shard.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private Shard shardOf(Account account) {
+        int hash = account.getAccountId().hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private boolean execute(Shard shard, Operation operation, Account account, Account otherAccount,
+                            BigDecimal amount, long minorAmount) {
+        if (Thread.currentThread() == shard.thread) {
+            return apply(operation, account, otherAccount, amount, minorAmount);
+        }
+        if (otherAccount == null) {
+            gate.enter(account);
+            try {
+                return submit(shard, operation, account, null, amount, minorAmount);
+            } finally {
+                gate.leave(account);
+            }
+        }
+        gate.enter(account, otherAccount);
+        try {
+            return submit(shard, operation, account, otherAccount, amount, minorAmount);
+        } finally {
+            gate.leave(account, otherAccount);
+        }
+    }
+
+    private boolean submit(Shard shard, Operation operation, Account account, Account otherAccount,
+                           BigDecimal amount, long minorAmount) {
+        Command command = commands.get();
+        command.prepare(operation, account, otherAccount, amount, minorAmount);
+        shard.submit(command);
+        try {
+            return command.await();
+        } finally {
+            command.clear();
+        }
+    }
+
+    private static boolean apply(Operation operation, Account account, Account otherAccount, BigDecimal amount,
+                                 long minorAmount) {
+        return switch (operation) {
+            case WITHDRAW -> debit(account, amount);
+            case DEPOSIT -> {
+                account.setBalance(account.getBalance().add(amount));
+                yield true;
+            }
+            case TRANSFER -> {
+                if (!debit(account, amount)) {
+                    yield false;
+                }
+                otherAccount.setBalance(otherAccount.getBalance().add(amount));
+                yield true;
+            }
+            case WITHDRAW_MINOR -> debit((MinorUnitsAccount) account, minorAmount);
+            case DEPOSIT_MINOR -> {
+                credit((MinorUnitsAccount) account, minorAmount);
+                yield true;
+            }
+            case TRANSFER_MINOR -> {
+                if (!debit((MinorUnitsAccount) account, minorAmount)) {
+                    yield false;
+                }
+                credit((MinorUnitsAccount) otherAccount, minorAmount);
+                yield true;
+            }
+        };
+    }
+
+    private static boolean debit(Account account, BigDecimal amount) {
+        BigDecimal balance = account.getBalance();
+        if (balance.compareTo(amount) < 0) {
+            return false;
+        }
+        account.setBalance(balance.subtract(amount));
+        return true;
+    }
+
+    private static boolean debit(MinorUnitsAccount account, long amount) {
+        long balance = account.getMinorBalance();
+        if (balance < amount) {
+            return false;
+        }
+        account.setMinorBalance(balance - amount);
+        return true;
+    }
+
+    private static void credit(MinorUnitsAccount account, long amount) {
+        account.setMinorBalance(Math.addExact(account.getMinorBalance(), amount));
+    }
+
+    private enum Operation {
+        WITHDRAW, DEPOSIT, TRANSFER, WITHDRAW_MINOR, DEPOSIT_MINOR, TRANSFER_MINOR
+    }
+
+    /**
+     * A mutation handed to a shard. The caller prepares it, waits for the shard
+     * to complete it and then reuses it for its next mutation.
+     */
+    private static final class Command {
+
+        private Operation operation;
+        private Account account;
+        private Account otherAccount;
+        private BigDecimal amount;
+        private long minorAmount;
+        private Thread caller;
+        private boolean result;
+        private RuntimeException failure;
+        private volatile boolean done;
+
+        void prepare(Operation operation, Account account, Account otherAccount, BigDecimal amount,
+                     long minorAmount) {
+            this.operation = operation;
+            this.account = account;
+            this.otherAccount = otherAccount;
+            this.amount = amount;
+            this.minorAmount = minorAmount;
+            this.caller = Thread.currentThread();
+            this.result = false;
+            this.failure = null;
+            this.done = false;
+        }
+
+        /**
+         * Runs on the shard thread.
+         */
+        void run() {
+            try {
+                result = apply(operation, account, otherAccount, amount, minorAmount);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            Thread waiting = caller;
+            done = true;
+            LockSupport.unpark(waiting);
+        }
+
+        boolean await() {
+            for (int spins = 0; !done; spins++) {
+                if (spins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+
+        void clear() {
+            account = null;
+            otherAccount = null;
+            amount = null;
+        }
+    }
+
+    /**
+     * One partition of the accounts and the only thread writing their balances.
+     */
+    private static final class Shard {
+
+        private final RingBuffer<Command> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile boolean parked;
+
+        Shard(int index, int queueCapacity) {
+            this.queue = new RingBuffer<>(queueCapacity);
+            this.thread = new Thread(this::runLoop, "balance-shard-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void submit(Command command) {
+            while (!queue.offer(command)) {
+                LockSupport.unpark(thread);
+                Thread.onSpinWait();
+            }
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void runLoop() {
+            int idleSpins = 0;
+            while (true) {
+                Command command = queue.poll();
+                if (command != null) {
+                    command.run();
+                    idleSpins = 0;
+                } else if (!running) {
+                    return;
+                } else if (idleSpins < SPINS_BEFORE_PARK) {
+                    idleSpins++;
+                    Thread.onSpinWait();
+                } else {
+                    parked = true;
+                    if (queue.isEmpty()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    parked = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Audit trail of the transfers applied by {@link AccountsService}.
+ */
+public interface TransactionLog {
+
+    /**
+     * Records a completed transfer. Called on the transferring thread, so
+     * implementations should return quickly.
+     *
+     * @param fromBalance balance of the source account right after the transfer
+     * @param toBalance   balance of the target account right after the transfer
+     */
+    void transferred(String fromAccountId, String toAccountId, BigDecimal amount, BigDecimal fromBalance,
+                     BigDecimal toBalance);
+}
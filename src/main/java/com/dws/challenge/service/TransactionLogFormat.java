@@ -0,0 +1,182 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.zip.CRC32;
+
+/**
+ * Layout of the records of the binary transaction log. Every record takes
+ * {@value #RECORD_SIZE} bytes, so the n-th record of a segment starts at
+ * {@code n * RECORD_SIZE}:
+ *
+ * <pre>
+ *   0  int    magic, zero past the last record
+ *   4  int    crc32 of bytes 8 to 255
+ *   8  long   sequence number
+ *  16  long   timestamp, epoch milliseconds
+ *  24  byte   flags
+ *  25  byte   length of the source account id
+ *  26  byte   length of the target account id
+ *  27  byte   length of the thread name
+ *  28  short  scale of the amount, of the source balance and of the target balance
+ *  36  16     unscaled amount, source balance and target balance, big-endian two's complement
+ *  84  64     source account id, UTF-8
+ * 148  64     target account id, UTF-8
+ * 212  44     thread name, UTF-8
+ * </pre>
+ *
+ * Longer ids and thread names are cut to their field, and a decimal whose
+ * unscaled value exceeds 128 bits is written as zero; the flags tell which.
+ */
+final class TransactionLogFormat {
+
+    static final int RECORD_SIZE = 256;
+    static final int FLAG_ID_TRUNCATED = 1;
+    static final int FLAG_DECIMAL_OVERFLOW = 2;
+
+    private static final int MAGIC = 0x54584131;
+    private static final int CHECKED_FROM = 8;
+    private static final int SEQUENCE = 8;
+    private static final int TIMESTAMP = 16;
+    private static final int FLAGS = 24;
+    private static final int LENGTHS = 25;
+    private static final int SCALES = 28;
+    private static final int DECIMALS = 36;
+    private static final int DECIMAL_SIZE = 16;
+    private static final int FROM_ID = 84;
+    private static final int TO_ID = 148;
+    private static final int ID_SIZE = 64;
+    private static final int THREAD = 212;
+    private static final int THREAD_SIZE = RECORD_SIZE - THREAD;
+
+    private TransactionLogFormat() {
+    }
+
+    static Path segmentFile(Path directory, long index) {
+        return directory.resolve(String.format("audit-%016d.log", index));
+    }
+
+    /**
+     * Writes a record at the buffer's position and advances past it. Nothing is
+     * allocated for ids and thread names that are plain ASCII.
+     */
+    static void encode(ByteBuffer buffer, long sequence, long timestamp, String fromAccountId, String toAccountId,
+                       BigDecimal amount, BigDecimal fromBalance, BigDecimal toBalance, String threadName) {
+        int start = buffer.position();
+        buffer.putLong(start + SEQUENCE, sequence);
+        buffer.putLong(start + TIMESTAMP, timestamp);
+        int flags = 0;
+        flags |= putText(buffer, start + FROM_ID, ID_SIZE, start + LENGTHS, fromAccountId) ? FLAG_ID_TRUNCATED : 0;
+        flags |= putText(buffer, start + TO_ID, ID_SIZE, start + LENGTHS + 1, toAccountId) ? FLAG_ID_TRUNCATED : 0;
+        putText(buffer, start + THREAD, THREAD_SIZE, start + LENGTHS + 2, threadName);
+        flags |= putDecimal(buffer, start, 0, amount) | putDecimal(buffer, start, 1, fromBalance)
+                | putDecimal(buffer, start, 2, toBalance);
+        buffer.put(start + FLAGS, (byte) flags);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(start + CHECKED_FROM, RECORD_SIZE - CHECKED_FROM));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, MAGIC);
+        buffer.position(start + RECORD_SIZE);
+    }
+
+    /**
+     * Reads the record at the buffer's position and advances past it.
+     *
+     * @return the record, or null at the end of the written records or at a
+     *         record torn by a crash
+     */
+    static TransactionLogRecord decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_SIZE || buffer.getInt(start) != MAGIC) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(start + CHECKED_FROM, RECORD_SIZE - CHECKED_FROM));
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+        buffer.position(start + RECORD_SIZE);
+        return new TransactionLogRecord(buffer.getLong(start + SEQUENCE),
+                Instant.ofEpochMilli(buffer.getLong(start + TIMESTAMP)),
+                getText(buffer, start + FROM_ID, buffer.get(start + LENGTHS)),
+                getText(buffer, start + TO_ID, buffer.get(start + LENGTHS + 1)),
+                getDecimal(buffer, start, 0), getDecimal(buffer, start, 1), getDecimal(buffer, start, 2),
+                getText(buffer, start + THREAD, buffer.get(start + LENGTHS + 2)), buffer.get(start + FLAGS));
+    }
+
+    /**
+     * @return true if the text did not fit in the field
+     */
+    private static boolean putText(ByteBuffer buffer, int offset, int size, int lengthOffset, String text) {
+        int length = 0;
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && length < size; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+                break;
+            }
+            buffer.put(offset + length++, (byte) c);
+        }
+        if (!ascii) {
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            length = Math.min(utf8.length, size);
+            while (length < utf8.length && (utf8[length] & 0xC0) == 0x80) {
+                // cut before the continuation bytes of a character, not in it
+                length--;
+            }
+            buffer.put(offset, utf8, 0, length);
+            buffer.put(lengthOffset, (byte) length);
+            return utf8.length > size;
+        }
+        buffer.put(lengthOffset, (byte) length);
+        return length < text.length();
+    }
+
+    private static String getText(ByteBuffer buffer, int offset, byte length) {
+        byte[] bytes = new byte[Byte.toUnsignedInt(length)];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return {@link #FLAG_DECIMAL_OVERFLOW} if the value was written as zero
+     */
+    private static int putDecimal(ByteBuffer buffer, int start, int index, BigDecimal value) {
+        int offset = start + DECIMALS + index * DECIMAL_SIZE;
+        if (value.precision() <= 18 && value.scale() == (short) value.scale()) {
+            // fits in a long: sign-extend it without going through BigInteger
+            long unscaled = value.unscaledValue().longValue();
+            buffer.putLong(offset, unscaled < 0 ? -1L : 0L);
+            buffer.putLong(offset + 8, unscaled);
+            buffer.putShort(start + SCALES + index * 2, (short) value.scale());
+            return 0;
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        BigInteger unscaled = stripped.unscaledValue();
+        if (unscaled.bitLength() >= DECIMAL_SIZE * 8 || stripped.scale() != (short) stripped.scale()) {
+            buffer.putLong(offset, 0L);
+            buffer.putLong(offset + 8, 0L);
+            buffer.putShort(start + SCALES + index * 2, (short) 0);
+            return FLAG_DECIMAL_OVERFLOW;
+        }
+        byte[] bytes = unscaled.toByteArray();
+        byte sign = (byte) (unscaled.signum() < 0 ? -1 : 0);
+        for (int i = 0; i < DECIMAL_SIZE - bytes.length; i++) {
+            buffer.put(offset + i, sign);
+        }
+        buffer.put(offset + DECIMAL_SIZE - bytes.length, bytes);
+        buffer.putShort(start + SCALES + index * 2, (short) stripped.scale());
+        return 0;
+    }
+
+    private static BigDecimal getDecimal(ByteBuffer buffer, int start, int index) {
+        byte[] unscaled = new byte[DECIMAL_SIZE];
+        buffer.get(start + DECIMALS + index * DECIMAL_SIZE, unscaled);
+        return new BigDecimal(new BigInteger(unscaled), buffer.getShort(start + SCALES + index * 2));
+    }
+}
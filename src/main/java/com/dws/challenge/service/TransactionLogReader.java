@@ -0,0 +1,73 @@
+package com.dws.challenge.service;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Decodes the segment files written by {@link BinaryTransactionLog}. Run as a
+ * command to print the records of a log directory or of a single segment, one
+ * line per transfer:
+ *
+ * <pre>
+ * java -cp target/classes com.dws.challenge.service.TransactionLogReader &lt;directory or segment file&gt;
+ * </pre>
+ */
+public final class TransactionLogReader {
+
+    private TransactionLogReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TransactionLogReader <audit directory or segment file>");
+            System.exit(2);
+        }
+        Path path = Path.of(args[0]);
+        List<Path> files = Files.isDirectory(path) ? segments(path) : List.of(path);
+        PrintStream out = System.out;
+        for (Path file : files) {
+            read(file, record -> out.println(record.format()));
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the segment files of the directory, oldest first
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("audit-\\d{16}\\.log"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Passes the records of one segment to the consumer, in the order written.
+     *
+     * @return the number of records read
+     */
+    public static long read(Path file, Consumer<TransactionLogRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long count = 0;
+            for (TransactionLogRecord record = TransactionLogFormat.decode(buffer); record != null;
+                    record = TransactionLogFormat.decode(buffer)) {
+                consumer.accept(record);
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A transfer as recorded in the binary transaction log.
+ *
+ * @param sequence    number of the record, counting from the first record ever
+ *                    written to the log directory
+ * @param flags       {@link TransactionLogFormat} flags, non-zero if a field
+ *                    could not be recorded in full
+ * @param fromBalance balance of the source account right after the transfer
+ * @param toBalance   balance of the target account right after the transfer
+ */
+public record TransactionLogRecord(long sequence, Instant timestamp, String fromAccountId, String toAccountId,
+                                   BigDecimal amount, BigDecimal fromBalance, BigDecimal toBalance,
+                                   String threadName, int flags) {
+
+    public boolean isTruncated() {
+        return flags != 0;
+    }
+
+    /**
+     * @return the record as one line of text, in the order of the log line
+     *         written for each transfer by {@link LoggingTransactionLog}
+     */
+    public String format() {
+        return sequence + " " + timestamp + " [" + threadName + "] transferred " + amount.toPlainString() + " from "
+                + fromAccountId + " to " + toAccountId + ". From Account balance: " + fromBalance.toPlainString()
+                + " and To Account balance: " + toBalance.toPlainString() + (isTruncated() ? " (truncated)" : "");
+    }
+}
@@ -0,0 +1,42 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAccountException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.LockException;
+
+/**
+ * Outcome of a transfer or withdrawal made through the result-returning
+ * methods of {@link AccountsService}. Rejections are reported as constants,
+ * so a rejected transfer costs no exception, stack trace or message.
+ */
+public enum TransferResult {
+    SUCCESS(null),
+    INSUFFICIENT_FUNDS(InsufficientFundsException.class),
+    ACCOUNT_NOT_FOUND(AccountNotFoundException.class),
+    /** An account id is empty, or the accounts are not held in the expected currency. */
+    INVALID_ACCOUNT(InvalidAccountException.class),
+    /** The amount is not positive, or has more fraction digits than the currency. */
+    INVALID_AMOUNT(InvalidAmountException.class),
+    /** The locks of the accounts were not acquired before the lock timeout or the request deadline. */
+    LOCK_TIMEOUT(LockException.class);
+
+    private final Class<? extends Exception> exceptionType;
+
+    TransferResult(Class<? extends Exception> exceptionType) {
+        this.exceptionType = exceptionType;
+    }
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+    /**
+     * @return the exception the throwing methods of {@link AccountsService}
+     *         report this rejection with, or null for {@link #SUCCESS}
+     */
+    public Class<? extends Exception> getExceptionType() {
+        return exceptionType;
+    }
+}
@@ -0,0 +1,339 @@
+package com.dws.challenge.service;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.concurrent.TimingWheel;
+import com.dws.challenge.concurrent.VirtualThreads;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransferInstruction;
+import com.dws.challenge.domain.TransferOutcome;
+import com.dws.challenge.exception.InvalidAccountException;
+import com.dws.challenge.exception.InvalidAmountException;
+
+import io.micrometer.common.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds transfers scheduled for a future instant in a {@link TimingWheel}, so
+ * that scheduling, amending and cancelling cost the same whatever the number
+ * of pending transfers. A dedicated worker advances the wheel every tick and
+ * makes the due transfers through
+ * {@link AccountsService#transferBatch(List, BatchTransferMode)}, in
+ * best-effort batches of {@code batch-size}; a recurring transfer is then
+ * scheduled again for its next occurrence.
+ * <p>
+ * Pending transfers are kept in a {@link ScheduledTransferStore} and
+ * scheduled again on start, transfers that fell due in the meantime right
+ * away. A due transfer is removed from, or advanced in, the store before it is
+ * made, so a crash in between skips it rather than making it twice. Due
+ * transfers whose removal or advance could not be stored are not made but
+ * retried a second later.
+ */
+@Service
+@Slf4j
+public class TransferScheduler implements DisposableBean {
+
+    private static final int WHEEL_LEVELS = 4;
+    private static final long STORE_RETRY_MILLIS = 1000;
+
+    private final AccountsService accountsService;
+    private final long tickMillis;
+    private final int batchSize;
+    private final Lock lock = new ReentrantLock();
+    /** Guarded by {@link #lock}, as are the wheel and the store. */
+    private final Map<String, TimingWheel.Entry<ScheduledTransfer>> pending = new HashMap<>();
+    private final TimingWheel<ScheduledTransfer> wheel;
+    private final ScheduledTransferStore store;
+    private final Thread worker;
+
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    /**
+     * @param tickMillis     resolution of the schedule; a transfer is made
+     *                       within a tick of its time
+     * @param batchSize      maximum number of transfers made in one batch
+     * @param virtualThreads whether the worker runs on a virtual thread, when the
+     *                       runtime supports them.
+     */
+    @Autowired
+    public TransferScheduler(AccountsService accountsService, AccountsMetrics metrics,
+                             @Value("${accounts.schedule.directory:${java.io.tmpdir}/challenge-schedule}") Path directory,
+                             @Value("${accounts.schedule.tick-ms:10}") long tickMillis,
+                             @Value("${accounts.schedule.batch-size:1000}") int batchSize,
+                             @Value("${accounts.virtual-threads.enabled:false}") boolean virtualThreads) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.accountsService = accountsService;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_LEVELS, System.currentTimeMillis());
+        this.store = new ScheduledTransferStore(directory);
+        for (ScheduledTransfer transfer : store.open().values()) {
+            pending.put(transfer.getId(), wheel.schedule(transfer, transfer.getExecuteAt().toEpochMilli()));
+        }
+        metrics.registerScheduledTransfers(this);
+        this.worker = VirtualThreads.start("transfer-scheduler", virtualThreads, this::fireLoop);
+    }
+
+    /**
+     * Schedules a transfer under a new id. The accounts are only looked up when
+     * the transfer is made.
+     *
+     * @return the transfer with its id
+     * @throws InvalidAmountException   if the amount is not positive
+     * @throws InvalidAccountException  if an account id is empty
+     * @throws IllegalArgumentException if the time is missing or the repeat
+     *                                  interval invalid
+     */
+    public ScheduledTransfer schedule(ScheduledTransfer transfer)
+            throws InvalidAmountException, InvalidAccountException {
+        validate(transfer);
+        ScheduledTransfer scheduled = transfer.withId(UUID.randomUUID().toString());
+        lock.lock();
+        try {
+            store.saved(scheduled);
+            store.flush();
+            pending.put(scheduled.getId(), wheel.schedule(scheduled, scheduled.getExecuteAt().toEpochMilli()));
+        } finally {
+            lock.unlock();
+        }
+        log.info("Scheduled transfer {} from account {} to account {} at {}", scheduled.getId(),
+                scheduled.getFromAccountId(), scheduled.getToAccountId(), scheduled.getExecuteAt());
+        return scheduled;
+    }
+
+    /**
+     * Replaces a pending transfer, keeping its id.
+     *
+     * @return the amended transfer, or null if no transfer with this id is
+     *         pending
+     * @see #schedule(ScheduledTransfer)
+     */
+    public ScheduledTransfer amend(String id, ScheduledTransfer transfer)
+            throws InvalidAmountException, InvalidAccountException {
+        validate(transfer);
+        ScheduledTransfer amended = transfer.withId(id);
+        lock.lock();
+        try {
+            TimingWheel.Entry<ScheduledTransfer> entry = pending.get(id);
+            if (entry == null) {
+                return null;
+            }
+            wheel.cancel(entry);
+            store.saved(amended);
+            store.flush();
+            pending.put(id, wheel.schedule(amended, amended.getExecuteAt().toEpochMilli()));
+        } finally {
+            lock.unlock();
+        }
+        log.info("Amended scheduled transfer {}", id);
+        return amended;
+    }
+
+    /**
+     * @return false if no transfer with this id is pending
+     */
+    public boolean cancel(String id) {
+        lock.lock();
+        try {
+            TimingWheel.Entry<ScheduledTransfer> entry = pending.remove(id);
+            if (entry == null) {
+                return false;
+            }
+            wheel.cancel(entry);
+            store.removed(id);
+            store.flush();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Cancelled scheduled transfer {}", id);
+        return true;
+    }
+
+    /**
+     * @return the pending transfer, or null if none has this id
+     */
+    public ScheduledTransfer getScheduledTransfer(String id) {
+        lock.lock();
+        try {
+            TimingWheel.Entry<ScheduledTransfer> entry = pending.get(id);
+            return entry == null ? null : entry.getElement();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of scheduled transfers made, failed ones included.
+     */
+    public long getFiredCount() {
+        return firedCount.get();
+    }
+
+    /**
+     * @return the number of scheduled transfers that were rejected when made.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Stops the worker after the batch it is making; pending transfers stay in
+     * the store.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(worker);
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+        lock.lock();
+        try {
+            store.close();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Transfer scheduler stopped: made {}, failed {}, still pending {}", getFiredCount(),
+                getFailedCount(), getPendingCount());
+    }
+
+    private void fireLoop() {
+        List<ScheduledTransfer> due = new ArrayList<>();
+        while (running) {
+            List<ScheduledTransfer> advanced = List.of();
+            lock.lock();
+            try {
+                wheel.advance(System.currentTimeMillis(), due::add);
+                if (!due.isEmpty()) {
+                    advanced = advanceSchedule(due);
+                }
+            } catch (RuntimeException e) {
+                log.error("Unable to advance the transfer schedule", e);
+            } finally {
+                lock.unlock();
+            }
+            for (int from = 0; from < advanced.size(); from += batchSize) {
+                fire(advanced.subList(from, Math.min(from + batchSize, advanced.size())));
+            }
+            due.clear();
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(tickMillis));
+        }
+    }
+
+    /**
+     * Removes the due transfers from the schedule, or moves recurring ones to
+     * their next occurrence, first in the store and then in memory. If the
+     * store fails, none of them is known to be stored, so all are put back on
+     * the wheel to be retried a second later.
+     *
+     * @return the due transfers to make now, none if the store failed
+     */
+    private List<ScheduledTransfer> advanceSchedule(List<ScheduledTransfer> due) {
+        Instant now = Instant.now();
+        List<ScheduledTransfer> nextOccurrences = new ArrayList<>(due.size());
+        try {
+            for (ScheduledTransfer transfer : due) {
+                ScheduledTransfer next = transfer.nextOccurrenceAfter(now);
+                if (next == null) {
+                    store.removed(transfer.getId());
+                } else {
+                    store.saved(next);
+                }
+                nextOccurrences.add(next);
+            }
+            store.flush();
+        } catch (RuntimeException e) {
+            log.error("Unable to store the advance of {} due transfers, retrying them in {} ms", due.size(),
+                    STORE_RETRY_MILLIS, e);
+            long retryAt = System.currentTimeMillis() + STORE_RETRY_MILLIS;
+            for (ScheduledTransfer transfer : due) {
+                pending.put(transfer.getId(), wheel.schedule(transfer, retryAt));
+            }
+            return List.of();
+        }
+        for (int i = 0; i < due.size(); i++) {
+            ScheduledTransfer next = nextOccurrences.get(i);
+            if (next == null) {
+                pending.remove(due.get(i).getId());
+            } else {
+                pending.put(next.getId(), wheel.schedule(next, next.getExecuteAt().toEpochMilli()));
+            }
+        }
+        if (store.hasGrownPast(pending.size())) {
+            List<ScheduledTransfer> transfers = new ArrayList<>(pending.size());
+            for (TimingWheel.Entry<ScheduledTransfer> entry : pending.values()) {
+                transfers.add(entry.getElement());
+            }
+            try {
+                store.compact(transfers);
+            } catch (RuntimeException e) {
+                // the records appended so far stay in place
+                log.error("Unable to compact the scheduled transfers", e);
+            }
+        }
+        return due;
+    }
+
+    private void fire(List<ScheduledTransfer> transfers) {
+        List<TransferInstruction> instructions = new ArrayList<>(transfers.size());
+        for (ScheduledTransfer transfer : transfers) {
+            instructions.add(new TransferInstruction(transfer.getFromAccountId(), transfer.getToAccountId(),
+                    transfer.getAmount(), transfer.getCurrency()));
+        }
+        try {
+            List<TransferOutcome> outcomes = accountsService.transferBatch(instructions, BatchTransferMode.BEST_EFFORT);
+            for (TransferOutcome outcome : outcomes) {
+                if (!outcome.isSuccess()) {
+                    failedCount.incrementAndGet();
+                    log.warn("Scheduled transfer {} failed: {}", transfers.get(outcome.getIndex()).getId(),
+                            outcome.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            failedCount.addAndGet(transfers.size());
+            log.error("Unable to make {} scheduled transfers", transfers.size(), e);
+        }
+        firedCount.addAndGet(transfers.size());
+    }
+
+    private static void validate(ScheduledTransfer transfer) throws InvalidAmountException, InvalidAccountException {
+        if (transfer.getAmount() == null || transfer.getAmount().signum() <= 0) {
+            throw new InvalidAmountException("Amount should be positive");
+        }
+        if (StringUtils.isEmpty(transfer.getFromAccountId()) || StringUtils.isEmpty(transfer.getToAccountId())) {
+            throw new InvalidAccountException("Accounts of the transfer are not valid");
+        }
+        if (transfer.getExecuteAt() == null) {
+            throw new IllegalArgumentException("Execution time can not be null");
+        }
+        transfer.validateRepeat();
+    }
+}
@@ -0,0 +1,109 @@
+package com.dws.challenge.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.concurrent.SegmentedCache;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.service.AccountsMetrics;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * Encoded JSON of recently read accounts, so that repeated reads of an
+ * account whose balance has not changed are answered without serializing it.
+ * <p>
+ * Each entry is immutable: one balance read from the account, its currency
+ * and the JSON written from them. The balance is its version: an entry is
+ * served only while the account with that id still has the same balance and
+ * currency, and is replaced otherwise. Entries do not keep the account object,
+ * since repositories like the off-heap one return a new view on every lookup. Writes therefore need not invalidate anything, and a reader never
+ * gets a balance other than one the account actually had, nor a JSON mixing
+ * two of them. Entries are held in a {@link SegmentedCache}, bounded in size
+ * and time.
+ */
+@Component
+public class AccountJsonCache {
+
+    private final SegmentedCache<String, AccountJson> cache;
+    private final JsonFactory jsonFactory;
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * @param maxEntries maximum number of accounts cached
+     * @param ttlSeconds time an account stays cached after it was encoded
+     * @param segments   number of independently locked cache segments
+     */
+    @Autowired
+    public AccountJsonCache(ObjectMapper objectMapper, AccountsMetrics metrics,
+                            @Value("${accounts.cache.max-entries:100000}") int maxEntries,
+                            @Value("${accounts.cache.ttl-seconds:600}") long ttlSeconds,
+                            @Value("${accounts.cache.segments:16}") int segments) {
+        this.cache = new SegmentedCache<>(maxEntries, ttlSeconds, TimeUnit.SECONDS, segments);
+        this.jsonFactory = objectMapper.getFactory();
+        this.hits = metrics.accountCacheRequests("hit");
+        this.misses = metrics.accountCacheRequests("miss");
+        metrics.registerAccountCache(cache);
+    }
+
+    /**
+     * @return the JSON of the account, with its current balance.
+     */
+    public byte[] toJson(Account account) {
+        BigDecimal balance = account.getBalance();
+        AccountJson cached = cache.get(account.getAccountId());
+        String currency = currencyOf(account);
+        if (cached != null && cached.balance().equals(balance) && Objects.equals(cached.currency(), currency)) {
+            hits.increment();
+            return cached.json();
+        }
+        misses.increment();
+        byte[] json = encode(account, balance);
+        cache.put(account.getAccountId(), new AccountJson(balance, currency, json));
+        return json;
+    }
+
+    private byte[] encode(Account account, BigDecimal balance) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            writeAccount(generator, account, balance);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the same fields as the JSON mapping of {@link Account} without
+     * going through its bean serializer, with the given balance.
+     */
+    static void writeAccount(JsonGenerator generator, Account account, BigDecimal balance) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("accountId", account.getAccountId());
+        generator.writeNumberField("balance", balance);
+        if (account instanceof MinorUnitsAccount minorUnitsAccount) {
+            generator.writeStringField("currency", minorUnitsAccount.getCurrency());
+        }
+        generator.writeEndObject();
+    }
+
+    private static String currencyOf(Account account) {
+        return account instanceof MinorUnitsAccount minorUnitsAccount ? minorUnitsAccount.getCurrency() : null;
+    }
+
+    private record AccountJson(BigDecimal balance, String currency, byte[] json) {
+    }
+}
@@ -0,0 +1,302 @@
+package com.dws.challenge.web;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceAudit;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulk operations on accounts: lookup of many accounts at once, and import and
+ * export of accounts as NDJSON (one account object per line) or as CSV with
+ * the header {@value #CSV_HEADER} (the currency column is optional) and
+ * unquoted fields.
+ * <p>
+ * Imports and exports stream: an import parses the request body incrementally
+ * and creates the accounts in chunks of {@code accounts.import.chunk-size},
+ * and an export writes each account as it is visited. Memory use therefore
+ * does not depend on the number of accounts. An export, like an audit of the
+ * total balance, shows all balances at one cut through the transfers made
+ * while it runs.
+ */
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class AccountsBulkController {
+
+    static final String CSV_HEADER = "accountId,balance,currency";
+    private static final String CSV_HEADER_WITHOUT_CURRENCY = "accountId,balance";
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final AccountsService accountsService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxLookupSize;
+
+    @Autowired
+    public AccountsBulkController(AccountsService accountsService, ObjectMapper objectMapper,
+                                  @Value("${accounts.import.chunk-size:10000}") int chunkSize,
+                                  @Value("${accounts.lookup.max-size:10000}") int maxLookupSize) {
+        this.accountsService = accountsService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxLookupSize = maxLookupSize;
+    }
+
+    @PostMapping(path = "/accounts:import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Object> importNdjson(InputStream body) {
+        AccountImport accountImport = new AccountImport();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                if (token != JsonToken.START_OBJECT) {
+                    return accountImport.failed("Expected one JSON account object per line");
+                }
+                accountImport.add(objectMapper.readValue(parser, Account.class));
+            }
+        } catch (IOException | IllegalArgumentException | ArithmeticException e) {
+            return accountImport.failed(e.getMessage());
+        }
+        return accountImport.completed();
+    }
+
+    @PostMapping(path = "/accounts:import", consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<Object> importCsv(InputStream body) {
+        AccountImport accountImport = new AccountImport();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String header = String.valueOf(reader.readLine()).strip();
+            if (!header.equals(CSV_HEADER) && !header.equals(CSV_HEADER_WITHOUT_CURRENCY)) {
+                return accountImport.failed("Expected the CSV header " + CSV_HEADER);
+            }
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.strip().split(",", -1);
+                if (fields.length < 2 || fields.length > 3) {
+                    return accountImport.failed("Expected " + CSV_HEADER + " but got: " + line);
+                }
+                String currency = fields.length == 3 && !fields[2].isEmpty() ? fields[2] : null;
+                accountImport.add(Account.of(fields[0], new BigDecimal(fields[1]), currency));
+            }
+        } catch (IOException | IllegalArgumentException | ArithmeticException e) {
+            return accountImport.failed(e.getMessage());
+        }
+        return accountImport.completed();
+    }
+
+    @GetMapping(path = "/accounts:export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportNdjson() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                forEachAccount((account, balance) -> {
+                    AccountJsonCache.writeAccount(generator, account, balance);
+                    generator.writeRaw('\n');
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(path = "/accounts:export", produces = TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCsv() {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            forEachAccount((account, balance) -> {
+                writer.write(account.getAccountId());
+                writer.write(',');
+                writer.write(balance.toPlainString());
+                writer.write(',');
+                if (account instanceof MinorUnitsAccount minorUnitsAccount) {
+                    writer.write(minorUnitsAccount.getCurrency());
+                }
+                writer.write('\n');
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(TEXT_CSV_VALUE)).body(body);
+    }
+
+    /**
+     * Sums all balances at one cut, per currency, while transfers go on.
+     */
+    @GetMapping(path = "/accounts:audit", produces = MediaType.APPLICATION_JSON_VALUE)
+    public BalanceAudit auditBalances() {
+        BalanceAudit audit = accountsService.auditBalances();
+        log.info("Audited {} accounts", audit.accountCount());
+        return audit;
+    }
+
+    /**
+     * Looks up a JSON array of account ids in one pass and answers with the
+     * accounts found, in the order requested, followed by the ids not found.
+     * The response is generated straight into the servlet output stream.
+     */
+    @PostMapping(path = "/accounts:lookup", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void lookupAccounts(InputStream body, HttpServletResponse response) throws IOException {
+        List<String> accountIds = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                badRequest(response, "Expected a JSON array of account ids");
+                return;
+            }
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token != JsonToken.VALUE_STRING) {
+                    badRequest(response, "Expected a JSON array of account ids");
+                    return;
+                }
+                if (accountIds.size() == maxLookupSize) {
+                    badRequest(response, "A lookup can not contain more than " + maxLookupSize + " account ids");
+                    return;
+                }
+                accountIds.add(parser.getText());
+            }
+        } catch (JsonProcessingException e) {
+            badRequest(response, e.getMessage());
+            return;
+        }
+        log.info("Looking up {} accounts", accountIds.size());
+
+        Map<String, Account> accounts = accountsService.getAccounts(accountIds);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("accounts");
+            for (Account account : accounts.values()) {
+                writeAccount(generator, account);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("notFound");
+            for (String accountId : accountIds) {
+                if (!accounts.containsKey(accountId)) {
+                    generator.writeString(accountId);
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeAccount(JsonGenerator generator, Account account) throws IOException {
+        AccountJsonCache.writeAccount(generator, account, account.getBalance());
+    }
+
+    private static void badRequest(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+
+    /**
+     * Each account is written with its balance at the cut, so the lines are
+     * consistent with each other.
+     */
+    private void forEachAccount(AccountWriter writer) throws IOException {
+        try {
+            accountsService.forEachAccountAtCut((account, balance) -> {
+                try {
+                    writer.write(account, balance);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface AccountWriter {
+
+        void write(Account account, BigDecimal balance) throws IOException;
+    }
+
+    /**
+     * Accounts of one import, created a chunk at a time.
+     */
+    private final class AccountImport {
+
+        private final List<Account> chunk = new ArrayList<>(chunkSize);
+        private long created;
+        private long skipped;
+
+        void add(Account account) {
+            if (account.getAccountId() == null || account.getAccountId().isEmpty()) {
+                throw new IllegalArgumentException("Account Id cannot be null or empty");
+            }
+            if (account.getBalance() == null || account.getBalance().signum() < 0) {
+                throw new IllegalArgumentException(
+                        "Balance of account " + account.getAccountId() + " must be present and positive");
+            }
+            chunk.add(account);
+            if (chunk.size() == chunkSize) {
+                flush();
+            }
+        }
+
+        ResponseEntity<Object> completed() {
+            flush();
+            log.info("Imported {} accounts, skipped {} existing accounts", created, skipped);
+            return new ResponseEntity<>(new ImportSummary(created, skipped), HttpStatus.OK);
+        }
+
+        /**
+         * Accounts of the chunks before the failure stay created.
+         */
+        ResponseEntity<Object> failed(String message) {
+            flush();
+            log.info("Import stopped after {} accounts: {}", created + skipped, message);
+            return new ResponseEntity<>(message + " (after " + created + " accounts were created and " + skipped
+                    + " existing accounts were skipped)", HttpStatus.BAD_REQUEST);
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            int skippedInChunk = accountsService.createAccounts(chunk).size();
+            created += chunk.size() - skippedInChunk;
+            skipped += skippedInChunk;
+            chunk.clear();
+        }
+    }
+
+    record ImportSummary(long created, long skipped) {
+    }
+}
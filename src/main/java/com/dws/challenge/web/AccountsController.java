@@ -1,8 +1,21 @@
 package com.dws.challenge.web;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -10,15 +23,27 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferInstruction;
+import com.dws.challenge.domain.TransferOutcome;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InvalidAccountException;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.AsyncTransferService;
+import com.dws.challenge.service.BatchTransferMode;
+import com.dws.challenge.service.LedgerPage;
+import com.dws.challenge.service.TransferResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 
 @RestController
@@ -26,11 +51,30 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AccountsController {
 
+    /** Header identifying the client for admission control; the remote address is used without it. */
+    static final String CLIENT_ID_HEADER = "X-Client-Id";
+
     private final AccountsService accountsService;
+    private final AsyncTransferService asyncTransferService;
+    private final ObjectMapper objectMapper;
+    private final AdmissionControl admissionControl;
+    private final AccountJsonCache accountJsonCache;
+    private final int maxBatchSize;
+    private final int maxPageSize;
 
     @Autowired
-    public AccountsController(AccountsService accountsService) {
+    public AccountsController(AccountsService accountsService, AsyncTransferService asyncTransferService,
+                              ObjectMapper objectMapper, AdmissionControl admissionControl,
+                              AccountJsonCache accountJsonCache,
+                              @Value("${accounts.batch.max-size:10000}") int maxBatchSize,
+                              @Value("${accounts.ledger.max-page-size:1000}") int maxPageSize) {
         this.accountsService = accountsService;
+        this.asyncTransferService = asyncTransferService;
+        this.objectMapper = objectMapper;
+        this.admissionControl = admissionControl;
+        this.accountJsonCache = accountJsonCache;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -39,28 +83,196 @@ public class AccountsController {
 
         try {
             this.accountsService.createAccount(account);
-        } catch (DuplicateAccountIdException dae) {
-            return new ResponseEntity<>(dae.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DuplicateAccountIdException | IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         }
 
         return new ResponseEntity<>(HttpStatus.CREATED);
     }
 
+    /**
+     * Answers with the JSON of the account from {@link AccountJsonCache}, encoded
+     * once per balance the account has.
+     */
     @GetMapping(path = "/{accountId}")
-    public Account getAccount(@PathVariable String accountId) throws AccountNotFoundException, InvalidAccountException {
+    public ResponseEntity<byte[]> getAccount(@PathVariable String accountId)
+            throws AccountNotFoundException, InvalidAccountException {
         log.info("Retrieving account for id {}", accountId);
-        return this.accountsService.getAccount(accountId);
+        Account account = this.accountsService.getAccount(accountId);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(accountJsonCache.toJson(account));
     }
 
-    @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> transferAmount(@RequestBody @Valid TransferAmountRequest transferRequest) {
-        log.info("Transfering ammount from account {} to account {}", transferRequest.getFromAccountNo(), transferRequest.getToAccountNo());
+    /**
+     * Lists the deposits, withdrawals and transfers of an account, newest first,
+     * optionally between two ISO-8601 instants. The {@code nextCursor} of a page
+     * is passed as {@code cursor} to get the next, older page; it is null on the
+     * last page.
+     */
+    @GetMapping(path = "/{accountId}/transactions")
+    public ResponseEntity<Object> getTransactions(@PathVariable String accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            return new ResponseEntity<>("Limit should be between 1 and " + maxPageSize, HttpStatus.BAD_REQUEST);
+        }
         try {
-            this.accountsService.transferAmount(transferRequest.getFromAccountNo(), transferRequest.getToAccountNo(), transferRequest.getAmount());
-        } catch (Exception e) {
+            LedgerPage page = this.accountsService.getTransactions(accountId, from, to, cursor, limit);
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (AccountNotFoundException e) {
+            return new ResponseEntity<>("Account does not exist", HttpStatus.NOT_FOUND);
+        } catch (InvalidAccountException | IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Rejected transfers are answered from their {@link TransferResult}: 404 for
+     * an unknown account, 422 for insufficient funds, 400 for an invalid
+     * account or amount and 503 when the account locks were not acquired in
+     * time. A transfer refused by {@link AdmissionControl} is
+     * answered with 429.
+     * <p>
+     * The transfer runs on the executor of {@link AsyncTransferService}; the
+     * request thread returns at once and the response is written when the
+     * transfer completes.
+     */
+    @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> transferAmount(
+            @RequestBody @Valid TransferAmountRequest transferRequest,
+            @RequestHeader(name = CLIENT_ID_HEADER, required = false) String clientId, HttpServletRequest request) {
+        return admittedAsync(clientIdOf(clientId, request), transferRequest.getFromAccountNo(), () -> {
+            log.debug("Transfering ammount from account {} to account {}", transferRequest.getFromAccountNo(), transferRequest.getToAccountNo());
+            return this.asyncTransferService.transfer(transferRequest.getRequestId(),
+                    transferRequest.getFromAccountNo(), transferRequest.getToAccountNo(), transferRequest.getAmount(),
+                    transferRequest.getCurrency());
+        });
+    }
+
+    /**
+     * Moves money between several accounts at once, all legs or none. Legs not
+     * summing to zero are answered with 400, other rejections like those of
+     * {@link #transferAmount}, and it is answered asynchronously like them.
+     * Admission control counts the transfer as one request of its client.
+     */
+    @PostMapping(path = "/transfers:multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> transferLegs(
+            @RequestBody @Valid MultiLegTransferRequest transferRequest,
+            @RequestHeader(name = CLIENT_ID_HEADER, required = false) String clientId, HttpServletRequest request) {
+        return admittedAsync(clientIdOf(clientId, request), null, () -> {
+            log.debug("Transfering across {} legs", transferRequest.getLegs().size());
+            return this.asyncTransferService.transfer(transferRequest.toTransferLegs());
+        });
+    }
+
+    private static ResponseEntity<Object> responseOf(TransferResult result) {
+        return switch (result) {
+            case SUCCESS -> new ResponseEntity<>(HttpStatus.OK);
+            case INSUFFICIENT_FUNDS -> new ResponseEntity<>("Insufficient funds", HttpStatus.UNPROCESSABLE_ENTITY);
+            case ACCOUNT_NOT_FOUND -> new ResponseEntity<>("Account does not exist", HttpStatus.NOT_FOUND);
+            case INVALID_ACCOUNT -> new ResponseEntity<>("Invalid account", HttpStatus.BAD_REQUEST);
+            case INVALID_AMOUNT -> new ResponseEntity<>("Invalid amount", HttpStatus.BAD_REQUEST);
+            case LOCK_TIMEOUT -> new ResponseEntity<>("Unable to acquire locks on the accounts",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        };
+    }
+
+    /**
+     * Applies a JSON array of transfers. The array is read incrementally from the
+     * request body and the response lists one outcome per transfer. An atomic
+     * batch that could not be applied is answered with 400. Admission control
+     * counts a batch as one request of its client.
+     */
+    @PostMapping(path = "/transfers:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> transferBatch(InputStream body,
+            @RequestParam(defaultValue = "BEST_EFFORT") BatchTransferMode mode,
+            @RequestHeader(name = CLIENT_ID_HEADER, required = false) String clientId, HttpServletRequest request) {
+        return admitted(clientIdOf(clientId, request), null, () -> applyBatch(body, mode));
+    }
+
+    private ResponseEntity<Object> applyBatch(InputStream body, BatchTransferMode mode) {
+        List<TransferInstruction> transfers = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return new ResponseEntity<>("Expected a JSON array of transfers", HttpStatus.BAD_REQUEST);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (transfers.size() == maxBatchSize) {
+                    return new ResponseEntity<>("A batch can not contain more than " + maxBatchSize + " transfers",
+                            HttpStatus.BAD_REQUEST);
+                }
+                TransferAmountRequest transferRequest = objectMapper.readValue(parser, TransferAmountRequest.class);
+                transfers.add(new TransferInstruction(transferRequest.getFromAccountNo(),
+                        transferRequest.getToAccountNo(), transferRequest.getAmount(), transferRequest.getCurrency()));
+            }
+        } catch (IOException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         }
+        log.info("Transfering batch of {} transfers in {} mode", transfers.size(), mode);
+
+        List<TransferOutcome> outcomes = this.accountsService.transferBatch(transfers, mode);
+        boolean rejected = mode == BatchTransferMode.ATOMIC
+                && outcomes.stream().anyMatch(outcome -> !outcome.isSuccess());
+        return new ResponseEntity<>(outcomes, rejected ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+    }
+
+    /**
+     * Runs the handler if admission control admits the request, and answers 429
+     * with a {@code Retry-After} header otherwise.
+     */
+    private ResponseEntity<Object> admitted(String clientId, String accountId,
+                                            Supplier<ResponseEntity<Object>> handler) {
+        AdmissionControl.Rejection rejection = admissionControl.tryAdmit(clientId, accountId);
+        if (rejection != null) {
+            return tooManyRequests(rejection);
+        }
+        long start = System.nanoTime();
+        try {
+            return handler.get();
+        } finally {
+            admissionControl.release(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Like {@link #admitted} for a transfer completing asynchronously: the
+     * request holds its share of the concurrency limit until the transfer
+     * completes. A transfer failing with an exception is answered with 400.
+     */
+    private CompletableFuture<ResponseEntity<Object>> admittedAsync(String clientId, String accountId,
+            Supplier<CompletableFuture<TransferResult>> transfer) {
+        AdmissionControl.Rejection rejection = admissionControl.tryAdmit(clientId, accountId);
+        if (rejection != null) {
+            return CompletableFuture.completedFuture(tooManyRequests(rejection));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<TransferResult> result;
+        try {
+            result = transfer.get();
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(tooManyRequests(admissionControl.rejectAdmitted()));
+        } catch (RuntimeException e) {
+            admissionControl.release(System.nanoTime() - start);
+            throw e;
+        }
+        return result.handle((transferResult, failure) -> {
+            admissionControl.release(System.nanoTime() - start);
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            return responseOf(transferResult);
+        });
+    }
+
+    private static ResponseEntity<Object> tooManyRequests(AdmissionControl.Rejection rejection) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejection.retryAfterSeconds()))
+                .body("Too many requests");
+    }
 
-        return new ResponseEntity<>(HttpStatus.OK);
+    private static String clientIdOf(String clientId, HttpServletRequest request) {
+        return clientId == null || clientId.isEmpty() ? request.getRemoteAddr() : clientId;
     }
 }
@@ -0,0 +1,169 @@
+package com.dws.challenge.web;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.concurrent.AdaptiveConcurrencyLimit;
+import com.dws.challenge.concurrent.RateLimiter;
+import com.dws.challenge.concurrent.SegmentedCache;
+import com.dws.challenge.service.AccountsMetrics;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * Decides whether a transfer request is handled or rejected at once with 429,
+ * before it reaches the account locks. A request must pass, in order:
+ * <ol>
+ * <li>the {@link RateLimiter} of its client,</li>
+ * <li>the rate limiter of its source account,</li>
+ * <li>the global {@link AdaptiveConcurrencyLimit}.</li>
+ * </ol>
+ * An admitted transfer can still be turned away when the transfer executor has
+ * no room left for it, see {@link #rejectAdmitted()}.
+ * <p>
+ * A rate of 0 disables the corresponding limiter. Rate limiters are created on
+ * first use and kept in a {@link SegmentedCache}; one that is evicted or
+ * expires starts over with a full burst.
+ */
+@Component
+public class AdmissionControl {
+
+    public enum Reason {
+        CLIENT_RATE("client_rate"),
+        ACCOUNT_RATE("account_rate"),
+        CONCURRENCY("concurrency"),
+        QUEUE_FULL("queue_full");
+
+        private final String tag;
+
+        Reason(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * @param retryAfterNanos time after which the request would be admitted, or
+     *                        0 if unknown
+     */
+    public record Rejection(Reason reason, long retryAfterNanos) {
+
+        /**
+         * @return the wait for the {@code Retry-After} header, rounded up to whole
+         *         seconds
+         */
+        public long retryAfterSeconds() {
+            return Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private final double clientRate;
+    private final int clientBurst;
+    private final double accountRate;
+    private final int accountBurst;
+    private final SegmentedCache<String, RateLimiter> clientLimiters;
+    private final SegmentedCache<String, RateLimiter> accountLimiters;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final Map<Reason, Counter> rejections = new EnumMap<>(Reason.class);
+
+    /**
+     * @param clientRate        requests per second admitted per client, 0 for no limit
+     * @param accountRate       transfers per second admitted per source account, 0
+     *                          for no limit
+     * @param maxTrackedKeys    maximum number of clients, and of accounts, whose
+     *                          rate limiter is kept
+     * @param latencyThresholdMillis latency above which the concurrency limit is
+     *                          lowered
+     */
+    @Autowired
+    public AdmissionControl(@Value("${accounts.admission.client-rate:0}") double clientRate,
+                            @Value("${accounts.admission.client-burst:100}") int clientBurst,
+                            @Value("${accounts.admission.account-rate:0}") double accountRate,
+                            @Value("${accounts.admission.account-burst:20}") int accountBurst,
+                            @Value("${accounts.admission.max-tracked-keys:100000}") int maxTrackedKeys,
+                            @Value("${accounts.admission.concurrency.initial-limit:200}") int initialLimit,
+                            @Value("${accounts.admission.concurrency.min-limit:20}") int minLimit,
+                            @Value("${accounts.admission.concurrency.max-limit:1000}") int maxLimit,
+                            @Value("${accounts.admission.concurrency.latency-threshold-ms:250}") long latencyThresholdMillis,
+                            AccountsMetrics metrics) {
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.accountRate = accountRate;
+        this.accountBurst = accountBurst;
+        this.clientLimiters = new SegmentedCache<>(maxTrackedKeys, 1, TimeUnit.HOURS, 16);
+        this.accountLimiters = new SegmentedCache<>(maxTrackedKeys, 1, TimeUnit.HOURS, 16);
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThresholdMillis,
+                TimeUnit.MILLISECONDS);
+        metrics.registerConcurrencyLimit(concurrencyLimit);
+        for (Reason reason : Reason.values()) {
+            rejections.put(reason, metrics.admissionRejections(reason.tag));
+        }
+    }
+
+    /**
+     * Admits the request or tells why not. An admitted request holds a share of
+     * the concurrency limit until it calls {@link #release(long)}.
+     *
+     * @param clientId  identity of the caller
+     * @param accountId source account of the transfer, or null if the request
+     *                  has no single source account
+     * @return null if the request is admitted
+     */
+    public Rejection tryAdmit(String clientId, String accountId) {
+        if (clientRate > 0) {
+            long wait = limiter(clientLimiters, clientId, clientRate, clientBurst).tryAcquire();
+            if (wait > 0) {
+                return reject(Reason.CLIENT_RATE, wait);
+            }
+        }
+        if (accountRate > 0 && accountId != null) {
+            long wait = limiter(accountLimiters, accountId, accountRate, accountBurst).tryAcquire();
+            if (wait > 0) {
+                return reject(Reason.ACCOUNT_RATE, wait);
+            }
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            return reject(Reason.CONCURRENCY, 0);
+        }
+        return null;
+    }
+
+    /**
+     * @param latencyNanos time the admitted request took
+     */
+    public void release(long latencyNanos) {
+        concurrencyLimit.release(latencyNanos);
+    }
+
+    /**
+     * Rejects an admitted request that found no room to run after all. Its share
+     * of the concurrency limit is released as that of an overloaded request, so
+     * the limit backs off.
+     */
+    public Rejection rejectAdmitted() {
+        concurrencyLimit.release(Long.MAX_VALUE);
+        return reject(Reason.QUEUE_FULL, 0);
+    }
+
+    private Rejection reject(Reason reason, long retryAfterNanos) {
+        rejections.get(reason).increment();
+        return new Rejection(reason, retryAfterNanos);
+    }
+
+    private static RateLimiter limiter(SegmentedCache<String, RateLimiter> limiters, String key, double rate,
+                                       int burst) {
+        RateLimiter limiter = limiters.get(key);
+        if (limiter == null) {
+            RateLimiter created = new RateLimiter(rate, burst);
+            limiter = limiters.putIfAbsent(key, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+}
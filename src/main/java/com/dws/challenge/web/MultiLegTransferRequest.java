@@ -0,0 +1,45 @@
+package com.dws.challenge.web;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+import com.dws.challenge.domain.TransferLeg;
+
+import lombok.Data;
+
+@Data
+public class MultiLegTransferRequest {
+
+    /**
+     * Debits, with a negative amount, and credits, with a positive amount,
+     * summing to zero.
+     */
+    @NotNull
+    @NotEmpty
+    @Valid
+    private List<Leg> legs;
+
+    @Data
+    public static class Leg {
+
+        @NotNull
+        @NotEmpty
+        private String accountNo;
+
+        @NotNull
+        private BigDecimal amount;
+    }
+
+    public List<TransferLeg> toTransferLegs() {
+        List<TransferLeg> transferLegs = new ArrayList<>(legs.size());
+        for (Leg leg : legs) {
+            transferLegs.add(new TransferLeg(leg.getAccountNo(), leg.getAmount()));
+        }
+        return transferLegs;
+    }
+}
@@ -0,0 +1,52 @@
+package com.dws.challenge.web;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.dws.challenge.concurrent.RequestDeadline;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sets the {@link RequestDeadline} of a request from its
+ * {@value #TIMEOUT_HEADER} header, the milliseconds the client is willing to
+ * wait, so that lock waits end before the client gives up.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String timeout = request.getHeader(TIMEOUT_HEADER);
+        if (timeout == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long timeoutMillis;
+        try {
+            timeoutMillis = Long.parseLong(timeout.trim());
+        } catch (NumberFormatException e) {
+            timeoutMillis = -1;
+        }
+        if (timeoutMillis < 0) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + TIMEOUT_HEADER + " header: " + timeout);
+            return;
+        }
+        RequestDeadline.start(timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.dws.challenge.web;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+
+import lombok.Data;
+
+@Data
+public class ScheduledTransferRequest {
+
+    private String fromAccountNo;
+
+    private String toAccountNo;
+
+    private BigDecimal amount;
+
+    /**
+     * Optional ISO 4217 code of both accounts.
+     */
+    private String currency;
+
+    /**
+     * When the transfer is made first, e.g. {@code 2030-01-31T09:00:00Z}.
+     */
+    private Instant executeAt;
+
+    /**
+     * Optional ISO 8601 interval between occurrences, e.g. {@code P1M}.
+     */
+    private String repeat;
+
+    ScheduledTransfer toScheduledTransfer() {
+        return new ScheduledTransfer(null, fromAccountNo, toAccountNo, amount, currency, executeAt, repeat);
+    }
+}
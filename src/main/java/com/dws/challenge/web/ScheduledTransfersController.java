@@ -0,0 +1,82 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.exception.InvalidAccountException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.service.TransferScheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transfers made at a future instant, once or on a recurring schedule. A
+ * transfer can be amended or cancelled until it is made; a recurring one until
+ * it is cancelled.
+ */
+@RestController
+@RequestMapping("/v1/scheduled-transfers")
+@Slf4j
+public class ScheduledTransfersController {
+
+    private static final String NOT_FOUND = "Scheduled transfer does not exist";
+
+    private final TransferScheduler transferScheduler;
+
+    @Autowired
+    public ScheduledTransfersController(TransferScheduler transferScheduler) {
+        this.transferScheduler = transferScheduler;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> schedule(@RequestBody ScheduledTransferRequest request) {
+        log.info("Scheduling transfer from account {} to account {} at {}", request.getFromAccountNo(),
+                request.getToAccountNo(), request.getExecuteAt());
+        try {
+            return new ResponseEntity<>(transferScheduler.schedule(request.toScheduledTransfer()),
+                    HttpStatus.CREATED);
+        } catch (InvalidAmountException | InvalidAccountException | IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping(path = "/{id}")
+    public ResponseEntity<Object> getScheduledTransfer(@PathVariable String id) {
+        ScheduledTransfer transfer = transferScheduler.getScheduledTransfer(id);
+        return transfer == null ? new ResponseEntity<>(NOT_FOUND, HttpStatus.NOT_FOUND)
+                : new ResponseEntity<>(transfer, HttpStatus.OK);
+    }
+
+    /**
+     * Replaces the whole transfer, keeping its id.
+     */
+    @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> amend(@PathVariable String id, @RequestBody ScheduledTransferRequest request) {
+        log.info("Amending scheduled transfer {}", id);
+        try {
+            ScheduledTransfer transfer = transferScheduler.amend(id, request.toScheduledTransfer());
+            return transfer == null ? new ResponseEntity<>(NOT_FOUND, HttpStatus.NOT_FOUND)
+                    : new ResponseEntity<>(transfer, HttpStatus.OK);
+        } catch (InvalidAmountException | InvalidAccountException | IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @DeleteMapping(path = "/{id}")
+    public ResponseEntity<Object> cancel(@PathVariable String id) {
+        log.info("Cancelling scheduled transfer {}", id);
+        return transferScheduler.cancel(id) ? new ResponseEntity<>(HttpStatus.NO_CONTENT)
+                : new ResponseEntity<>(NOT_FOUND, HttpStatus.NOT_FOUND);
+    }
+}
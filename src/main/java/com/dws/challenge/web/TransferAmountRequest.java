@@ -23,4 +23,16 @@ public class TransferAmountRequest {
     @Min(value = 0, message = "Initial balance must be positive.")
     private BigDecimal amount;
 
+    /**
+     * Optional ISO 4217 code of both accounts. When present the transfer runs on
+     * minor units and the amount is converted once, before the transfer.
+     */
+    private String currency;
+
+    /**
+     * Optional client-chosen id of the transfer. A transfer repeated with the
+     * same id is not applied again; the outcome of the first one is returned.
+     */
+    private String requestId;
+
 }
@@ -0,0 +1,35 @@
+package com.dws.challenge.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.dws.challenge.concurrent.VirtualThreads;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handles every request on its own virtual thread instead of Tomcat's
+ * platform thread pool, so that requests blocked on account locks no longer
+ * exhaust the pool. Requires Java 21; on older runtimes the default pool is
+ * kept. Once on Spring Boot 3.2, {@code spring.threads.virtual.enabled}
+ * replaces this configuration.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "accounts.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        if (!VirtualThreads.isSupported()) {
+            log.warn("Virtual threads require Java 21, running on Java {}: keeping Tomcat's thread pool",
+                    Runtime.version().feature());
+            return protocolHandler -> {
+            };
+        }
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLedger;
+import com.dws.challenge.service.AccountsMetrics;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.LedgerEntry;
+import com.dws.challenge.service.LedgerPage;
+import com.dws.challenge.service.LockingBalanceEngine;
+import com.dws.challenge.service.LoggingTransactionLog;
+
+class AccountLedgerTest {
+
+	@Test
+	void depositsWithdrawalsAndTransfersAreListedNewestFirst() throws Exception {
+		AccountLedger ledger = new AccountLedger(1024, 1000, false);
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+				new EmailNotificationService(), new LockingBalanceEngine(), AccountsMetrics.noop(),
+				new LoggingTransactionLog(), ledger);
+		Account from = new Account("Id-1", new BigDecimal("100"));
+		Account to = new Account("Id-2", BigDecimal.ZERO);
+		accountsService.createAccount(from);
+		accountsService.createAccount(to);
+		// entries are timestamped to the millisecond
+		Instant start = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+		accountsService.depositAmount(from, new BigDecimal("5.25"));
+		accountsService.withdrawAmount(from, new BigDecimal("1.25"));
+		accountsService.transferAmount("Id-1", "Id-2", new BigDecimal("30"));
+		ledger.destroy();
+
+		List<LedgerEntry> entries = accountsService.getTransactions("Id-1", null, null, null, 10).transactions();
+		assertThat(entries).extracting(LedgerEntry::type).containsExactly(LedgerEntry.Type.TRANSFER_OUT,
+				LedgerEntry.Type.WITHDRAWAL, LedgerEntry.Type.DEPOSIT);
+		assertThat(entries).extracting(LedgerEntry::sequence).containsExactly(2L, 1L, 0L);
+		assertThat(entries).extracting(LedgerEntry::amount).containsExactly(new BigDecimal("-30"),
+				new BigDecimal("-1.25"), new BigDecimal("5.25"));
+		assertThat(entries.get(0).counterpartyAccountId()).isEqualTo("Id-2");
+		assertThat(entries.get(0).timestamp()).isBetween(start, Instant.now());
+
+		LedgerEntry received = accountsService.getTransactions("Id-2", null, null, null, 10).transactions().get(0);
+		assertThat(received.type()).isEqualTo(LedgerEntry.Type.TRANSFER_IN);
+		assertThat(received.amount()).isEqualTo(new BigDecimal("30"));
+		assertThat(received.counterpartyAccountId()).isEqualTo("Id-1");
+	}
+
+	@Test
+	void pagesFollowTheCursorAndOldEntriesAreDropped() throws Exception {
+		AccountLedger ledger = new AccountLedger(1024, 50, false);
+		for (int i = 0; i < 200; i++) {
+			ledger.deposited("Id-1", BigDecimal.valueOf(i));
+		}
+		ledger.deposited("Id-2", new BigDecimal("123456789012345678901234567890.5"));
+		ledger.destroy();
+
+		List<Long> sequences = new ArrayList<>();
+		String cursor = null;
+		do {
+			LedgerPage page = ledger.page("Id-1", null, null, cursor, 7);
+			assertThat(page.transactions()).hasSizeLessThanOrEqualTo(7);
+			page.transactions().forEach(entry -> sequences.add(entry.sequence()));
+			cursor = page.nextCursor();
+		} while (cursor != null);
+
+		assertThat(sequences).hasSizeGreaterThanOrEqualTo(50).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+		assertThat(sequences.get(0)).isEqualTo(199L);
+		assertThat(sequences.get(sequences.size() - 1)).isEqualTo(200L - sequences.size());
+		assertThat(ledger.page("Id-2", null, null, null, 1).transactions().get(0).amount())
+				.isEqualTo(new BigDecimal("123456789012345678901234567890.5"));
+		assertThat(ledger.page("Id-1", Instant.now().plusSeconds(60), null, null, 10).transactions()).isEmpty();
+		assertThat(ledger.page("Id-1", null, Instant.EPOCH, null, 10).transactions()).isEmpty();
+		assertThatThrownBy(() -> ledger.page("Id-1", null, null, "x", 10))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
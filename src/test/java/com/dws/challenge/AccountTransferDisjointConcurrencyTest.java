@@ -0,0 +1,96 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+
+/**
+ * Exercises the per-account locking in transfers: disjoint pairs must not
+ * interfere and a cycle of transfers (A to B, B to C, C to A) must not
+ * deadlock.
+ */
+class AccountTransferDisjointConcurrencyTest {
+
+	private static final int ACCOUNT_COUNT = 8;
+	private static final int TRANSFERS_PER_TASK = 500;
+
+	private AccountsService accountsService;
+
+	@BeforeEach
+	void setup() {
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(), new EmailNotificationService());
+		for (int i = 0; i < ACCOUNT_COUNT; i++) {
+			accountsService.createAccount(new Account("Id-" + i, new BigDecimal("1000")));
+		}
+	}
+
+	@Test
+	void disjointPairsKeepTheirBalances() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(ACCOUNT_COUNT);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < ACCOUNT_COUNT; i += 2) {
+			String first = "Id-" + i;
+			String second = "Id-" + (i + 1);
+			tasks.add(executor.submit(() -> transferRepeatedly(first, second)));
+			tasks.add(executor.submit(() -> transferRepeatedly(second, first)));
+		}
+		awaitCompletion(executor, tasks);
+
+		for (int i = 0; i < ACCOUNT_COUNT; i++) {
+			assertThat(accountsService.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("1000");
+		}
+	}
+
+	@Test
+	void cyclicTransfersDoNotDeadlock() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(ACCOUNT_COUNT);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < ACCOUNT_COUNT; i++) {
+			String from = "Id-" + i;
+			String to = "Id-" + ((i + 1) % ACCOUNT_COUNT);
+			tasks.add(executor.submit(() -> transferRepeatedly(from, to)));
+		}
+		awaitCompletion(executor, tasks);
+
+		BigDecimal total = BigDecimal.ZERO;
+		for (int i = 0; i < ACCOUNT_COUNT; i++) {
+			total = total.add(accountsService.getAccount("Id-" + i).getBalance());
+		}
+		assertThat(total).isEqualByComparingTo(new BigDecimal(1000 * ACCOUNT_COUNT));
+	}
+
+	private Void transferRepeatedly(String fromAccountId, String toAccountId) throws Exception {
+		for (int i = 0; i < TRANSFERS_PER_TASK; i++) {
+			accountsService.transferAmount(fromAccountId, toAccountId, BigDecimal.ONE);
+		}
+		return null;
+	}
+
+	private void awaitCompletion(ExecutorService executor, List<Future<?>> tasks) throws InterruptedException {
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).as("transfers finished without deadlock")
+				.isTrue();
+		for (Future<?> task : tasks) {
+			try {
+				task.get();
+			} catch (Exception e) {
+				fail("Exception should not occur while transfering amounts: " + e.getMessage());
+			}
+		}
+	}
+}
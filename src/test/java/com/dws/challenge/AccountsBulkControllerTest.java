@@ -0,0 +1,134 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.service.AccountsService;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class AccountsBulkControllerTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+		accountsService.clearAccounts();
+	}
+
+	@Test
+	void importNdjson() throws Exception {
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("5")));
+
+		this.mockMvc.perform(post("/v1/accounts:import").contentType(MediaType.APPLICATION_NDJSON)
+				.content("{\"accountId\":\"Id-1\",\"balance\":100}\n"
+						+ "{\"accountId\":\"Id-2\",\"balance\":200}\n"
+						+ "{\"accountId\":\"Id-3\",\"balance\":12.34,\"currency\":\"EUR\"}\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(2))
+				.andExpect(jsonPath("$.skipped").value(1));
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("5");
+		assertThat(accountsService.getAccount("Id-3")).isInstanceOf(MinorUnitsAccount.class);
+	}
+
+	@Test
+	void importCsv() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts:import").contentType("text/csv")
+				.content("accountId,balance,currency\nId-1,100,\nId-2,7.5,EUR\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(2));
+
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("7.50");
+	}
+
+	@Test
+	void importStopsAtInvalidAccount() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts:import").contentType("text/csv")
+				.content("accountId,balance\nId-1,100\nId-2,-1\nId-3,1\n"))
+				.andExpect(status().isBadRequest());
+
+		assertThat(accountsService.getAccountsRepository().getAccountCount()).isEqualTo(1);
+	}
+
+	@Test
+	void exportNdjson() throws Exception {
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new MinorUnitsAccount("Id-2", new BigDecimal("1.50"), "EUR"));
+
+		MvcResult result = this.mockMvc.perform(get("/v1/accounts:export").accept(MediaType.APPLICATION_NDJSON))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		String body = this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn()
+				.getResponse().getContentAsString();
+		assertThat(body.lines()).containsExactlyInAnyOrder("{\"accountId\":\"Id-1\",\"balance\":100}",
+				"{\"accountId\":\"Id-2\",\"balance\":1.50,\"currency\":\"EUR\"}");
+	}
+
+	@Test
+	void exportCsvCanBeImportedAgain() throws Exception {
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new MinorUnitsAccount("Id-2", new BigDecimal("1.50"), "EUR"));
+
+		MvcResult result = this.mockMvc.perform(get("/v1/accounts:export").accept("text/csv"))
+				.andExpect(request().asyncStarted()).andReturn();
+		String csv = this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn()
+				.getResponse().getContentAsString();
+		accountsService.clearAccounts();
+
+		this.mockMvc.perform(post("/v1/accounts:import").contentType("text/csv").content(csv))
+				.andExpect(status().isOk())
+				.andExpect(content().json("{\"created\":2,\"skipped\":0}"));
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1.50");
+	}
+
+	@Test
+	void lookupReturnsFoundAccountsInRequestOrderAndMissingIds() throws Exception {
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new MinorUnitsAccount("Id-2", new BigDecimal("1.50"), "EUR"));
+
+		this.mockMvc.perform(post("/v1/accounts:lookup").contentType(MediaType.APPLICATION_JSON)
+				.content("[\"Id-2\",\"Id-9\",\"Id-1\"]"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("{\"accounts\":[{\"accountId\":\"Id-2\",\"balance\":1.50,\"currency\":\"EUR\"},"
+						+ "{\"accountId\":\"Id-1\",\"balance\":100}],\"notFound\":[\"Id-9\"]}", true));
+	}
+
+	@Test
+	void lookupRejectsNonStringIds() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts:lookup").contentType(MediaType.APPLICATION_JSON).content("[1,2]"))
+				.andExpect(status().isBadRequest());
+	}
+}
@@ -1,9 +1,12 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -18,9 +21,13 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.web.context.WebApplicationContext;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
 import com.dws.challenge.service.AccountsService;
 
 @ExtendWith(SpringExtension.class)
@@ -104,4 +111,151 @@ class AccountsControllerTest {
 		this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId)).andExpect(status().isOk())
 				.andExpect(content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
 	}
+
+	@Test
+	void getAccountAfterTransferShowsNewBalance() throws Exception {
+		this.accountsService.createAccount(new Account("Id-206", new BigDecimal("20")));
+		this.mockMvc.perform(get("/v1/accounts/Id-134")).andExpect(status().isOk())
+				.andExpect(content().string("{\"accountId\":\"Id-134\",\"balance\":1000}"));
+
+		this.accountsService.transferAmount("Id-134", "Id-206", new BigDecimal("1.5"));
+
+		this.mockMvc.perform(get("/v1/accounts/Id-134")).andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(content().string("{\"accountId\":\"Id-134\",\"balance\":998.5}"));
+		this.mockMvc.perform(get("/v1/accounts/Id-206")).andExpect(status().isOk())
+				.andExpect(content().string("{\"accountId\":\"Id-206\",\"balance\":21.5}"));
+	}
+
+	@Test
+	void createAccountWithCurrencyKeepsMinorUnits() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"Id-200\",\"balance\":10.5,\"currency\":\"EUR\"}"))
+				.andExpect(status().isCreated());
+
+		this.mockMvc.perform(get("/v1/accounts/Id-200")).andExpect(status().isOk())
+				.andExpect(content().string("{\"accountId\":\"Id-200\",\"balance\":10.50,\"currency\":\"EUR\"}"));
+	}
+
+	@Test
+	void transferInMinorUnits() throws Exception {
+		this.accountsService.createAccount(new MinorUnitsAccount("Id-201", new BigDecimal("100"), "EUR"));
+		this.accountsService.createAccount(new MinorUnitsAccount("Id-202", new BigDecimal("0"), "EUR"));
+
+		performAsync(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fromAccountNo\":\"Id-201\",\"toAccountNo\":\"Id-202\",\"amount\":12.34,\"currency\":\"EUR\"}"))
+				.andExpect(status().isOk());
+
+		assertThat(accountsService.getAccount("Id-201").getBalance()).isEqualByComparingTo("87.66");
+		assertThat(accountsService.getAccount("Id-202").getBalance()).isEqualByComparingTo("12.34");
+	}
+
+	@Test
+	void transferRetriedWithSameRequestIdIsAppliedOnce() throws Exception {
+		this.accountsService.createAccount(new Account("Id-204", new BigDecimal("0")));
+
+		for (int i = 0; i < 2; i++) {
+			performAsync(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"fromAccountNo\":\"Id-134\",\"toAccountNo\":\"Id-204\",\"amount\":10,"
+							+ "\"requestId\":\"request-204\"}"))
+					.andExpect(status().isOk());
+		}
+
+		assertThat(accountsService.getAccount("Id-134").getBalance()).isEqualByComparingTo("990");
+		assertThat(accountsService.getAccount("Id-204").getBalance()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	void transferBetweenCurrenciesIsRejected() throws Exception {
+		this.accountsService.createAccount(new MinorUnitsAccount("Id-203", new BigDecimal("100"), "EUR"));
+
+		performAsync(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fromAccountNo\":\"Id-203\",\"toAccountNo\":\"Id-134\",\"amount\":1}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void transferRejectionsAreMappedToStatuses() throws Exception {
+		this.accountsService.createAccount(new Account("Id-205", new BigDecimal("5")));
+
+		performAsync(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fromAccountNo\":\"Id-205\",\"toAccountNo\":\"Id-134\",\"amount\":10}"))
+				.andExpect(status().isUnprocessableEntity());
+		performAsync(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fromAccountNo\":\"Id-205\",\"toAccountNo\":\"Id-999\",\"amount\":1}"))
+				.andExpect(status().isNotFound());
+
+		assertThat(accountsService.getAccount("Id-205").getBalance()).isEqualByComparingTo("5");
+	}
+
+	@Test
+	void transferBatchBestEffortReportsEachTransfer() throws Exception {
+		this.accountsService.createAccount(new Account("Id-300", new BigDecimal("100")));
+
+		this.mockMvc.perform(post("/v1/accounts/transfers:batch").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"fromAccountNo\":\"Id-134\",\"toAccountNo\":\"Id-300\",\"amount\":10},"
+						+ "{\"fromAccountNo\":\"Id-300\",\"toAccountNo\":\"Id-134\",\"amount\":500},"
+						+ "{\"fromAccountNo\":\"Id-300\",\"toAccountNo\":\"Id-999\",\"amount\":1}]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].success").value(true))
+				.andExpect(jsonPath("$[1].success").value(false))
+				.andExpect(jsonPath("$[2].success").value(false));
+
+		assertThat(accountsService.getAccount("Id-134").getBalance()).isEqualByComparingTo("990");
+		assertThat(accountsService.getAccount("Id-300").getBalance()).isEqualByComparingTo("110");
+	}
+
+	@Test
+	void transferBatchAtomicAppliesNothingWhenOneTransferFails() throws Exception {
+		this.accountsService.createAccount(new Account("Id-301", new BigDecimal("100")));
+
+		this.mockMvc.perform(post("/v1/accounts/transfers:batch?mode=ATOMIC").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"fromAccountNo\":\"Id-134\",\"toAccountNo\":\"Id-301\",\"amount\":10},"
+						+ "{\"fromAccountNo\":\"Id-301\",\"toAccountNo\":\"Id-134\",\"amount\":500}]"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$[0].success").value(false))
+				.andExpect(jsonPath("$[1].success").value(false));
+
+		assertThat(accountsService.getAccount("Id-134").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("Id-301").getBalance()).isEqualByComparingTo("100");
+	}
+
+	@Test
+	void transferLegsAppliesAllLegs() throws Exception {
+		this.accountsService.createAccount(new Account("Id-207", new BigDecimal("0")));
+		this.accountsService.createAccount(new Account("Id-208", new BigDecimal("0")));
+
+		performAsync(post("/v1/accounts/transfers:multi-leg").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"legs\":[{\"accountNo\":\"Id-134\",\"amount\":-10},"
+						+ "{\"accountNo\":\"Id-207\",\"amount\":7},{\"accountNo\":\"Id-208\",\"amount\":3}]}"))
+				.andExpect(status().isOk());
+		performAsync(post("/v1/accounts/transfers:multi-leg").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"legs\":[{\"accountNo\":\"Id-207\",\"amount\":-100},"
+						+ "{\"accountNo\":\"Id-208\",\"amount\":100}]}"))
+				.andExpect(status().isUnprocessableEntity());
+
+		assertThat(accountsService.getAccount("Id-134").getBalance()).isEqualByComparingTo("990");
+		assertThat(accountsService.getAccount("Id-207").getBalance()).isEqualByComparingTo("7");
+		assertThat(accountsService.getAccount("Id-208").getBalance()).isEqualByComparingTo("3");
+	}
+
+	@Test
+	void transfersAreNotCutShortByTheAsyncTimeout() throws Exception {
+		this.accountsService.createAccount(new Account("Id-209", new BigDecimal("0")));
+
+		MvcResult result = this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"fromAccountNo\":\"Id-134\",\"toAccountNo\":\"Id-209\",\"amount\":1}"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		assertThat(result.getRequest().getAsyncContext().getTimeout()).isNotPositive();
+		this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+	}
+
+	/**
+	 * Transfers are answered once they complete on the transfer executor.
+	 */
+	private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+		MvcResult result = this.mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+		return this.mockMvc.perform(asyncDispatch(result));
+	}
 }
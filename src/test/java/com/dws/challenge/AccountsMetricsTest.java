@@ -0,0 +1,105 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLedger;
+import com.dws.challenge.service.AccountsMetrics;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.AsyncNotificationService;
+import com.dws.challenge.service.AsyncNotificationService.BackpressurePolicy;
+import com.dws.challenge.service.BinaryTransactionLog;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.LockingBalanceEngine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AccountsMetricsTest {
+
+	@TempDir
+	Path directory;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private AccountsMetrics metrics;
+	private AccountsService accountsService;
+
+	@BeforeEach
+	void setup() {
+		metrics = new AccountsMetrics(registry);
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(), new EmailNotificationService(),
+				new LockingBalanceEngine(metrics), metrics);
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+	}
+
+	@Test
+	void transfersAreTimedAndLocksMeasured() throws Exception {
+		accountsService.transferAmount("Id-1", "Id-2", BigDecimal.TEN);
+		accountsService.transferAmount("Id-2", "Id-1", BigDecimal.ONE);
+
+		assertThat(registry.find("accounts.operation").tag("operation", "transfer").timer().count()).isEqualTo(2);
+		assertThat(registry.find("accounts.lock.wait").timer().count()).isEqualTo(2);
+		assertThat(registry.find("accounts.lock.hold").timer().count()).isEqualTo(2);
+		assertThat(registry.find("accounts.count").gauge().value()).isEqualTo(2);
+	}
+
+	@Test
+	void failuresAreCountedPerExceptionType() {
+		assertThatThrownBy(() -> accountsService.transferAmount("Id-2", "Id-1", BigDecimal.TEN))
+				.isInstanceOf(InsufficientFundsException.class);
+		assertThatThrownBy(() -> accountsService.getAccount("Id-3")).isInstanceOf(AccountNotFoundException.class);
+
+		assertThat(registry.find("accounts.operation.failures").tag("operation", "transfer")
+				.tag("exception", "InsufficientFundsException").counter().count()).isEqualTo(1);
+		assertThat(registry.find("accounts.operation.failures").tag("operation", "lookup")
+				.tag("exception", "AccountNotFoundException").counter().count()).isEqualTo(1);
+		assertThat(registry.find("accounts.operation").tag("operation", "transfer").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void notificationQueueIsPublished() throws Exception {
+		AsyncNotificationService notificationService = new AsyncNotificationService((account, description) -> {
+		}, 16, 4, BackpressurePolicy.BLOCK, directory, false, metrics);
+
+		notificationService.notifyAboutTransfer(new Account("Id-1"), "transfer");
+		notificationService.destroy();
+
+		assertThat(registry.find("accounts.notifications.queued").gauge().value()).isZero();
+		assertThat(registry.find("accounts.notifications.spilled.backlog").gauge().value()).isZero();
+		assertThat(registry.find("accounts.notifications").tag("outcome", "dispatched").functionCounter().count())
+				.isEqualTo(1);
+		assertThat(registry.find("accounts.notifications").tag("outcome", "dropped").functionCounter().count())
+				.isZero();
+	}
+
+	@Test
+	void transactionLogQueueIsPublished() throws Exception {
+		BinaryTransactionLog transactionLog = new BinaryTransactionLog(directory, 4096, 4, 16, false, metrics);
+
+		transactionLog.transferred("Id-1", "Id-2", BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.ONE);
+		transactionLog.destroy();
+
+		assertThat(registry.find("accounts.audit.queued").gauge().value()).isZero();
+		assertThat(registry.find("accounts.audit.records").tag("outcome", "written").functionCounter().count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void ledgerQueueIsPublished() throws Exception {
+		AccountLedger ledger = new AccountLedger(16, 10, false, metrics);
+		ledger.destroy();
+
+		assertThat(registry.find("accounts.ledger.queued").gauge().value()).isZero();
+	}
+}
@@ -0,0 +1,186 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.repository.AccountsRepositoryJournaled;
+import com.dws.challenge.repository.JournalFsyncPolicy;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.CasBalanceEngine;
+import com.dws.challenge.service.EmailNotificationService;
+
+class AccountsRepositoryJournaledTest {
+
+	private static final int SEGMENT_SIZE = 4096;
+
+	@TempDir
+	Path journalDirectory;
+
+	@Test
+	void balancesSurviveRestartFromJournalOnly() throws Exception {
+		AccountsRepositoryJournaled repository = open();
+		AccountsService accountsService = new AccountsService(repository, new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100.50")));
+		accountsService.createAccount(new MinorUnitsAccount("Id-2", new BigDecimal("20.00"), "EUR"));
+		accountsService.createAccount(new MinorUnitsAccount("Id-3", new BigDecimal("5.00"), "EUR"));
+		accountsService.transferAmount("Id-2", "Id-3", new BigDecimal("7.25"));
+		accountsService.depositAmount(accountsService.getAccount("Id-1"), new BigDecimal("0.50"));
+		repository.destroy();
+
+		AccountsRepositoryJournaled recovered = open();
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("101.00");
+		assertThat(recovered.getAccount("Id-2")).isInstanceOf(MinorUnitsAccount.class);
+		assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("12.75");
+		assertThat(recovered.getAccount("Id-3").getBalance()).isEqualByComparingTo("12.25");
+		recovered.destroy();
+	}
+
+	@Test
+	void recoveryReplaysOnlyTheTailAfterSnapshot() throws Exception {
+		AccountsRepositoryJournaled repository = open();
+		AccountsService accountsService = new AccountsService(repository, new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+		for (int i = 0; i < 200; i++) {
+			accountsService.transferAmount("Id-1", "Id-2", BigDecimal.ONE);
+		}
+		repository.snapshot();
+		assertThat(segmentCount()).as("segments before the snapshot are deleted").isEqualTo(1);
+		for (int i = 0; i < 50; i++) {
+			accountsService.transferAmount("Id-2", "Id-1", BigDecimal.ONE);
+		}
+		repository.destroy();
+
+		AccountsRepositoryJournaled recovered = open();
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("850");
+		assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("150");
+		recovered.destroy();
+	}
+
+	@Test
+	void snapshotLeavesOutBalancesNotJournaledYet() throws Exception {
+		AccountsRepositoryJournaled repository = open();
+		AccountsService accountsService = new AccountsService(repository, new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+		accountsService.transferAmount("Id-1", "Id-2", BigDecimal.TEN);
+		// a transfer caught between its debit and its journal record
+		repository.getAccount("Id-1").setBalance(new BigDecimal("60"));
+
+		repository.snapshot();
+		repository.destroy();
+
+		AccountsRepositoryJournaled recovered = open();
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("90");
+		assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+		recovered.destroy();
+	}
+
+	@Test
+	void tornRecordEndsReplay() throws Exception {
+		AccountsRepositoryJournaled repository = open();
+		AccountsService accountsService = new AccountsService(repository, new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+		accountsService.depositAmount(accountsService.getAccount("Id-1"), BigDecimal.ONE);
+		repository.destroy();
+
+		Path segment = journalDirectory.resolve("journal-0000000000000000.log");
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			channel.read(header, 0);
+			int createRecordEnd = 8 + header.getInt(0);
+			// corrupt the payload of the balance record that follows the creation
+			channel.write(ByteBuffer.wrap(new byte[] { 0x7f }), createRecordEnd + 9);
+		}
+
+		AccountsRepositoryJournaled recovered = open();
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+		recovered.destroy();
+	}
+
+	@Test
+	void everyPrefixOfTheJournalConservesMoney() throws Exception {
+		Path directory = journalDirectory.resolve("concurrent");
+		AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(directory, 1 << 20,
+				JournalFsyncPolicy.NEVER, 10, 0);
+		// the engine changes balances without locking the accounts
+		AccountsService accountsService = new AccountsService(repository, new EmailNotificationService(),
+				new CasBalanceEngine());
+		for (int i = 0; i < 4; i++) {
+			accountsService.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			tasks.add(executor.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int j = 0; j < 200; j++) {
+					int from = random.nextInt(4);
+					accountsService.tryTransfer("Id-" + from, "Id-" + (from + 1 + random.nextInt(3)) % 4,
+							new BigDecimal(random.nextInt(1, 60)));
+				}
+				return null;
+			}));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+		repository.destroy();
+
+		byte[] journal = Files.readAllBytes(directory.resolve("journal-0000000000000000.log"));
+		ByteBuffer records = ByteBuffer.wrap(journal);
+		int prefixes = 0;
+		for (int end = 0; end < journal.length; end += 8 + records.getInt(end)) {
+			// a crash right after the record ending here
+			Path crashed = journalDirectory.resolve("prefix-" + end);
+			Files.createDirectories(crashed);
+			byte[] prefix = journal.clone();
+			ByteBuffer.wrap(prefix).putInt(end, 0);
+			Files.write(crashed.resolve("journal-0000000000000000.log"), prefix);
+			AccountsRepositoryJournaled recovered = new AccountsRepositoryJournaled(crashed, 1 << 20,
+					JournalFsyncPolicy.NEVER, 10, 0);
+			List<BigDecimal> balances = new ArrayList<>();
+			recovered.forEachAccount(account -> balances.add(account.getBalance()));
+			recovered.destroy();
+			assertThat(balances).allSatisfy(balance -> assertThat(balance).isNotNegative());
+			assertThat(balances.stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+					.isEqualByComparingTo(new BigDecimal(100 * balances.size()));
+			prefixes++;
+			if (records.getInt(end) == 0) {
+				break;
+			}
+		}
+		assertThat(prefixes).isGreaterThan(4);
+	}
+
+	private AccountsRepositoryJournaled open() {
+		return new AccountsRepositoryJournaled(journalDirectory, SEGMENT_SIZE, JournalFsyncPolicy.ALWAYS, 10, 0);
+	}
+
+	private long segmentCount() throws Exception {
+		try (Stream<Path> files = Files.list(journalDirectory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith("journal-")).count();
+		}
+	}
+}
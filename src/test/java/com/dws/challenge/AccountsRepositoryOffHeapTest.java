@@ -0,0 +1,147 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.domain.TransferInstruction;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.service.AccountsMetrics;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceEngine;
+import com.dws.challenge.service.BatchTransferMode;
+import com.dws.challenge.service.CasBalanceEngine;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.LockingBalanceEngine;
+import com.dws.challenge.service.ShardedBalanceEngine;
+import com.dws.challenge.service.TransferResult;
+import com.dws.challenge.web.AccountJsonCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AccountsRepositoryOffHeapTest {
+
+	@TempDir
+	Path storeDirectory;
+
+	@Test
+	void viewsReadAndWriteTheStoredBalance() throws Exception {
+		AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(100, 4, 2, "");
+		AccountsService accountsService = new AccountsService(repository, new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new MinorUnitsAccount("Id-2", new BigDecimal("10.00"), "EUR"));
+
+		accountsService.depositAmount(accountsService.getAccount("Id-1"), new BigDecimal("0.25"));
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.25");
+		assertThat(accountsService.getAccount("Id-2")).isInstanceOf(MinorUnitsAccount.class);
+		assertThatThrownBy(() -> accountsService.createAccount(new Account("Id-1", BigDecimal.ONE)))
+				.isInstanceOf(DuplicateAccountIdException.class);
+		assertThatThrownBy(() -> accountsService.depositAmount(accountsService.getAccount("Id-1"),
+				new BigDecimal("0.001"))).isInstanceOf(IllegalArgumentException.class);
+		repository.destroy();
+	}
+
+	@Test
+	void jsonOfViewsIsCachedAcrossLookups() throws Exception {
+		AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(100, 4, 2, "");
+		AccountsService accountsService = new AccountsService(repository, new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AccountJsonCache cache = new AccountJsonCache(new ObjectMapper(), new AccountsMetrics(registry), 100, 60, 1);
+
+		byte[] json = cache.toJson(accountsService.getAccount("Id-1"));
+		assertThat(cache.toJson(accountsService.getAccount("Id-1"))).isSameAs(json);
+		accountsService.depositAmount(accountsService.getAccount("Id-1"), BigDecimal.ONE);
+		assertThat(new String(cache.toJson(accountsService.getAccount("Id-1")))).contains("101");
+
+		assertThat(registry.find("accounts.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+		repository.destroy();
+	}
+
+	@Test
+	void concurrentTransfersKeepTheTotalWithBothEngines() throws Exception {
+		for (AccountsService accountsService : new AccountsService[] {
+				new AccountsService(new AccountsRepositoryOffHeap(100, 4, 2, ""), new EmailNotificationService(),
+						new LockingBalanceEngine()),
+				new AccountsService(new AccountsRepositoryOffHeap(100, 4, 2, ""), new EmailNotificationService(),
+						new CasBalanceEngine()) }) {
+			for (int i = 0; i < 8; i++) {
+				accountsService.createAccount(new Account("Id-" + i, new BigDecimal("1000")));
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(8);
+			for (int i = 0; i < 8; i++) {
+				String from = "Id-" + i;
+				String to = "Id-" + ((i + 3) % 8);
+				executor.submit(() -> {
+					for (int j = 0; j < 500; j++) {
+						accountsService.transferAmount(from, to, new BigDecimal("0.01"));
+					}
+					return null;
+				});
+			}
+			executor.shutdown();
+			assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+			BigDecimal total = BigDecimal.ZERO;
+			for (int i = 0; i < 8; i++) {
+				total = total.add(accountsService.getAccount("Id-" + i).getBalance());
+			}
+			assertThat(total).isEqualByComparingTo("8000");
+		}
+	}
+
+	@Test
+	void changesFinerThanTheStoredScaleAreRejectedWithEveryEngine() throws Exception {
+		ShardedBalanceEngine shardedEngine = new ShardedBalanceEngine(2, 64);
+		for (BalanceEngine engine : new BalanceEngine[] { new LockingBalanceEngine(), new CasBalanceEngine(),
+				shardedEngine }) {
+			AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(100, 4, 2, "");
+			AccountsService accountsService = new AccountsService(repository, new EmailNotificationService(), engine);
+			accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+			accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+			accountsService.createAccount(new Account("Id-3", BigDecimal.ZERO));
+
+			assertThat(accountsService.tryTransfer(List.of(new TransferLeg("Id-1", new BigDecimal("-1.00")),
+					new TransferLeg("Id-2", new BigDecimal("0.995")), new TransferLeg("Id-3", new BigDecimal("0.005")))))
+					.isEqualTo(TransferResult.INVALID_AMOUNT);
+			assertThat(accountsService.transferBatch(
+					List.of(new TransferInstruction("Id-1", "Id-2", new BigDecimal("1.00"), null),
+							new TransferInstruction("Id-2", "Id-3", new BigDecimal("0.005"), null)),
+					BatchTransferMode.ATOMIC)).noneMatch(outcome -> outcome.isSuccess());
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+			assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("0");
+			repository.destroy();
+		}
+		shardedEngine.destroy();
+	}
+
+	@Test
+	void mappedStoreIsReindexedOnReopen() throws Exception {
+		String file = storeDirectory.resolve("accounts.dat").toString();
+		AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(100, 4, 2, file);
+		repository.createAccount(new Account("Id-1", new BigDecimal("42.10")));
+		repository.getAccount("Id-1").setBalance(new BigDecimal("40.10"));
+		repository.destroy();
+
+		AccountsRepositoryOffHeap reopened = new AccountsRepositoryOffHeap(100, 4, 2, file);
+		assertThat(reopened.getAccount("Id-1").getBalance()).isEqualByComparingTo("40.10");
+		reopened.destroy();
+	}
+}
@@ -4,12 +4,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferLeg;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InvalidAccountException;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferResult;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,4 +48,54 @@ class AccountsServiceTest {
       assertThat(ex.getMessage()).isEqualTo("Account id " + uniqueId + " already exists!");
     }
   }
+
+  @Test
+  void tryTransfer_reportsRejectionsAsResults() throws InvalidAccountException, AccountNotFoundException {
+    this.accountsService.createAccount(new Account("Id-161", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-162", new BigDecimal("0")));
+
+    assertThat(this.accountsService.tryTransfer("Id-161", "Id-162", new BigDecimal("-1")))
+        .isEqualTo(TransferResult.INVALID_AMOUNT);
+    assertThat(this.accountsService.tryTransfer("", "Id-162", BigDecimal.ONE))
+        .isEqualTo(TransferResult.INVALID_ACCOUNT);
+    assertThat(this.accountsService.tryTransfer("Id-161", "Id-000", BigDecimal.ONE))
+        .isEqualTo(TransferResult.ACCOUNT_NOT_FOUND);
+    assertThat(this.accountsService.tryTransfer("Id-161", "Id-162", new BigDecimal("11")))
+        .isEqualTo(TransferResult.INSUFFICIENT_FUNDS);
+    assertThat(this.accountsService.tryTransfer("Id-161", "Id-162", BigDecimal.TEN))
+        .isEqualTo(TransferResult.SUCCESS);
+
+    assertThat(this.accountsService.getAccount("Id-161").getBalance()).isEqualByComparingTo("0");
+    assertThat(this.accountsService.getAccount("Id-162").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void tryTransfer_appliesAllLegsOrNone() throws InvalidAccountException, AccountNotFoundException {
+    this.accountsService.createAccount(new Account("Id-171", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-172", new BigDecimal("0")));
+    this.accountsService.createAccount(new Account("Id-173", new BigDecimal("0")));
+    this.accountsService.createAccount(new Account("Id-174", new BigDecimal("5")));
+
+    assertThat(this.accountsService.tryTransfer(List.of(new TransferLeg("Id-171", new BigDecimal("-100")),
+        new TransferLeg("Id-172", new BigDecimal("90")), new TransferLeg("Id-173", new BigDecimal("9")))))
+        .isEqualTo(TransferResult.INVALID_AMOUNT);
+    assertThat(this.accountsService.tryTransfer(List.of(new TransferLeg("Id-171", new BigDecimal("-100")),
+        new TransferLeg("Id-000", new BigDecimal("100")))))
+        .isEqualTo(TransferResult.ACCOUNT_NOT_FOUND);
+    assertThat(this.accountsService.tryTransfer(List.of(new TransferLeg("Id-171", new BigDecimal("-100")),
+        new TransferLeg("Id-174", new BigDecimal("-6")), new TransferLeg("Id-172", new BigDecimal("106")))))
+        .isEqualTo(TransferResult.INSUFFICIENT_FUNDS);
+    assertThat(this.accountsService.getAccount("Id-171").getBalance()).isEqualByComparingTo("100");
+    assertThat(this.accountsService.getAccount("Id-172").getBalance()).isEqualByComparingTo("0");
+
+    assertThat(this.accountsService.tryTransfer(List.of(new TransferLeg("Id-171", new BigDecimal("-100")),
+        new TransferLeg("Id-174", new BigDecimal("-5")), new TransferLeg("Id-172", new BigDecimal("90")),
+        new TransferLeg("Id-173", new BigDecimal("10")), new TransferLeg("Id-172", new BigDecimal("5")))))
+        .isEqualTo(TransferResult.SUCCESS);
+
+    assertThat(this.accountsService.getAccount("Id-171").getBalance()).isEqualByComparingTo("0");
+    assertThat(this.accountsService.getAccount("Id-172").getBalance()).isEqualByComparingTo("95");
+    assertThat(this.accountsService.getAccount("Id-173").getBalance()).isEqualByComparingTo("10");
+    assertThat(this.accountsService.getAccount("Id-174").getBalance()).isEqualByComparingTo("0");
+  }
 }
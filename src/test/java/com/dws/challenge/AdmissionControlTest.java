@@ -0,0 +1,68 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.concurrent.AdaptiveConcurrencyLimit;
+import com.dws.challenge.concurrent.RateLimiter;
+import com.dws.challenge.service.AccountsMetrics;
+import com.dws.challenge.web.AdmissionControl;
+
+class AdmissionControlTest {
+
+	@Test
+	void rateLimiterAdmitsBurstThenSustainedRate() {
+		AtomicLong now = new AtomicLong();
+		RateLimiter rateLimiter = new RateLimiter(10, 3, now::get);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(rateLimiter.tryAcquire()).isZero();
+		}
+		assertThat(rateLimiter.tryAcquire()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+		now.set(TimeUnit.MILLISECONDS.toNanos(100));
+		assertThat(rateLimiter.tryAcquire()).isZero();
+		assertThat(rateLimiter.tryAcquire()).isPositive();
+	}
+
+	@Test
+	void concurrencyLimitGrowsWhenFastAndShrinksWhenSlow() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 3, 100, TimeUnit.MILLISECONDS);
+
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isFalse();
+
+		limit.release(TimeUnit.MILLISECONDS.toNanos(1));
+		assertThat(limit.getLimit()).isEqualTo(3);
+		limit.release(TimeUnit.MILLISECONDS.toNanos(500));
+		assertThat(limit.getLimit()).isEqualTo(2);
+		assertThat(limit.getInFlight()).isZero();
+	}
+
+	@Test
+	void requestsOverAnyLimitAreRejectedWithTheReason() {
+		AdmissionControl admissionControl = new AdmissionControl(1, 3, 1, 1, 100, 1, 1, 1, 250,
+				AccountsMetrics.noop());
+
+		assertThat(admissionControl.tryAdmit("client-1", "Id-1")).isNull();
+		AdmissionControl.Rejection rejection = admissionControl.tryAdmit("client-1", "Id-1");
+		assertThat(rejection.reason()).isEqualTo(AdmissionControl.Reason.ACCOUNT_RATE);
+		assertThat(rejection.retryAfterSeconds()).isEqualTo(1);
+
+		assertThat(admissionControl.tryAdmit("client-1", "Id-2").reason())
+				.isEqualTo(AdmissionControl.Reason.CONCURRENCY);
+		assertThat(admissionControl.tryAdmit("client-1", "Id-3").reason())
+				.isEqualTo(AdmissionControl.Reason.CLIENT_RATE);
+
+		admissionControl.release(0);
+		assertThat(admissionControl.tryAdmit("client-2", "Id-4")).isNull();
+		// an admitted request finding no room to run gives its share back
+		assertThat(admissionControl.rejectAdmitted().reason()).isEqualTo(AdmissionControl.Reason.QUEUE_FULL);
+		assertThat(admissionControl.tryAdmit("client-3", "Id-5")).isNull();
+	}
+}
@@ -0,0 +1,82 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AsyncNotificationService;
+import com.dws.challenge.service.AsyncNotificationService.BackpressurePolicy;
+import com.dws.challenge.service.NotificationService;
+
+class AsyncNotificationServiceTest {
+
+	@TempDir
+	Path spillDirectory;
+
+	private final CountDownLatch delegateReleased = new CountDownLatch(1);
+	private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+	private final NotificationService blockingDelegate = (account, transferDescription) -> {
+		try {
+			delegateReleased.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		delivered.add(transferDescription);
+	};
+
+	@Test
+	void notifyReturnsWithoutWaitingForTheDelegate() throws Exception {
+		AsyncNotificationService notificationService = new AsyncNotificationService(blockingDelegate, 16, 4,
+				BackpressurePolicy.BLOCK, spillDirectory);
+
+		for (int i = 0; i < 10; i++) {
+			notificationService.notifyAboutTransfer(new Account("Id-1"), "transfer " + i);
+		}
+		assertThat(delivered).isEmpty();
+
+		delegateReleased.countDown();
+		notificationService.destroy();
+		assertThat(delivered).hasSize(10);
+		assertThat(notificationService.getDispatchedCount()).isEqualTo(10);
+	}
+
+	@Test
+	void dropOldestKeepsTheNewestNotifications() throws Exception {
+		AsyncNotificationService notificationService = new AsyncNotificationService(blockingDelegate, 4, 1,
+				BackpressurePolicy.DROP_OLDEST, spillDirectory);
+
+		for (int i = 0; i < 20; i++) {
+			notificationService.notifyAboutTransfer(new Account("Id-1"), "transfer " + i);
+		}
+
+		delegateReleased.countDown();
+		notificationService.destroy();
+		assertThat(notificationService.getDroppedCount()).isPositive();
+		assertThat(delivered).contains("transfer 19");
+		assertThat(delivered.size() + notificationService.getDroppedCount()).isEqualTo(20);
+	}
+
+	@Test
+	void spilledNotificationsAreReplayed() throws Exception {
+		AsyncNotificationService notificationService = new AsyncNotificationService(blockingDelegate, 2, 1,
+				BackpressurePolicy.SPILL_TO_DISK, spillDirectory);
+
+		for (int i = 0; i < 20; i++) {
+			notificationService.notifyAboutTransfer(new Account("Id-1"), "transfer " + i);
+		}
+		assertThat(notificationService.getSpilledCount()).isPositive();
+
+		delegateReleased.countDown();
+		notificationService.destroy();
+		assertThat(delivered).hasSize(20);
+		assertThat(notificationService.getSpillBacklog()).isZero();
+	}
+}
@@ -0,0 +1,99 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.concurrent.RequestDeadline;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.AsyncTransferService;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.IdempotentTransferService;
+import com.dws.challenge.service.TransferResult;
+
+class AsyncTransferServiceTest {
+
+	private AccountsService accountsService;
+	private AsyncTransferService asyncTransferService;
+
+	@BeforeEach
+	void setup() {
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(), new EmailNotificationService());
+		asyncTransferService = new AsyncTransferService(
+				new IdempotentTransferService(accountsService, 1000, 60, 4), accountsService, 1, 1, 0, false);
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		asyncTransferService.destroy();
+	}
+
+	@Test
+	void transfersBeyondTheQueueAreRefused() throws Exception {
+		Lock lock = accountsService.getAccount("Id-1").getLock();
+		lock.lock();
+		CompletableFuture<TransferResult> running;
+		CompletableFuture<TransferResult> queued;
+		try {
+			running = asyncTransferService.transfer("request-1", "Id-1", "Id-2", BigDecimal.ONE, null);
+			queued = asyncTransferService.transfer("request-2", "Id-1", "Id-2", BigDecimal.ONE, null);
+			assertThatThrownBy(() -> asyncTransferService.transfer("request-3", "Id-1", "Id-2", BigDecimal.ONE, null))
+					.isInstanceOf(RejectedExecutionException.class);
+		} finally {
+			lock.unlock();
+		}
+
+		assertThat(running.get(10, TimeUnit.SECONDS)).isEqualTo(TransferResult.SUCCESS);
+		assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo(TransferResult.SUCCESS);
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("2");
+	}
+
+	@Test
+	void transferWithoutDeadlineIsNotRunPastTheRequestTimeout() throws Exception {
+		asyncTransferService.destroy();
+		asyncTransferService = new AsyncTransferService(
+				new IdempotentTransferService(accountsService, 1000, 60, 4), accountsService, 1, 1, 50, false);
+		Lock lock = accountsService.getAccount("Id-1").getLock();
+		lock.lock();
+		CompletableFuture<TransferResult> running;
+		CompletableFuture<TransferResult> queued;
+		try {
+			running = asyncTransferService.transfer("request-1", "Id-1", "Id-2", BigDecimal.ONE, null);
+			queued = asyncTransferService.transfer("request-2", "Id-1", "Id-2", BigDecimal.ONE, null);
+			Thread.sleep(100);
+		} finally {
+			lock.unlock();
+		}
+
+		assertThat(running.get(10, TimeUnit.SECONDS)).isEqualTo(TransferResult.SUCCESS);
+		assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo(TransferResult.LOCK_TIMEOUT);
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+	}
+
+	@Test
+	void transferPastItsDeadlineIsNotRun() throws Exception {
+		RequestDeadline.start(0, TimeUnit.MILLISECONDS);
+		CompletableFuture<TransferResult> transfer;
+		try {
+			transfer = asyncTransferService.transfer("request-1", "Id-1", "Id-2", BigDecimal.ONE, null);
+		} finally {
+			RequestDeadline.clear();
+		}
+
+		assertThat(transfer.get(10, TimeUnit.SECONDS)).isEqualTo(TransferResult.LOCK_TIMEOUT);
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+	}
+}
@@ -0,0 +1,242 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceAudit;
+import com.dws.challenge.service.BalanceEngine;
+import com.dws.challenge.service.CasBalanceEngine;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.LockingBalanceEngine;
+import com.dws.challenge.service.TransferResult;
+
+class BalanceSnapshotTest {
+
+	private static final int ACCOUNTS = 16;
+
+	@Test
+	void everyCutIsABalanceStateWhileTransfersRunWithLocks() throws Exception {
+		assertEveryCutIsABalanceState(new LockingBalanceEngine());
+	}
+
+	@Test
+	void everyCutIsABalanceStateWhileTransfersRunWithCompareAndSet() throws Exception {
+		// the engine debits and credits in two steps, so money is in flight in between
+		assertEveryCutIsABalanceState(new CasBalanceEngine());
+	}
+
+	@Test
+	void changesMadeDuringTheSnapshotAreNotSeen() throws Exception {
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+				new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+		Map<String, BigDecimal> balances = new TreeMap<>();
+
+		accountsService.forEachAccountAtCut((account, balance) -> {
+			if (balances.isEmpty()) {
+				accountsService.createAccount(new Account("Id-3", new BigDecimal("50")));
+				accountsService.tryTransfer("Id-1", "Id-2", new BigDecimal("30"));
+			}
+			balances.put(account.getAccountId(), balance);
+		});
+
+		assertThat(balances).containsOnlyKeys("Id-1", "Id-2");
+		assertThat(balances.get("Id-1")).isEqualByComparingTo("100");
+		assertThat(balances.get("Id-2")).isEqualByComparingTo("100");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("130");
+		BalanceAudit audit = accountsService.auditBalances();
+		assertThat(audit.accountCount()).isEqualTo(3);
+		assertThat(audit.total()).isEqualByComparingTo("250");
+	}
+
+	@Test
+	void writesStartedDuringTheCutWaitForThoseRunningBefore() throws Exception {
+		CountDownLatch debitStarted = new CountDownLatch(1);
+		CountDownLatch releaseDebit = new CountDownLatch(1);
+		BalanceEngine slowEngine = new LockingBalanceEngine() {
+			@Override
+			public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+				if (fromAccount.getAccountId().equals("Id-1")) {
+					debitStarted.countDown();
+					try {
+						releaseDebit.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.transfer(fromAccount, toAccount, amount);
+			}
+		};
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+				new EmailNotificationService(), slowEngine);
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("5")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+		accountsService.createAccount(new Account("Id-3", new BigDecimal("5")));
+		Map<String, BigDecimal> balances = new TreeMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			// running before the cut, and insufficient at the cut
+			Future<?> debit = executor.submit(() -> accountsService.tryTransfer("Id-1", "Id-2", BigDecimal.TEN));
+			assertThat(debitStarted.await(10, TimeUnit.SECONDS)).isTrue();
+			Future<?> cut = executor.submit(() -> accountsService.forEachAccountAtCut(
+					(account, balance) -> balances.put(account.getAccountId(), balance)));
+			Thread.sleep(100);
+			// started during the cut; applied first, it would let the debit through
+			Future<?> credit = executor.submit(() -> accountsService.tryTransfer("Id-3", "Id-1", new BigDecimal("5")));
+			Thread.sleep(100);
+			releaseDebit.countDown();
+			debit.get(10, TimeUnit.SECONDS);
+			cut.get(10, TimeUnit.SECONDS);
+			credit.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(balances.get("Id-1")).isEqualByComparingTo("5");
+		assertThat(balances.get("Id-2")).isEqualByComparingTo("0");
+		assertThat(balances.get("Id-3")).isEqualByComparingTo("5");
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	void writesOnOtherAccountsGoOnWhileTheCutWaits() throws Exception {
+		CountDownLatch debitStarted = new CountDownLatch(1);
+		CountDownLatch releaseDebit = new CountDownLatch(1);
+		BalanceEngine slowEngine = new LockingBalanceEngine() {
+			@Override
+			public boolean transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+				if (fromAccount.getAccountId().equals("Id-1")) {
+					debitStarted.countDown();
+					try {
+						releaseDebit.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.transfer(fromAccount, toAccount, amount);
+			}
+		};
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+				new EmailNotificationService(), slowEngine);
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("5")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+		accountsService.createAccount(new Account("Id-3", new BigDecimal("5")));
+		accountsService.createAccount(new Account("Id-4", new BigDecimal("0")));
+		Map<String, BigDecimal> balances = new TreeMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			Future<?> debit = executor.submit(() -> accountsService.tryTransfer("Id-1", "Id-2", BigDecimal.ONE));
+			assertThat(debitStarted.await(10, TimeUnit.SECONDS)).isTrue();
+			Future<?> cut = executor.submit(() -> accountsService.forEachAccountAtCut(
+					(account, balance) -> balances.put(account.getAccountId(), balance)));
+			Thread.sleep(100);
+			// the cut waits for the debit, a transfer between other accounts does not
+			assertThat(executor.submit(() -> accountsService.tryTransfer("Id-3", "Id-4", new BigDecimal("5")))
+					.get(2, TimeUnit.SECONDS)).isEqualTo(TransferResult.SUCCESS);
+			releaseDebit.countDown();
+			debit.get(10, TimeUnit.SECONDS);
+			cut.get(10, TimeUnit.SECONDS);
+		} finally {
+			releaseDebit.countDown();
+			executor.shutdown();
+		}
+
+		assertThat(balances.get("Id-1")).isEqualByComparingTo("4");
+		assertThat(balances.get("Id-2")).isEqualByComparingTo("1");
+		assertThat(balances.get("Id-3")).isEqualByComparingTo("5");
+		assertThat(balances.get("Id-4")).isEqualByComparingTo("0");
+	}
+
+	@Test
+	void slowReaderHoldsNeitherWritesNorOtherReaders() throws Exception {
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+				new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+		CountDownLatch reading = new CountDownLatch(1);
+		CountDownLatch releaseReader = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> slowReader = executor.submit(() -> accountsService.forEachAccountAtCut((account, balance) -> {
+				reading.countDown();
+				try {
+					releaseReader.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			assertThat(reading.await(10, TimeUnit.SECONDS)).isTrue();
+
+			assertThat(accountsService.tryTransfer("Id-1", "Id-2", new BigDecimal("30")))
+					.isEqualTo(TransferResult.SUCCESS);
+			BalanceAudit audit = executor.submit(accountsService::auditBalances).get(2, TimeUnit.SECONDS);
+			assertThat(audit.total()).isEqualByComparingTo("200");
+			releaseReader.countDown();
+			slowReader.get(10, TimeUnit.SECONDS);
+		} finally {
+			releaseReader.countDown();
+			executor.shutdown();
+		}
+	}
+
+	private void assertEveryCutIsABalanceState(BalanceEngine balanceEngine) throws Exception {
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+				new EmailNotificationService(), balanceEngine);
+		for (int i = 0; i < ACCOUNTS; i++) {
+			accountsService.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			tasks.add(executor.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (running.get()) {
+					// amounts of up to half a starting balance keep accounts close to empty
+					int from = random.nextInt(ACCOUNTS);
+					int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+					accountsService.tryTransfer("Id-" + from, "Id-" + to, new BigDecimal(random.nextInt(1, 50)));
+				}
+				return null;
+			}));
+		}
+		try {
+			for (int i = 0; i < 200; i++) {
+				BalanceAudit audit = accountsService.auditBalances();
+				assertThat(audit.accountCount()).isEqualTo(ACCOUNTS);
+				assertThat(audit.total()).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 100));
+
+				List<BigDecimal> balances = new ArrayList<>();
+				accountsService.forEachAccountAtCut((account, balance) -> balances.add(balance));
+				assertThat(balances).hasSize(ACCOUNTS).allSatisfy(balance -> assertThat(balance).isNotNegative());
+				assertThat(balances.stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+						.isEqualByComparingTo(new BigDecimal(ACCOUNTS * 100));
+			}
+		} finally {
+			running.set(false);
+			executor.shutdown();
+		}
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsMetrics;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BinaryTransactionLog;
+import com.dws.challenge.service.LockingBalanceEngine;
+import com.dws.challenge.service.TransactionLogReader;
+import com.dws.challenge.service.TransactionLogRecord;
+
+class BinaryTransactionLogTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recordsAreReadBackAcrossSegmentsAndRestarts() throws Exception {
+		BinaryTransactionLog transactionLog = new BinaryTransactionLog(directory, 4 * 256, 16, 64, false);
+		for (int i = 0; i < 10; i++) {
+			transactionLog.transferred("Id-1", "Id-2", new BigDecimal("1.5"), new BigDecimal(100 - i),
+					new BigDecimal("-12345678901234567890.12"));
+		}
+		transactionLog.destroy();
+		transactionLog = new BinaryTransactionLog(directory, 4 * 256, 16, 64, false);
+		transactionLog.transferred("Id-3", "Id-4", BigDecimal.TEN, BigDecimal.ZERO, BigDecimal.TEN);
+		transactionLog.destroy();
+
+		List<TransactionLogRecord> records = readAll();
+		assertThat(records).hasSize(11);
+		assertThat(records).extracting(TransactionLogRecord::sequence).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L,
+				8L, 9L, 10L);
+		TransactionLogRecord first = records.get(0);
+		assertThat(first.fromAccountId()).isEqualTo("Id-1");
+		assertThat(first.toAccountId()).isEqualTo("Id-2");
+		assertThat(first.amount()).isEqualTo(new BigDecimal("1.5"));
+		assertThat(first.fromBalance()).isEqualTo(new BigDecimal(100));
+		assertThat(first.toBalance()).isEqualTo(new BigDecimal("-12345678901234567890.12"));
+		assertThat(first.threadName()).isEqualTo(Thread.currentThread().getName());
+		assertThat(first.isTruncated()).isFalse();
+		assertThat(records.get(10).fromAccountId()).isEqualTo("Id-3");
+		assertThat(TransactionLogReader.segments(directory)).hasSize(4);
+	}
+
+	@Test
+	void oldSegmentsAreDeletedAndLongIdsTruncated() throws Exception {
+		BinaryTransactionLog transactionLog = new BinaryTransactionLog(directory, 256, 2, 64, false);
+		String longId = "Id-" + "x".repeat(100);
+		for (int i = 0; i < 5; i++) {
+			transactionLog.transferred(longId, "Id-2", BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+		}
+		transactionLog.destroy();
+
+		List<TransactionLogRecord> records = readAll();
+		assertThat(records).extracting(TransactionLogRecord::sequence).containsExactly(3L, 4L);
+		assertThat(records.get(0).fromAccountId()).isEqualTo(longId.substring(0, 64));
+		assertThat(records.get(0).isTruncated()).isTrue();
+	}
+
+	@Test
+	void recordsCarryTheBalancesRightAfterTheirTransfer() throws Exception {
+		BinaryTransactionLog transactionLog = new BinaryTransactionLog(directory, 4096, 4, 64, false);
+		AtomicBoolean depositedLater = new AtomicBoolean();
+		AccountsService[] accountsService = new AccountsService[1];
+		// another change of the target lands before the transfer is logged
+		accountsService[0] = new AccountsService(new AccountsRepositoryInMemory(), (account, description) -> {
+			if (depositedLater.compareAndSet(false, true)) {
+				try {
+					accountsService[0].depositAmount(accountsService[0].getAccount("Id-2"), new BigDecimal("5"));
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}, new LockingBalanceEngine(), AccountsMetrics.noop(), transactionLog);
+		accountsService[0].createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService[0].createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+		accountsService[0].transferAmount("Id-1", "Id-2", BigDecimal.TEN);
+		transactionLog.destroy();
+
+		List<TransactionLogRecord> records = readAll();
+		assertThat(records).hasSize(1);
+		assertThat(records.get(0).fromBalance()).isEqualByComparingTo("90");
+		assertThat(records.get(0).toBalance()).isEqualByComparingTo("10");
+		assertThat(accountsService[0].getAccount("Id-2").getBalance()).isEqualByComparingTo("15");
+	}
+
+	private List<TransactionLogRecord> readAll() throws Exception {
+		List<TransactionLogRecord> records = new ArrayList<>();
+		for (Path segment : TransactionLogReader.segments(directory)) {
+			TransactionLogReader.read(segment, records::add);
+		}
+		return records;
+	}
+}
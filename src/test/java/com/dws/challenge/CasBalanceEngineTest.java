@@ -0,0 +1,177 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.HotAccount;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.CasBalanceEngine;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.TransferResult;
+
+class CasBalanceEngineTest {
+
+	private AccountsService accountsService;
+
+	@BeforeEach
+	void setup() {
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(), new EmailNotificationService(),
+				new CasBalanceEngine());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("1000")));
+	}
+
+	@Test
+	void concurrentDepositsAndWithdrawalsAreNotLost() throws Exception {
+		Account account = accountsService.getAccount("Id-1");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			tasks.add(executor.submit(() -> {
+				for (int j = 0; j < 250; j++) {
+					accountsService.depositAmount(account, BigDecimal.ONE);
+				}
+				return null;
+			}));
+			tasks.add(executor.submit(() -> {
+				for (int j = 0; j < 250; j++) {
+					accountsService.withdrawAmount(account, BigDecimal.ONE);
+				}
+				return null;
+			}));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+
+		assertThat(account.getBalance()).isEqualByComparingTo("1000");
+	}
+
+	@Test
+	void transferWithInsufficientFundsLeavesBothAccountsUntouched() throws Exception {
+		assertThatThrownBy(() -> accountsService.transferAmount("Id-1", "Id-2", new BigDecimal("1001")))
+				.isInstanceOf(InsufficientFundsException.class)
+				.hasMessageStartingWith("Insufficient funds in account:Id-1");
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1000");
+	}
+
+	@Test
+	void transferMovesTheAmount() throws Exception {
+		assertThat(accountsService.transferAmount("Id-1", "Id-2", new BigDecimal("250.50"))).isTrue();
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("749.50");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1250.50");
+	}
+
+	@Test
+	void multiLegTransfersAreAppliedAsOneUnitUnderConcurrentWithdrawals() throws Exception {
+		accountsService.createAccount(new Account("Id-3", BigDecimal.ZERO));
+		accountsService.createAccount(new Account("Id-4", BigDecimal.ZERO));
+		Account account = accountsService.getAccount("Id-1");
+		List<TransferLeg> rejected = List.of(new TransferLeg("Id-1", new BigDecimal("-1000")),
+				new TransferLeg("Id-4", new BigDecimal("-1")), new TransferLeg("Id-2", new BigDecimal("1001")));
+		List<TransferLeg> applied = List.of(new TransferLeg("Id-2", new BigDecimal("-10")),
+				new TransferLeg("Id-3", new BigDecimal("10")));
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> rejections = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			rejections.add(executor.submit(() -> {
+				// only the Id-4 debit is short, so Id-1 must never look debited
+				while (running.get()) {
+					assertThat(accountsService.tryTransfer(rejected)).isEqualTo(TransferResult.INSUFFICIENT_FUNDS);
+				}
+				return null;
+			}));
+		}
+		Future<?> withdrawals = executor.submit(() -> {
+			for (int j = 0; j < 20_000; j++) {
+				accountsService.withdrawAmount(account, BigDecimal.ONE);
+				accountsService.depositAmount(account, BigDecimal.ONE);
+			}
+			return null;
+		});
+		Future<?> multiLeg = executor.submit(() -> {
+			for (int j = 0; j < 50; j++) {
+				assertThat(accountsService.tryTransfer(applied)).isEqualTo(TransferResult.SUCCESS);
+			}
+			return null;
+		});
+		try {
+			withdrawals.get(30, TimeUnit.SECONDS);
+			multiLeg.get(30, TimeUnit.SECONDS);
+		} finally {
+			running.set(false);
+			executor.shutdown();
+		}
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		for (Future<?> rejection : rejections) {
+			rejection.get();
+		}
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("500");
+		assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("500");
+		assertThat(accountsService.getAccount("Id-4").getBalance()).isEqualByComparingTo("0");
+	}
+
+	@Test
+	void multiLegTransferIntoHotAccountKeepsConcurrentDeposits() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		AtomicBoolean armed = new AtomicBoolean();
+		List<Future<?>> deposits = new ArrayList<>();
+		HotAccount merchant = new HotAccount(new Account("Merchant", BigDecimal.ZERO), 4) {
+			@Override
+			public void setBalance(BigDecimal balance) {
+				if (armed.getAndSet(false)) {
+					// a deposit arriving after the transfer has read the balance
+					Future<?> deposit = executor.submit(() -> accountsService.depositAmount(this, BigDecimal.ONE));
+					deposits.add(deposit);
+					try {
+						deposit.get(200, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+						// kept out until the transfer is applied
+					} catch (InterruptedException | ExecutionException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				super.setBalance(balance);
+			}
+		};
+		accountsService.createAccount(merchant);
+
+		armed.set(true);
+		assertThat(accountsService.tryTransfer(List.of(new TransferLeg("Id-1", new BigDecimal("-2")),
+				new TransferLeg("Merchant", BigDecimal.ONE), new TransferLeg("Id-2", BigDecimal.ONE))))
+				.isEqualTo(TransferResult.SUCCESS);
+		assertThat(deposits).hasSize(1);
+		deposits.get(0).get(30, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("998");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1001");
+		assertThat(accountsService.getAccount("Merchant").getBalance()).isEqualByComparingTo("2");
+	}
+}
@@ -0,0 +1,98 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.HotAccount;
+import com.dws.challenge.domain.TransferInstruction;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BatchTransferMode;
+import com.dws.challenge.service.EmailNotificationService;
+
+class HotAccountTest {
+
+	private AccountsService accountsService;
+
+	@BeforeEach
+	void setup() {
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(Set.of("Merchant"), 4),
+				new EmailNotificationService());
+		accountsService.createAccount(new Account("Merchant", new BigDecimal("100")));
+		for (int i = 0; i < 4; i++) {
+			accountsService.createAccount(new Account("Customer-" + i, new BigDecimal("1000")));
+		}
+	}
+
+	@Test
+	void flaggedAccountsAreStoredAsHotAccounts() throws Exception {
+		assertThat(accountsService.getAccount("Merchant")).isInstanceOf(HotAccount.class);
+		assertThat(accountsService.getAccount("Customer-0")).isNotInstanceOf(HotAccount.class);
+	}
+
+	@Test
+	void concurrentTransfersIntoHotAccountAreExact() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			String customerId = "Customer-" + i;
+			tasks.add(executor.submit(() -> {
+				for (int j = 0; j < 1000; j++) {
+					accountsService.transferAmount(customerId, "Merchant", new BigDecimal("0.25"));
+				}
+				return null;
+			}));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+
+		assertThat(accountsService.getAccount("Merchant").getBalance()).isEqualByComparingTo("1100");
+		for (int i = 0; i < 4; i++) {
+			assertThat(accountsService.getAccount("Customer-" + i).getBalance()).isEqualByComparingTo("750");
+		}
+	}
+
+	@Test
+	void withdrawalBorrowsAcrossStripes() throws Exception {
+		Account merchant = accountsService.getAccount("Merchant");
+		Thread depositor = new Thread(() -> {
+			try {
+				accountsService.depositAmount(merchant, new BigDecimal("50"));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		depositor.start();
+		depositor.join();
+
+		assertThat(accountsService.withdrawAmount(merchant, new BigDecimal("150"))).isTrue();
+		assertThat(merchant.getBalance()).isEqualByComparingTo("0");
+		assertThat(((HotAccount) merchant).withdraw(BigDecimal.ONE)).isFalse();
+	}
+
+	@Test
+	void atomicBatchUpdatesHotAccount() throws Exception {
+		accountsService.transferBatch(List.of(
+				new TransferInstruction("Customer-0", "Merchant", new BigDecimal("10"), null),
+				new TransferInstruction("Merchant", "Customer-1", new BigDecimal("60"), null)),
+				BatchTransferMode.ATOMIC);
+
+		assertThat(accountsService.getAccount("Merchant").getBalance()).isEqualByComparingTo("50");
+		assertThat(accountsService.getAccount("Customer-1").getBalance()).isEqualByComparingTo("1060");
+	}
+}
@@ -0,0 +1,141 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.concurrent.RequestDeadline;
+import com.dws.challenge.concurrent.SegmentedCache;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TransferServiceException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.IdempotentTransferService;
+import com.dws.challenge.service.TransferResult;
+
+class IdempotentTransferServiceTest {
+
+	private AccountsService accountsService;
+	private IdempotentTransferService idempotentTransferService;
+
+	@BeforeEach
+	void setup() {
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(), new EmailNotificationService());
+		idempotentTransferService = new IdempotentTransferService(accountsService, 1000, 60, 4);
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+	}
+
+	@Test
+	void repeatedRequestIdIsTransferredOnce() throws Exception {
+		assertThat(idempotentTransferService.transfer("request-1", "Id-1", "Id-2", BigDecimal.TEN, null))
+				.isEqualTo(TransferResult.SUCCESS);
+		assertThat(idempotentTransferService.transfer("request-1", "Id-1", "Id-2", BigDecimal.TEN, null))
+				.isEqualTo(TransferResult.SUCCESS);
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("90");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	void transfersWithoutRequestIdAreNotDeduplicated() throws Exception {
+		idempotentTransferService.transfer(null, "Id-1", "Id-2", BigDecimal.TEN, null);
+		idempotentTransferService.transfer(null, "Id-1", "Id-2", BigDecimal.TEN, null);
+
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("20");
+	}
+
+	@Test
+	void rejectionIsReplayed() throws Exception {
+		assertThat(idempotentTransferService.transfer("request-2", "Id-2", "Id-1", BigDecimal.TEN, null))
+				.isEqualTo(TransferResult.INSUFFICIENT_FUNDS);
+		idempotentTransferService.transfer(null, "Id-1", "Id-2", BigDecimal.TEN, null);
+
+		assertThat(idempotentTransferService.transfer("request-2", "Id-2", "Id-1", BigDecimal.TEN, null))
+				.isEqualTo(TransferResult.INSUFFICIENT_FUNDS);
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	void requestIdReusedForAnotherTransferIsRejected() throws Exception {
+		idempotentTransferService.transfer("request-3", "Id-1", "Id-2", BigDecimal.TEN, null);
+
+		assertThatThrownBy(() -> idempotentTransferService.transfer("request-3", "Id-1", "Id-2",
+				BigDecimal.ONE, null)).isInstanceOf(TransferServiceException.class);
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	void retryWithoutAmountIsComparedSafely() throws Exception {
+		assertThat(idempotentTransferService.transfer("request-4", "Id-1", "Id-2", null, null))
+				.isEqualTo(TransferResult.INVALID_AMOUNT);
+		assertThat(idempotentTransferService.transfer("request-4", "Id-1", "Id-2", null, null))
+				.isEqualTo(TransferResult.INVALID_AMOUNT);
+		assertThatThrownBy(() -> idempotentTransferService.transfer("request-4", "Id-1", "Id-2", BigDecimal.TEN,
+				null)).isInstanceOf(TransferServiceException.class);
+
+		idempotentTransferService.transfer("request-5", "Id-1", "Id-2", BigDecimal.TEN, null);
+		assertThatThrownBy(() -> idempotentTransferService.transfer("request-5", "Id-1", "Id-2", null, null))
+				.isInstanceOf(TransferServiceException.class);
+	}
+
+	@Test
+	void retryWaitsForTheOriginalOnlyUntilItsDeadline() throws Exception {
+		Lock lock = accountsService.getAccount("Id-1").getLock();
+		lock.lock();
+		CompletableFuture<TransferResult> original;
+		try {
+			original = CompletableFuture.supplyAsync(() -> {
+				try {
+					return idempotentTransferService.transfer("request-6", "Id-1", "Id-2", BigDecimal.TEN, null);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			// the original is recorded once it waits for the lock
+			while (!((ReentrantLock) lock).hasQueuedThreads()) {
+				Thread.onSpinWait();
+			}
+			RequestDeadline.start(50, TimeUnit.MILLISECONDS);
+			try {
+				assertThat(idempotentTransferService.transfer("request-6", "Id-1", "Id-2", BigDecimal.TEN, null))
+						.isEqualTo(TransferResult.LOCK_TIMEOUT);
+			} finally {
+				RequestDeadline.clear();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		assertThat(original.get(10, TimeUnit.SECONDS)).isEqualTo(TransferResult.SUCCESS);
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	void cacheEvictsExpiredAndOldestEntries() {
+		AtomicLong now = new AtomicLong();
+		SegmentedCache<String, String> cache = new SegmentedCache<>(2, 10, TimeUnit.NANOSECONDS, 1, now::get);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.put("c", "3");
+
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.putIfAbsent("b", "other")).isEqualTo("2");
+
+		now.set(10);
+		assertThat(cache.get("c")).isNull();
+		assertThat(cache.putIfAbsent("c", "4")).isNull();
+		assertThat(cache.get("c")).isEqualTo("4");
+		assertThat(cache.size()).isEqualTo(1);
+	}
+}
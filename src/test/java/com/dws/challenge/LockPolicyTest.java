@@ -0,0 +1,98 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.LockException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsMetrics;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.LockPolicy;
+import com.dws.challenge.service.LockingBalanceEngine;
+import com.dws.challenge.service.TransferResult;
+
+class LockPolicyTest {
+
+	@Test
+	void transferGivesUpOnLockHeldBeyondTimeout() throws Exception {
+		AccountsService accountsService = accountsService(LockPolicy.Strategy.TIMED);
+		Account held = accountsService.getAccount("Id-2");
+
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(() -> {
+			held.getLock().lock();
+			try {
+				locked.countDown();
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				held.getLock().unlock();
+			}
+		});
+		holder.start();
+		assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+		try {
+			assertThat(accountsService.tryTransfer("Id-1", "Id-2", BigDecimal.TEN))
+					.isEqualTo(TransferResult.LOCK_TIMEOUT);
+			assertThatThrownBy(() -> accountsService.transferAmount("Id-1", "Id-2", BigDecimal.TEN))
+					.isInstanceOf(LockException.class);
+			// the lock of the first account was released after the second timed out
+			assertThat(accountsService.getAccount("Id-1").getLock().tryLock()).isTrue();
+			accountsService.getAccount("Id-1").getLock().unlock();
+		} finally {
+			release.countDown();
+			holder.join();
+		}
+
+		assertThat(accountsService.tryTransfer("Id-1", "Id-2", BigDecimal.TEN)).isEqualTo(TransferResult.SUCCESS);
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("990");
+		assertThat(held.getBalance()).isEqualByComparingTo("1010");
+	}
+
+	@Test
+	void spinThenParkTransfersUncontendedAccounts() throws Exception {
+		AccountsService accountsService = accountsService(LockPolicy.Strategy.SPIN_THEN_PARK);
+
+		assertThat(accountsService.tryTransfer("Id-2", "Id-1", BigDecimal.ONE)).isEqualTo(TransferResult.SUCCESS);
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("999");
+	}
+
+	@Test
+	void fairnessOnlyAppliesToTheLocksOfItsEngine() throws Exception {
+		AccountsService fairService = accountsService(LockPolicy.Strategy.BLOCKING, true);
+		AccountsService unfairService = accountsService(LockPolicy.Strategy.BLOCKING, false);
+
+		assertThat(fairService.tryTransfer("Id-1", "Id-2", BigDecimal.ONE)).isEqualTo(TransferResult.SUCCESS);
+		assertThat(unfairService.tryTransfer("Id-1", "Id-2", BigDecimal.ONE)).isEqualTo(TransferResult.SUCCESS);
+
+		assertThat(((ReentrantLock) fairService.getAccount("Id-1").getLock()).isFair()).isTrue();
+		assertThat(((ReentrantLock) fairService.getAccount("Id-2").getLock()).isFair()).isTrue();
+		assertThat(((ReentrantLock) unfairService.getAccount("Id-1").getLock()).isFair()).isFalse();
+		assertThat(((ReentrantLock) new Account("Id-3").getLock()).isFair()).isFalse();
+	}
+
+	private static AccountsService accountsService(LockPolicy.Strategy strategy) {
+		return accountsService(strategy, false);
+	}
+
+	private static AccountsService accountsService(LockPolicy.Strategy strategy, boolean fair) {
+		AccountsMetrics metrics = AccountsMetrics.noop();
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+				new EmailNotificationService(),
+				new LockingBalanceEngine(metrics, new LockPolicy(strategy, 50, 16, fair, metrics)), metrics);
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("1000")));
+		return accountsService;
+	}
+}
@@ -0,0 +1,94 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MinorUnitsAccount;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.ShardedBalanceEngine;
+
+class ShardedBalanceEngineTest {
+
+	private static final int ACCOUNT_COUNT = 8;
+
+	private ShardedBalanceEngine balanceEngine;
+	private AccountsService accountsService;
+
+	@BeforeEach
+	void setup() {
+		balanceEngine = new ShardedBalanceEngine(3, 64);
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(), new EmailNotificationService(),
+				balanceEngine);
+		for (int i = 0; i < ACCOUNT_COUNT; i++) {
+			accountsService.createAccount(new Account("Id-" + i, new BigDecimal("1000")));
+		}
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		balanceEngine.destroy();
+	}
+
+	@Test
+	void concurrentTransfersAcrossShardsKeepTheTotal() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(ACCOUNT_COUNT);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < ACCOUNT_COUNT; i++) {
+			String from = "Id-" + i;
+			String to = "Id-" + ((i + 1) % ACCOUNT_COUNT);
+			tasks.add(executor.submit(() -> {
+				for (int j = 0; j < 500; j++) {
+					accountsService.transferAmount(from, to, BigDecimal.ONE);
+				}
+				return null;
+			}));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+
+		BigDecimal total = BigDecimal.ZERO;
+		for (int i = 0; i < ACCOUNT_COUNT; i++) {
+			total = total.add(accountsService.getAccount("Id-" + i).getBalance());
+		}
+		assertThat(total).isEqualByComparingTo(new BigDecimal(1000 * ACCOUNT_COUNT));
+	}
+
+	@Test
+	void insufficientFundsLeaveBothAccountsUnchanged() throws Exception {
+		assertThatThrownBy(() -> accountsService.transferAmount("Id-0", "Id-1", new BigDecimal("1000.01")))
+				.isInstanceOf(InsufficientFundsException.class);
+
+		assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+	}
+
+	@Test
+	void minorUnitTransfersAreApplied() throws Exception {
+		accountsService.createAccount(new MinorUnitsAccount("Eur-1", new BigDecimal("10.00"), "EUR"));
+		accountsService.createAccount(new MinorUnitsAccount("Eur-2", new BigDecimal("0.00"), "EUR"));
+
+		accountsService.transferAmount("Eur-1", "Eur-2", 250, "EUR");
+
+		assertThat(accountsService.getAccount("Eur-1").getBalance()).isEqualByComparingTo("7.50");
+		assertThat(accountsService.getAccount("Eur-2").getBalance()).isEqualByComparingTo("2.50");
+	}
+}
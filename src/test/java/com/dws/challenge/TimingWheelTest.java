@@ -0,0 +1,52 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.concurrent.TimingWheel;
+
+class TimingWheelTest {
+
+	@Test
+	void entriesExpireAtTheirDeadlineAcrossLevels() {
+		TimingWheel<Long> wheel = new TimingWheel<>(10, 3, 0);
+		long[] deadlines = { 5, 10, 2_559, 2_560, 70_000, 655_359, 655_360, 123_456_789, 500_000_000 };
+		for (long deadline : deadlines) {
+			wheel.schedule(deadline, deadline);
+		}
+		List<Long> expired = new ArrayList<>();
+
+		for (long now = 0; wheel.size() > 0; now += 1_000_000) {
+			long before = now;
+			wheel.advance(now, deadline -> {
+				assertThat(deadline).isLessThanOrEqualTo(before);
+				assertThat(deadline).isGreaterThan(before - 1_000_000);
+				expired.add(deadline);
+			});
+		}
+
+		assertThat(expired).containsExactly(5L, 10L, 2_559L, 2_560L, 70_000L, 655_359L, 655_360L, 123_456_789L,
+				500_000_000L);
+	}
+
+	@Test
+	void cancelledEntriesDoNotExpire() {
+		TimingWheel<String> wheel = new TimingWheel<>(1, 2, 1_000);
+		TimingWheel.Entry<String> cancelled = wheel.schedule("cancelled", 1_500);
+		wheel.schedule("kept", 1_500);
+		wheel.schedule("overdue", 10);
+
+		assertThat(wheel.cancel(cancelled)).isTrue();
+		assertThat(wheel.cancel(cancelled)).isFalse();
+		List<String> expired = new ArrayList<>();
+		assertThat(wheel.advance(1_000, expired::add)).isEqualTo(1);
+		assertThat(wheel.advance(2_000, expired::add)).isEqualTo(1);
+
+		assertThat(expired).containsExactly("overdue", "kept");
+		assertThat(wheel.size()).isZero();
+	}
+}
@@ -0,0 +1,125 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsMetrics;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.TransferScheduler;
+
+class TransferSchedulerTest {
+
+	@TempDir
+	Path directory;
+
+	private AccountsService accountsService;
+	private TransferScheduler transferScheduler;
+
+	@BeforeEach
+	void setup() {
+		accountsService = new AccountsService(new AccountsRepositoryInMemory(), new EmailNotificationService());
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+		transferScheduler = startScheduler();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		transferScheduler.destroy();
+	}
+
+	@Test
+	void dueTransfersAreMadeAndRecurringOnesScheduledAgain() throws Exception {
+		Instant now = Instant.now();
+		transferScheduler.schedule(transfer(now.plusMillis(50), "10", null));
+		ScheduledTransfer recurring = transferScheduler.schedule(transfer(now.minusSeconds(1), "1", "P1D"));
+
+		awaitFired(2);
+
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("11");
+		assertThat(transferScheduler.getPendingCount()).isEqualTo(1);
+		assertThat(transferScheduler.getScheduledTransfer(recurring.getId()).getExecuteAt())
+				.isEqualTo(recurring.getExecuteAt().plus(1, ChronoUnit.DAYS));
+		assertThat(transferScheduler.getFailedCount()).isZero();
+	}
+
+	@Test
+	void cancelledAndAmendedTransfersSurviveRestart() throws Exception {
+		Instant later = Instant.now().plus(1, ChronoUnit.HOURS);
+		ScheduledTransfer cancelled = transferScheduler.schedule(transfer(later, "10", null));
+		ScheduledTransfer amended = transferScheduler.schedule(transfer(later, "10", null));
+		assertThat(transferScheduler.cancel(cancelled.getId())).isTrue();
+		assertThat(transferScheduler.amend(amended.getId(), transfer(later, "25", "PT1H"))).isNotNull();
+		assertThat(transferScheduler.amend(cancelled.getId(), transfer(later, "25", null))).isNull();
+
+		transferScheduler.destroy();
+		transferScheduler = startScheduler();
+
+		assertThat(transferScheduler.getPendingCount()).isEqualTo(1);
+		assertThat(transferScheduler.getScheduledTransfer(cancelled.getId())).isNull();
+		ScheduledTransfer restored = transferScheduler.getScheduledTransfer(amended.getId());
+		assertThat(restored.getAmount()).isEqualByComparingTo("25");
+		assertThat(restored.getRepeat()).isEqualTo("PT1H");
+		assertThat(restored.getExecuteAt()).isEqualTo(later);
+	}
+
+	@Test
+	void dueTransfersAreRetriedUntilTheirRemovalIsStored() throws Exception {
+		transferScheduler.schedule(transfer(Instant.now().plusMillis(100), "10", null));
+		Object store = ReflectionTestUtils.getField(transferScheduler, "store");
+		Object output = ReflectionTestUtils.getField(store, "output");
+		ReflectionTestUtils.setField(store, "output", new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("disk full");
+			}
+		}));
+
+		Thread.sleep(500);
+
+		assertThat(transferScheduler.getFiredCount()).isZero();
+		assertThat(transferScheduler.getPendingCount()).isEqualTo(1);
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+
+		ReflectionTestUtils.setField(store, "output", output);
+		awaitFired(1);
+
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+		assertThat(transferScheduler.getPendingCount()).isZero();
+		transferScheduler.destroy();
+		transferScheduler = startScheduler();
+		assertThat(transferScheduler.getPendingCount()).isZero();
+	}
+
+	private TransferScheduler startScheduler() {
+		return new TransferScheduler(accountsService, AccountsMetrics.noop(), directory, 1, 100, false);
+	}
+
+	private static ScheduledTransfer transfer(Instant executeAt, String amount, String repeat) {
+		return new ScheduledTransfer(null, "Id-1", "Id-2", new BigDecimal(amount), null, executeAt, repeat);
+	}
+
+	private void awaitFired(long count) throws InterruptedException {
+		for (int i = 0; i < 500 && transferScheduler.getFiredCount() < count; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(transferScheduler.getFiredCount()).isEqualTo(count);
+	}
+}
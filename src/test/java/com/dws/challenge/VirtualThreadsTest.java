@@ -0,0 +1,34 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.concurrent.VirtualThreads;
+
+class VirtualThreadsTest {
+
+	@Test
+	void executorRunsTasksOnVirtualThreadsWhenSupported() throws Exception {
+		ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+		Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		assertThat(thread.getName()).startsWith("test-");
+		assertThat(thread.isDaemon()).isTrue();
+		assertThat(thread.toString().contains("VirtualThread")).isEqualTo(VirtualThreads.isSupported());
+	}
+
+	@Test
+	void startedThreadIsNamedAndDaemon() throws Exception {
+		Thread thread = VirtualThreads.start("worker", true, () -> {
+		});
+		thread.join(TimeUnit.SECONDS.toMillis(5));
+
+		assertThat(thread.getName()).isEqualTo("worker");
+		assertThat(thread.isDaemon()).isTrue();
+	}
+}